@@ -122,6 +122,13 @@ public abstract class AbstractMojoWithLoadedClasspath
         return result;
     }
 
+    /**
+     * @return the local Maven repository, or <code>null</code> outside of Maven
+     */
+    protected File getLocalRepository() {
+        return localRepository != null ? new File(localRepository) : null;
+    }
+
     protected String getRobotJar() {
         File robots = new File(localRepository, ROBOT_ARTIFACT);
         String configured = currentVersion();
@@ -53,6 +53,12 @@ import org.w3c.dom.Element;
  */
 public class AcceptanceTestMojo extends AbstractMojoWithLoadedClasspath {
 
+    private static final String QUARANTINE_NON_CRITICAL = "noncritical";
+
+    private static final String QUARANTINE_EXCLUDE = "exclude";
+
+    private static final String QUARANTINE_ONLY = "only";
+
     // TODO better integrate test result into eclipse failure reports
     // enable to open report from eclipse easily after test run
     // as with surefire reports?
@@ -62,10 +68,116 @@ public class AcceptanceTestMojo extends AbstractMojoWithLoadedClasspath {
             getLog().info("RobotFramework tests are skipped.");
             return;
         }
-        String[] runArguments = generateRunArguments();
+        List<String> quarantined = readQuarantine();
+        if (quarantined.isEmpty() && QUARANTINE_ONLY.equals(quarantineMode)) {
+            getLog().info("No quarantined RobotFramework tests to run.");
+            return;
+        }
+        File quarantineModifier = null;
+        if (!quarantined.isEmpty()) {
+            getLog().info("Quarantining " + quarantined.size() + " tests listed in " + quarantineFile + " ("
+                    + quarantineMode + ").");
+            try {
+                quarantineModifier = Quarantine.writeModifier(outputDirectory, quarantined, name);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Writing the quarantine modifier failed.", e);
+            }
+        }
+        String[] runArguments = generateRunArguments(quarantineModifier);
+        if (rerunFailed && output != null)
+            decompressOutputToRerun();
 
         getLog().debug("robotframework arguments: " + StringUtils.join(runArguments, " "));
-        evaluateReturnCode(executeRobot(runArguments));
+        long start = System.currentTimeMillis();
+        int returnCode = executeRobot(runArguments);
+        if (compressOutput)
+            compressOutputs(start);
+        evaluateReturnCode(returnCode);
+    }
+
+    private List<String> readQuarantine() throws MojoExecutionException {
+        if (quarantineFile == null)
+            return Collections.emptyList();
+        if (quarantineMode == null)
+            quarantineMode = QUARANTINE_NON_CRITICAL;
+        if (!QUARANTINE_NON_CRITICAL.equals(quarantineMode) && !QUARANTINE_EXCLUDE.equals(quarantineMode)
+                && !QUARANTINE_ONLY.equals(quarantineMode))
+            throw new MojoExecutionException("Unknown quarantineMode '" + quarantineMode + "', expected "
+                    + QUARANTINE_NON_CRITICAL + ", " + QUARANTINE_EXCLUDE + " or " + QUARANTINE_ONLY + ".");
+        try {
+            return Quarantine.read(quarantineFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Reading " + quarantineFile + " failed.", e);
+        }
+    }
+
+    /**
+     * Robot Framework only reads uncompressed outputs, so a compressed output
+     * of the previous run is decompressed in its place.
+     */
+    private void decompressOutputToRerun() throws MojoExecutionException {
+        File compressed = CompressedOutputs.compressed(output);
+        if (output.exists() || !compressed.exists())
+            return;
+        try {
+            CompressedOutputs.decompress(compressed, output);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Decompressing " + compressed + " failed.", e);
+        }
+    }
+
+    /**
+     * Replaces the outputs written since the given time with compressed
+     * files.
+     */
+    private void compressOutputs(long since) throws MojoExecutionException {
+        for (File written : findWrittenOutputs(since)) {
+            long start = System.currentTimeMillis();
+            long bytes = written.length();
+            try {
+                File compressed = CompressedOutputs.compress(written);
+                getLog().info("Compressed " + written.getName() + " from " + CompressedOutputs.size(bytes)
+                        + " to " + CompressedOutputs.size(compressed.length()) + " ("
+                        + (bytes > 0 ? 100 - compressed.length() * 100 / bytes : 0) + "% less to write and read) in "
+                        + (System.currentTimeMillis() - start) + " ms.");
+            } catch (IOException e) {
+                throw new MojoExecutionException("Compressing " + written + " failed.", e);
+            }
+        }
+    }
+
+    /**
+     * @return the output of the run, or with <code>timestampOutputs</code> the
+     *         outputs with the timestamped name written since the given time
+     */
+    private List<File> findWrittenOutputs(long since) {
+        // Robot Framework takes a relative output to be relative to the
+        // output directory.
+        File written = output == null ? new File(outputDirectory, "output.xml")
+                : output.isAbsolute() ? output : new File(outputDirectory, output.getPath());
+        List<File> outputs = new ArrayList<File>();
+        if (!timestampOutputs) {
+            if (written.isFile())
+                outputs.add(written);
+            return outputs;
+        }
+        String name = written.getName();
+        int extension = name.lastIndexOf('.');
+        final String prefix = (extension > 0 ? name.substring(0, extension) : name) + "-";
+        final String suffix = extension > 0 ? name.substring(extension) : "";
+        File[] files = written.getAbsoluteFile().getParentFile().listFiles(new FilenameFilter() {
+            public boolean accept(File directory, String fileName) {
+                return fileName.startsWith(prefix) && fileName.endsWith(suffix);
+            }
+        });
+        if (files != null) {
+            for (File file : files) {
+                // File times may be truncated to seconds.
+                if (file.isFile() && file.lastModified() >= since - since % 1000)
+                    outputs.add(file);
+            }
+        }
+        return outputs;
     }
 
     private int executeRobot(String[] runArguments) throws MojoExecutionException {
@@ -220,7 +332,7 @@ public class AcceptanceTestMojo extends AbstractMojoWithLoadedClasspath {
         return skipTests || skipITs || skipATs || skip;
     }
 
-    private String[] generateRunArguments() {
+    private String[] generateRunArguments(File quarantineModifier) {
         Arguments generatedArguments = new Arguments();
 
         generatedArguments.addFileToArguments(outputDirectory, "-d");
@@ -271,7 +383,11 @@ public class AcceptanceTestMojo extends AbstractMojoWithLoadedClasspath {
             generatedArguments.addListToArguments(suites_cli, "-s");
         else
             generatedArguments.addListToArguments(suites, "-s");
-        if (includes_cli!=null)
+        if (quarantineModifier != null && QUARANTINE_ONLY.equals(quarantineMode)) {
+            List<String> includeTags = includes_cli != null
+                    ? Arrays.asList(StringUtils.split(includes_cli, ",")) : includes;
+            generatedArguments.addListToArguments(Quarantine.onlyQuarantined(includeTags), "-i");
+        } else if (includes_cli!=null)
             generatedArguments.addListToArguments(includes_cli, "-i");
         else
             generatedArguments.addListToArguments(includes, "-i");
@@ -281,6 +397,13 @@ public class AcceptanceTestMojo extends AbstractMojoWithLoadedClasspath {
             generatedArguments.addListToArguments(excludes, "-e");
         generatedArguments.addListToArguments(criticalTags, "-c");
         generatedArguments.addListToArguments(nonCriticalTags, "-n");
+        if (quarantineModifier != null) {
+            generatedArguments.addFileToArguments(quarantineModifier, "--prerunmodifier");
+            if (QUARANTINE_EXCLUDE.equals(quarantineMode))
+                generatedArguments.addStringToArguments(Quarantine.TAG, "-e");
+            else if (!QUARANTINE_ONLY.equals(quarantineMode))
+                generatedArguments.addStringToArguments(Quarantine.TAG, "-n");
+        }
         generatedArguments.addListToArguments(variables, "-v");
         if (variables_cli!=null)
             generatedArguments.addListToArguments(variables_cli, "-v");
@@ -846,6 +969,16 @@ public class AcceptanceTestMojo extends AbstractMojoWithLoadedClasspath {
      */
     private boolean rpa;
 
+    /**
+     * Compress the output file with gzip once the tests have run, replacing <code>output.xml</code> with
+     * <code>output.xml.gz</code>. The rebot goal, and <code>rerunFailed</code>, read compressed outputs as well.
+     * Compressing is streamed and takes little time compared to writing and copying large outputs. The sizes before
+     * and after are logged.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean compressOutput;
+
     /**
      * Run only failed test cases. Note that output.xml has to be available.
      * By default clean goal would remove output.xml making it impossible to
@@ -855,6 +988,25 @@ public class AcceptanceTestMojo extends AbstractMojoWithLoadedClasspath {
      */
     private boolean rerunFailed;
 
+    /**
+     * A list of quarantined flaky tests, one test long name per line, as written by the flaky-tests goal. Tests in
+     * it are tagged <code>quarantined</code> before the run and handled as set with <code>quarantineMode</code>. A
+     * missing file quarantines no tests.
+     *
+     * @parameter default-value="${project.build.directory}/robotframework/quarantine.txt"
+     */
+    private File quarantineFile;
+
+    /**
+     * How quarantined tests are run: <code>noncritical</code> runs them without failing the build,
+     * <code>exclude</code> leaves them out, and <code>only</code> runs nothing else, so that they can be run in a
+     * separate execution, with its own output directory, alongside one that excludes them. With <code>includes</code>,
+     * <code>only</code> runs the quarantined tests among the included ones.
+     *
+     * @parameter default-value="noncritical"
+     */
+    private String quarantineMode;
+
 }
 
 class StreamReader extends Thread {
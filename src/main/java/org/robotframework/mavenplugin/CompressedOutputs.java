@@ -0,0 +1,128 @@
+package org.robotframework.mavenplugin;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes gzip compressed Robot Framework result files, named like
+ * the uncompressed file with <code>.gz</code> appended. Everything is
+ * streamed in blocks, never held in memory as a whole.
+ */
+class CompressedOutputs {
+
+    static final String SUFFIX = ".gz";
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private CompressedOutputs() {
+    }
+
+    static boolean isCompressed(File file) {
+        return file.getName().endsWith(SUFFIX);
+    }
+
+    /**
+     * @return the compressed file of the given uncompressed one
+     */
+    static File compressed(File file) {
+        return new File(file.getPath() + SUFFIX);
+    }
+
+    /**
+     * @return the given file, or its compressed file if only that exists
+     */
+    static File existing(File file) {
+        File compressed = compressed(file);
+        return !file.exists() && compressed.exists() ? compressed : file;
+    }
+
+    /**
+     * @return a buffered stream of the uncompressed contents of the file
+     */
+    static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        if (!isCompressed(file))
+            return in;
+        try {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw new IOException("Invalid compressed file " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replaces the file with its compressed file. The uncompressed file is
+     * only removed once the compressed one is complete.
+     *
+     * @return the compressed file
+     */
+    static File compress(File file) throws IOException {
+        File target = compressed(file);
+        File partial = new File(target.getPath() + ".tmp");
+        InputStream in = new FileInputStream(file);
+        try {
+            // Level 1 compresses Robot Framework XML to about a tenth at a
+            // fraction of the time the default level takes.
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(partial), BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+            try {
+                copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        if (target.exists() && !target.delete() || !partial.renameTo(target))
+            throw new IOException("Cannot replace " + target);
+        if (!file.delete())
+            throw new IOException("Cannot remove " + file + " after compressing it");
+        return target;
+    }
+
+    /**
+     * Writes the uncompressed contents of a compressed file to the target.
+     */
+    static void decompress(File file, File target) throws IOException {
+        InputStream in = open(file);
+        try {
+            OutputStream out = new FileOutputStream(target);
+            try {
+                copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the size in kilobytes or megabytes, for logging
+     */
+    static String size(long bytes) {
+        if (bytes < 1024 * 1024)
+            return String.format(Locale.ROOT, "%.1f kB", bytes / 1024.0);
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) >= 0)
+            out.write(buffer, 0, count);
+    }
+}
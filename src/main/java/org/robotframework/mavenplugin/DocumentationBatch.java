@@ -0,0 +1,125 @@
+package org.robotframework.mavenplugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.robotframework.RobotRunner;
+
+/**
+ * Main class of the JVMs forked by {@link DocumentationRunner} in batch mode.
+ * Runs a batch of documentation tool runs in one Robot Framework session, so
+ * that the interpreter, the tool and the modules and classes imported by
+ * earlier runs are reused by later ones.
+ * <p></p>
+ * Only Robot Framework classes may be used here, as forked JVMs get the test
+ * class path, the Robot Framework jar and this class, but nothing else of the
+ * plugin.
+ */
+public final class DocumentationBatch {
+
+    /**
+     * Return code recorded for a run that threw instead of returning.
+     */
+    static final int ERROR_RETURN_CODE = 255;
+
+    private DocumentationBatch() {
+    }
+
+    /**
+     * @param args file with the argument lists, see
+     *            {@link #writeArguments(File, List)}, and file to write the
+     *            results to, see {@link #readResults(File)}
+     */
+    public static void main(String[] args) throws IOException {
+        List<String[]> runArgs = readArguments(new File(args[0]));
+        DataOutputStream results = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(new File(args[1]))));
+        try {
+            run(runArgs, results);
+        } finally {
+            results.close();
+        }
+        System.exit(0);
+    }
+
+    private static void run(List<String[]> runArgs, DataOutputStream results) throws IOException {
+        RobotRunner runner = new RobotRunner();
+        try {
+            for (String[] args : runArgs) {
+                long start = System.nanoTime();
+                int returnCode;
+                try {
+                    returnCode = runner.run(args);
+                } catch (RuntimeException e) {
+                    e.printStackTrace(System.out);
+                    returnCode = ERROR_RETURN_CODE;
+                }
+                results.writeInt(returnCode);
+                results.writeLong((System.nanoTime() - start) / 1000000);
+                // Results of finished runs survive a crash of a later one.
+                results.flush();
+            }
+        } finally {
+            runner.close();
+        }
+    }
+
+    static void writeArguments(File file, List<String[]> runArgs) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(runArgs.size());
+            for (String[] args : runArgs) {
+                out.writeInt(args.length);
+                for (String arg : args)
+                    out.writeUTF(arg);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    static List<String[]> readArguments(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int runs = in.readInt();
+            List<String[]> runArgs = new ArrayList<String[]>(runs);
+            for (int i = 0; i < runs; i++) {
+                String[] args = new String[in.readInt()];
+                for (int j = 0; j < args.length; j++)
+                    args[j] = in.readUTF();
+                runArgs.add(args);
+            }
+            return runArgs;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @param file results written by a batch
+     * @return return code and duration in milliseconds of every finished run,
+     *         in run order; runs after a crash are missing
+     */
+    static List<long[]> readResults(File file) throws IOException {
+        List<long[]> results = new ArrayList<long[]>();
+        if (!file.isFile())
+            return results;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            // A partially written last result is dropped.
+            while (in.available() >= 12)
+                results.add(new long[] { in.readInt(), in.readLong() });
+            return results;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package org.robotframework.mavenplugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.robotframework.RobotFramework;
+import org.robotframework.RobotRunner;
+
+/**
+ * Runs a documentation tool, <code>libdoc</code> or <code>testdoc</code>, once
+ * per argument list. Each argument list starts with the tool name and ends with
+ * the input and the output file.
+ * <p></p>
+ * With one thread the tool runs inside this JVM, one input after another. With
+ * more threads every run gets its own forked JVM, as Robot Framework keeps
+ * global interpreter state and cannot run twice at once in one JVM. With
+ * <code>runWithPython</code> every run is a Python process either way. Runs
+ * writing the same output file stay in order within one worker, so the output
+ * files do not depend on scheduling.
+ * <p></p>
+ * In batch mode the runs of one worker share a single Robot Framework session:
+ * one {@link RobotRunner} in this JVM, or one forked JVM per worker running
+ * {@link DocumentationBatch}. The tool and everything the libraries import are
+ * then loaded once per worker instead of once per run. The duration of every
+ * run is logged. Batch mode does not apply to <code>runWithPython</code>.
+ * <p></p>
+ * A run fails when its return code is not zero. Failures are collected and
+ * reported together once all runs are done.
+ * <p></p>
+ * {@link #fork} starts a single run of any tool the same way, for callers
+ * that run it alongside other work.
+ */
+class DocumentationRunner {
+
+    /**
+     * Told about every run that succeeded.
+     */
+    interface RunListener {
+        void succeeded(String[] arguments);
+    }
+
+    private final Log log;
+
+    private final int threads;
+
+    private final boolean batch;
+
+    private final ExternalRunnerConfiguration externalRunner;
+
+    private final String classPath;
+
+    /**
+     * @param log log for the output of forked runs and for failures
+     * @param threads number of concurrent runs, 1 or less runs in this JVM
+     * @param batch whether the runs of a worker share one Robot Framework
+     *            session
+     * @param externalRunner external runner settings, may be <code>null</code>
+     * @param classPath class path of forked JVMs
+     */
+    DocumentationRunner(Log log, int threads, boolean batch, ExternalRunnerConfiguration externalRunner,
+            String classPath) {
+        this.log = log;
+        this.threads = Math.max(1, threads);
+        this.batch = batch;
+        this.externalRunner = externalRunner;
+        this.classPath = classPath;
+    }
+
+    void run(List<String[]> runArgs) throws MojoExecutionException {
+        run(runArgs, null);
+    }
+
+    /**
+     * @param runArgs argument lists, one per run
+     * @param listener told about successful runs once all are done, may be
+     *            <code>null</code>
+     */
+    void run(List<String[]> runArgs, RunListener listener) throws MojoExecutionException {
+        if (runArgs.isEmpty())
+            return;
+        List<RunResult> results;
+        if (threads == 1 && !runWithPython())
+            results = batch ? runInSession(runArgs) : runInProcess(runArgs);
+        else
+            results = runForked(runArgs);
+        if (listener != null) {
+            for (RunResult result : results) {
+                if (result.returnCode == 0)
+                    listener.succeeded(result.arguments);
+            }
+        }
+        reportFailures(results);
+    }
+
+    private List<RunResult> runInProcess(List<String[]> runArgs) {
+        List<RunResult> results = new ArrayList<RunResult>();
+        for (String[] args : runArgs) {
+            log.debug("Run arguments -> " + Arrays.toString(args));
+            results.add(new RunResult(args, RobotFramework.run(args), null));
+        }
+        return results;
+    }
+
+    private List<RunResult> runInSession(List<String[]> runArgs) {
+        List<RunResult> results = new ArrayList<RunResult>();
+        long start = System.nanoTime();
+        RobotRunner runner = new RobotRunner();
+        try {
+            for (String[] args : runArgs) {
+                log.debug("Run arguments -> " + Arrays.toString(args));
+                long runStart = System.nanoTime();
+                RunResult result = new RunResult(args, runner.run(args), null);
+                logDuration(result, (System.nanoTime() - runStart) / 1000000);
+                results.add(result);
+            }
+        } finally {
+            runner.close();
+        }
+        log.info("Ran " + runArgs.get(0)[0] + " for " + runArgs.size() + " inputs in "
+                + (System.nanoTime() - start) / 1000000 + " ms.");
+        return results;
+    }
+
+    private List<RunResult> runForked(List<String[]> runArgs) throws MojoExecutionException {
+        // Runs sharing an output file are one task, run in their given order.
+        Map<String, List<String[]>> runsByOutput = new LinkedHashMap<String, List<String[]>>();
+        for (String[] args : runArgs) {
+            String output = args[args.length - 1];
+            List<String[]> runs = runsByOutput.get(output);
+            if (runs == null) {
+                runs = new ArrayList<String[]>();
+                runsByOutput.put(output, runs);
+            }
+            runs.add(args);
+        }
+
+        List<List<String[]>> tasks = new ArrayList<List<String[]>>();
+        if (batch && !runWithPython()) {
+            // One batch per worker, each with about as many runs.
+            int workers = Math.min(threads, runsByOutput.size());
+            for (int i = 0; i < workers; i++)
+                tasks.add(new ArrayList<String[]>());
+            int next = 0;
+            for (List<String[]> runs : runsByOutput.values())
+                tasks.get(next++ % workers).addAll(runs);
+        } else {
+            tasks.addAll(runsByOutput.values());
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            List<Future<List<RunResult>>> futures = new ArrayList<Future<List<RunResult>>>();
+            for (final List<String[]> runs : tasks) {
+                futures.add(pool.submit(new Callable<List<RunResult>>() {
+                    public List<RunResult> call() throws IOException, InterruptedException {
+                        if (batch && !runWithPython())
+                            return execBatch(runs);
+                        List<RunResult> results = new ArrayList<RunResult>();
+                        for (String[] args : runs)
+                            results.add(exec(args));
+                        return results;
+                    }
+                }));
+            }
+            // Collected in submission order, so the log reads the same on
+            // every build.
+            List<RunResult> results = new ArrayList<RunResult>();
+            for (Future<List<RunResult>> future : futures) {
+                for (RunResult result : future.get()) {
+                    // Output of failed runs is logged as an error below.
+                    if (result.returnCode == 0 && result.output != null && result.output.length() > 0)
+                        log.info(result.output.trim());
+                    if (result.millis >= 0)
+                        logDuration(result, result.millis);
+                    results.add(result);
+                }
+            }
+            if (batch && !runWithPython())
+                log.info("Ran " + runArgs.get(0)[0] + " for " + runArgs.size() + " inputs in " + tasks.size()
+                        + " batches in " + (System.nanoTime() - start) / 1000000 + " ms.");
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while running " + runArgs.get(0)[0] + ".", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Failed to run " + runArgs.get(0)[0] + ": " + e.getCause().getMessage(),
+                    e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private RunResult exec(String[] args) throws IOException, InterruptedException {
+        Process process = fork(args, null);
+        String output = readFully(process.getInputStream());
+        return new RunResult(args, process.waitFor(), output);
+    }
+
+    /**
+     * Starts one run the way runs with more threads are started, without
+     * waiting for it to finish.
+     *
+     * @param args arguments starting with the tool name
+     * @param redirect file for the output of the run, or <code>null</code> to
+     *            read it from the process
+     */
+    Process fork(String[] args, File redirect) throws IOException {
+        List<String> command = new ArrayList<String>();
+        if (!runWithPython())
+            command.addAll(javaCommand(RobotFramework.class));
+        command.addAll(Arrays.asList(args));
+        return start(command, classPath, redirect);
+    }
+
+    private List<RunResult> execBatch(List<String[]> runs) throws IOException, InterruptedException {
+        File arguments = File.createTempFile("robot-batch", ".args");
+        File resultFile = new File(arguments.getPath() + ".results");
+        try {
+            DocumentationBatch.writeArguments(arguments, runs);
+            List<String> command = javaCommand(DocumentationBatch.class);
+            command.add(arguments.getAbsolutePath());
+            command.add(resultFile.getAbsolutePath());
+            // The batch class comes from the plugin, which is not on the
+            // class path of the project.
+            Process process = start(command, classPath + File.pathSeparator + codeSource(DocumentationBatch.class),
+                    null);
+            String output = readFully(process.getInputStream());
+            int exitCode = process.waitFor();
+            List<long[]> finished = DocumentationBatch.readResults(resultFile);
+
+            // The output is shared by the whole batch: it is logged with the
+            // first failed run, or with the last run if all succeeded.
+            List<RunResult> results = new ArrayList<RunResult>();
+            boolean outputTaken = false;
+            for (int i = 0; i < runs.size(); i++) {
+                boolean ran = i < finished.size();
+                int returnCode = ran ? (int) finished.get(i)[0] : exitCode != 0 ? exitCode
+                        : DocumentationBatch.ERROR_RETURN_CODE;
+                boolean takesOutput = !outputTaken && (returnCode != 0 || i == runs.size() - 1);
+                outputTaken |= takesOutput;
+                results.add(new RunResult(runs.get(i), returnCode, takesOutput ? output : null,
+                        ran ? finished.get(i)[1] : -1));
+            }
+            return results;
+        } finally {
+            arguments.delete();
+            resultFile.delete();
+        }
+    }
+
+    private List<String> javaCommand(Class<?> mainClass) {
+        List<String> command = new ArrayList<String>();
+        command.add(AbstractMojoWithLoadedClasspath.join(File.separator, System.getProperty("java.home"), "bin",
+                "java"));
+        if (externalRunner != null)
+            command.addAll(externalRunner.getJvmArgs());
+        command.add(mainClass.getCanonicalName());
+        return command;
+    }
+
+    private Process start(List<String> command, String processClassPath, File redirect) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        if (redirect != null)
+            builder.redirectOutput(redirect);
+        Map<String, String> environment = externalRunner != null ? externalRunner.getEnvironmentVariables()
+                : new LinkedHashMap<String, String>();
+        builder.environment().putAll(environment);
+        if (!runWithPython()) {
+            if (environment.containsKey("CLASSPATH"))
+                processClassPath = environment.get("CLASSPATH") + File.pathSeparator + processClassPath;
+            builder.environment().put("CLASSPATH", processClassPath);
+        }
+        log.debug("Run arguments -> " + command);
+        return builder.start();
+    }
+
+    private static String codeSource(Class<?> type) throws IOException {
+        try {
+            return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+        } catch (URISyntaxException e) {
+            throw new IOException("Cannot locate " + type.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void logDuration(RunResult result, long millis) {
+        log.info(result.getInput() + ": " + millis + " ms" + (result.returnCode != 0 ? ", failed" : ""));
+    }
+
+    private void reportFailures(List<RunResult> results) throws MojoExecutionException {
+        List<String> failures = new ArrayList<String>();
+        for (RunResult result : results) {
+            if (result.returnCode != 0) {
+                if (result.output != null && result.output.length() > 0)
+                    log.error(result.output.trim());
+                failures.add(result.getInput() + " (return code " + result.returnCode + ")");
+            }
+        }
+        if (!failures.isEmpty()) {
+            StringBuilder message = new StringBuilder();
+            message.append(results.get(0).arguments[0]).append(" failed for ").append(failures.size())
+                    .append(" of ").append(results.size()).append(" inputs:");
+            for (String failure : failures)
+                message.append(System.getProperty("line.separator")).append("  ").append(failure);
+            throw new MojoExecutionException(message.toString());
+        }
+    }
+
+    private boolean runWithPython() {
+        return externalRunner != null && externalRunner.getRunWithPython();
+    }
+
+    static String readFully(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = input.read(buffer)) >= 0)
+                output.write(buffer, 0, count);
+            return output.toString();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static class RunResult {
+
+        final String[] arguments;
+
+        final int returnCode;
+
+        final String output;
+
+        final long millis;
+
+        RunResult(String[] arguments, int returnCode, String output) {
+            this(arguments, returnCode, output, -1);
+        }
+
+        RunResult(String[] arguments, int returnCode, String output, long millis) {
+            this.arguments = arguments;
+            this.returnCode = returnCode;
+            this.output = output;
+            this.millis = millis;
+        }
+
+        String getInput() {
+            return arguments.length >= 2 ? arguments[arguments.length - 2] : arguments[0];
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Tells flaky tests from the results of past runs. A test is flaky when
+ * <ul>
+ * <li>its status changed from pass to fail and back, or from fail to pass
+ * and back, at least the given number of times over the runs, as a test
+ * that is broken or fixed once only changes once; or</li>
+ * <li>it failed and passed when re-executed, as seen in an output that
+ * rebot merged with <code>--merge</code>.</li>
+ * </ul>
+ * Runs are ordered by the time their output was generated, and only the
+ * latest ones are read. Outputs are streamed with StAX, compressed ones
+ * decompressed as they are read, and only the statuses of each test are
+ * kept in memory.
+ */
+class FlakyTests {
+
+    private static final String MERGED = "has been re-executed and results merged";
+
+    private static final String OLD_STATUS = "class=\"old-status\"";
+
+    private static final String FAILED = "class=\"fail\">FAIL</span>";
+
+    private final int minFlips;
+
+    /** By test long name, in the order first seen. */
+    private final Map<String, History> histories = new LinkedHashMap<String, History>();
+
+    private int runs;
+
+    /**
+     * @param minFlips number of status changes after which a test is flaky
+     */
+    FlakyTests(int minFlips) {
+        this.minFlips = minFlips;
+    }
+
+    /**
+     * Reads the latest outputs, in the order they were generated.
+     *
+     * @param outputs outputs in any order
+     * @param maxRuns number of latest outputs to read, 0 or less for all
+     * @return the outputs read
+     */
+    List<File> read(List<File> outputs, int maxRuns) throws IOException {
+        final Map<File, String> generated = new HashMap<File, String>();
+        for (File output : outputs)
+            generated.put(output, generated(output));
+        List<File> ordered = new ArrayList<File>(outputs);
+        Collections.sort(ordered, new Comparator<File>() {
+            public int compare(File a, File b) {
+                return generated.get(a).compareTo(generated.get(b));
+            }
+        });
+        if (maxRuns > 0 && ordered.size() > maxRuns)
+            ordered = ordered.subList(ordered.size() - maxRuns, ordered.size());
+        for (File output : ordered)
+            read(output);
+        return ordered;
+    }
+
+    /**
+     * Adds the statuses of the tests of an output as the latest run.
+     */
+    void read(File output) throws IOException {
+        runs++;
+        try {
+            InputStream in = CompressedOutputs.open(output);
+            try {
+                XMLStreamReader reader = OutputMerger.newInputFactory().createXMLStreamReader(in);
+                try {
+                    readTests(reader);
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid output file " + output + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void readTests(XMLStreamReader reader) throws XMLStreamException {
+        // Names of the open suites and test, and their element depths.
+        Deque<String> names = new ArrayDeque<String>();
+        Deque<Integer> depths = new ArrayDeque<Integer>();
+        String status = null;
+        String statusText = null;
+        StringBuilder message = null;
+        boolean inTest = false;
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String element = reader.getLocalName();
+                if (names.isEmpty() && (element.equals("statistics") || element.equals("errors"))) {
+                    skipElement(reader);
+                    depth--;
+                } else if (element.equals("suite") || (element.equals("test") && !inTest)) {
+                    String name = reader.getAttributeValue(null, "name");
+                    names.push(names.isEmpty() ? name : names.peek() + "." + name);
+                    depths.push(depth);
+                    inTest = element.equals("test");
+                } else if (inTest && element.equals("status") && depths.peek() == depth - 1) {
+                    status = reader.getAttributeValue(null, "status");
+                    message = new StringBuilder();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (!depths.isEmpty() && depths.peek() == depth) {
+                    String name = names.pop();
+                    depths.pop();
+                    if (inTest && status != null)
+                        add(name, status, statusText);
+                    inTest = false;
+                    status = null;
+                    statusText = null;
+                } else if (message != null) {
+                    statusText = message.toString();
+                }
+                message = null;
+                depth--;
+            } else if (message != null && (event == XMLStreamConstants.CHARACTERS
+                    || event == XMLStreamConstants.CDATA)) {
+                message.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+    }
+
+    private void add(String name, String status, String message) {
+        boolean passed = "PASS".equals(status);
+        if (!passed && !"FAIL".equals(status))
+            return;
+        History history = histories.get(name);
+        if (history == null) {
+            history = new History();
+            histories.put(name, history);
+        }
+        if (history.runs > 0 && history.passed != passed)
+            history.flips++;
+        history.passed = passed;
+        history.runs++;
+        if (passed && message.contains(MERGED)) {
+            int old = message.indexOf(OLD_STATUS);
+            if (old >= 0 && message.indexOf(FAILED, old) >= 0)
+                history.passedOnRerun++;
+        }
+    }
+
+    /**
+     * @return the long names of the flaky tests and why they are flaky, in
+     *         the order first seen
+     */
+    Map<String, String> flaky() {
+        Map<String, String> flaky = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, History> entry : histories.entrySet()) {
+            History history = entry.getValue();
+            if (history.passedOnRerun > 0)
+                flaky.put(entry.getKey(), "passed on rerun " + history.passedOnRerun + " of " + history.runs
+                        + " runs");
+            else if (minFlips > 0 && history.flips >= minFlips)
+                flaky.put(entry.getKey(), "changed status " + history.flips + " times in " + history.runs
+                        + " runs");
+        }
+        return flaky;
+    }
+
+    int runs() {
+        return runs;
+    }
+
+    int tests() {
+        return histories.size();
+    }
+
+    /**
+     * @return when the output was generated, as in its <code>robot</code>
+     *         element, or else when it was last modified
+     */
+    private static String generated(File output) throws IOException {
+        try {
+            InputStream in = CompressedOutputs.open(output);
+            try {
+                XMLStreamReader reader = OutputMerger.newInputFactory().createXMLStreamReader(in);
+                try {
+                    reader.nextTag();
+                    String generated = reader.getAttributeValue(null, "generated");
+                    if (generated != null)
+                        return generated;
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid output file " + output + ": " + e.getMessage(), e);
+        }
+        return new SimpleDateFormat("yyyyMMdd HH:mm:ss.SSS").format(new Date(output.lastModified()));
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    private static class History {
+
+        int runs;
+
+        boolean passed;
+
+        int flips;
+
+        int passedOnRerun;
+    }
+}
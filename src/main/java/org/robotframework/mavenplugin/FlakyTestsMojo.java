@@ -0,0 +1,107 @@
+package org.robotframework.mavenplugin;
+
+/*
+ * Copyright 2013 Nokia Siemens Networks Oyj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Finds flaky tests in the outputs of past runs and writes them to a quarantine list, which the acceptance-test goal
+ * reads with its <code>quarantineFile</code> and <code>quarantineMode</code> parameters to make them non-critical,
+ * exclude them, or run only them in a separate execution. Quarantined tests then no longer fail the build or trigger
+ * reruns.
+ *
+ * A test is flaky when its status changed back and forth at least <code>minFlips</code> times over the latest
+ * <code>maxRuns</code> outputs, or when it passed on rerun in an output that rebot merged. Runs are ordered by when
+ * their output was generated. The outputs, <code>output*.xml</code> and <code>output*.xml.gz</code>, are read from
+ * the output directory and from the history directories, where outputs of past builds can be archived, as
+ * <code>mvn clean</code> removes the output directory.
+ *
+ * @goal flaky-tests
+ * @phase pre-integration-test
+ */
+public class FlakyTestsMojo
+        extends AbstractMojoWithLoadedClasspath {
+
+    protected void subclassExecute()
+            throws MojoExecutionException, MojoFailureException {
+        List<File> outputs = new ArrayList<File>();
+        if (outputDirectory != null && outputDirectory.isDirectory())
+            outputs.addAll(RebotMojo.findOutputs(outputDirectory));
+        if (historyDirectories != null) {
+            for (File directory : historyDirectories) {
+                if (directory.isDirectory())
+                    outputs.addAll(RebotMojo.findOutputs(directory));
+            }
+        }
+        try {
+            FlakyTests tests = new FlakyTests(minFlips);
+            tests.read(outputs, maxRuns);
+            Map<String, String> flaky = tests.flaky();
+            for (Map.Entry<String, String> entry : flaky.entrySet())
+                getLog().warn("Flaky test " + entry.getKey() + ": " + entry.getValue() + ".");
+            Quarantine.write(quarantineFile, flaky);
+            getLog().info("Quarantined " + flaky.size() + " of " + tests.tests() + " tests in " + tests.runs()
+                    + " runs to " + quarantineFile + ".");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to find flaky tests: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Directory of the outputs of the latest runs.
+     *
+     * @parameter default-value="${project.build.directory}/robotframework-reports"
+     */
+    private File outputDirectory;
+
+    /**
+     * More directories with outputs of past runs, such as an archive kept outside the build directory.
+     *
+     * @parameter
+     */
+    private File[] historyDirectories;
+
+    /**
+     * Number of latest runs to tell flaky tests from. 0 reads all outputs.
+     *
+     * @parameter default-value="10"
+     */
+    private int maxRuns;
+
+    /**
+     * Number of times a test has to change status between passed and failed to be flaky. A test that breaks or is
+     * fixed changes once. 0 only quarantines tests that passed on rerun.
+     *
+     * @parameter default-value="2"
+     */
+    private int minFlips;
+
+    /**
+     * The quarantine list to write, one test long name per line.
+     *
+     * @parameter default-value="${project.build.directory}/robotframework/quarantine.txt"
+     */
+    private File quarantineFile;
+
+}
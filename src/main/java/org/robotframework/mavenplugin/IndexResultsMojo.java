@@ -0,0 +1,87 @@
+package org.robotframework.mavenplugin;
+
+/*
+ * Copyright 2013 Nokia Siemens Networks Oyj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Adds the results in the output files to a local database kept across builds, so that the history of suites,
+ * tests and keywords, their statuses, durations and tags, can be queried with SQL instead of reading old outputs.
+ *
+ * The database is an embedded HSQLDB file database, opened with the JDBC URL
+ * <code>jdbc:hsqldb:file:&lt;database&gt;</code> while no build is writing to it. Outputs are streamed and their
+ * rows inserted in batches, so large outputs take little memory. Outputs already in the database, with the same path,
+ * size and modification time, are skipped.
+ *
+ * @goal index-results
+ * @phase post-integration-test
+ */
+public class IndexResultsMojo
+        extends AbstractMojoWithLoadedClasspath {
+
+    protected void subclassExecute()
+            throws MojoExecutionException, MojoFailureException {
+        if (outputDirectory == null || !outputDirectory.isDirectory()) {
+            getLog().info("No outputs to index in " + outputDirectory + ".");
+            return;
+        }
+        List<File> outputs = RebotMojo.findOutputs(outputDirectory);
+        try {
+            ResultIndex index = ResultIndex.open(database);
+            try {
+                int skipped = 0;
+                for (File output : outputs) {
+                    if (index.contains(output)) {
+                        skipped++;
+                        continue;
+                    }
+                    long start = System.currentTimeMillis();
+                    long[] added = index.add(output);
+                    getLog().info("Indexed " + added[0] + " suites, " + added[1] + " tests and " + added[2]
+                            + " keywords of " + output + " in " + (System.currentTimeMillis() - start) + " ms.");
+                }
+                if (skipped > 0)
+                    getLog().info("Skipped " + skipped + " outputs already in " + database + ".");
+            } finally {
+                index.close();
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to index results: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Directory of the output files to index, <code>output*.xml</code> and <code>output*.xml.gz</code>.
+     *
+     * @parameter default-value="${project.build.directory}/robotframework-reports"
+     */
+    private File outputDirectory;
+
+    /**
+     * Path of the database files, without extension. By default in the build directory; to keep the history across
+     * <code>mvn clean</code>, point it outside, at a directory ignored by version control.
+     *
+     * @parameter default-value="${project.build.directory}/robotframework/results"
+     */
+    private File database;
+
+}
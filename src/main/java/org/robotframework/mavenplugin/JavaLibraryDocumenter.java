@@ -0,0 +1,155 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Documents static Java keyword libraries given by class name without
+ * starting Robot Framework, see {@link JavaLibrarySpec}.
+ * <p></p>
+ * For <code>.xml</code> outputs the spec is the output. For other outputs the
+ * spec is written to a temporary directory and libdoc is run on the spec
+ * instead of the class, so Robot Framework only renders it. Runs that cannot
+ * be handled here, such as Python libraries, resource files, dynamic libraries
+ * or unknown libdoc options, are left for libdoc unchanged.
+ */
+class JavaLibraryDocumenter {
+
+    private final Log log;
+
+    private final ClassLoader loader;
+
+    private final List<File> sourceDirectories;
+
+    private File specDirectory;
+
+    /**
+     * @param log log for skipped libraries
+     * @param loader loader of the project classes
+     * @param sourceDirectories source roots whose Javadoc is used
+     */
+    JavaLibraryDocumenter(Log log, ClassLoader loader, List<File> sourceDirectories) {
+        this.log = log;
+        this.loader = loader;
+        this.sourceDirectories = sourceDirectories;
+    }
+
+    /**
+     * @param runArgs libdoc argument lists
+     * @param listener told about outputs written here, may be
+     *            <code>null</code>
+     * @return the argument lists libdoc still has to run, with the spec in
+     *         place of the class where only rendering is left
+     */
+    List<String[]> document(List<String[]> runArgs, DocumentationRunner.RunListener listener) throws IOException {
+        List<String[]> remaining = new ArrayList<String[]>();
+        int reflected = 0;
+        int rendered = 0;
+        for (String[] args : runArgs) {
+            JavaLibrarySpec spec = reflect(args);
+            if (spec == null) {
+                remaining.add(args);
+                continue;
+            }
+            reflected++;
+            String output = args[args.length - 1];
+            if (output.toLowerCase().endsWith(".xml")) {
+                spec.write(new File(output));
+                if (listener != null)
+                    listener.succeeded(args);
+            } else {
+                File specFile = new File(getSpecDirectory(), rendered++ + ".xml");
+                spec.write(specFile);
+                String[] renderArgs = args.clone();
+                renderArgs[renderArgs.length - 2] = specFile.getPath();
+                remaining.add(renderArgs);
+            }
+        }
+        if (reflected > 0)
+            log.info("Documented " + reflected + " Java libraries by reflection, " + rendered
+                    + " of them are rendered by libdoc.");
+        return remaining;
+    }
+
+    /**
+     * Deletes the specs written for rendering.
+     */
+    void cleanUp() throws IOException {
+        if (specDirectory != null)
+            FileUtils.deleteDirectory(specDirectory);
+    }
+
+    private JavaLibrarySpec reflect(String[] args) {
+        String input = args[args.length - 2];
+        if (new File(input).exists() || !isClassName(input))
+            return null;
+        String name = null;
+        String version = null;
+        String docFormat = null;
+        for (int i = 1; i < args.length - 2; i += 2) {
+            if (args[i].equals("--name"))
+                name = args[i + 1];
+            else if (args[i].equals("--version"))
+                version = args[i + 1];
+            else if (args[i].equals("--docformat"))
+                docFormat = args[i + 1];
+            else if (!args[i].equals("--pythonpath"))
+                return null;
+        }
+        Class<?> library;
+        try {
+            library = Class.forName(input, false, loader);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (LinkageError e) {
+            log.debug("Cannot load " + input + ", left for libdoc: " + e);
+            return null;
+        }
+        JavaLibrarySpec spec;
+        try {
+            spec = JavaLibrarySpec.reflect(library, JavadocComments.find(sourceDirectories, library));
+        } catch (LinkageError e) {
+            log.debug("Cannot reflect " + input + ", left for libdoc: " + e);
+            return null;
+        }
+        if (spec == null) {
+            log.debug(input + " is not a static Java library, left for libdoc.");
+            return null;
+        }
+        if (name != null)
+            spec.setName(name);
+        if (version != null)
+            spec.setVersion(version);
+        if (docFormat != null)
+            spec.setDocFormat(docFormat);
+        return spec;
+    }
+
+    private static boolean isClassName(String input) {
+        if (input.isEmpty())
+            return false;
+        for (String part : input.split("\\.", -1)) {
+            if (part.isEmpty() || !Character.isJavaIdentifierStart(part.charAt(0)))
+                return false;
+            for (int i = 1; i < part.length(); i++) {
+                if (!Character.isJavaIdentifierPart(part.charAt(i)))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private File getSpecDirectory() throws IOException {
+        if (specDirectory == null) {
+            specDirectory = File.createTempFile("libdoc-specs", "");
+            if (!specDirectory.delete() || !specDirectory.mkdirs())
+                throw new IOException("Spec directory cannot be created: " + specDirectory.getAbsolutePath());
+        }
+        return specDirectory;
+    }
+}
@@ -0,0 +1,441 @@
+package org.robotframework.mavenplugin;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Libdoc spec of a static Java keyword library, built by reflection instead of
+ * by importing the library into Robot Framework.
+ * <p></p>
+ * Keywords, arguments, scope, version and documentation format follow what
+ * libdoc of Robot Framework 3.2 reports when a Java library is given by class
+ * name: public methods including inherited ones, overloads merged into one
+ * keyword with optional arguments, a trailing array or <code>List</code> as
+ * varargs and a trailing <code>Map</code> as kwargs. Where the source is
+ * available, its Javadoc gives the documentation, tags and argument names.
+ * <p></p>
+ * Libraries that need Robot Framework itself to be understood are not
+ * supported: dynamic and hybrid libraries, and overloads combined with varargs
+ * or kwargs. {@link #reflect(Class, JavadocComments)} returns
+ * <code>null</code> for them.
+ */
+class JavaLibrarySpec {
+
+    private static final Set<String> DYNAMIC_API = new HashSet<String>(Arrays.asList("getKeywordNames",
+            "get_keyword_names", "runKeyword", "run_keyword"));
+
+    private static final Pattern TAGS = Pattern.compile("\\s*tags:(.*)", Pattern.CASE_INSENSITIVE);
+
+    private String name;
+
+    private String version = "";
+
+    private String docFormat = "ROBOT";
+
+    private String scope = "TEST";
+
+    private String doc = "";
+
+    private final List<Invocable> inits = new ArrayList<Invocable>();
+
+    private final List<Invocable> keywords = new ArrayList<Invocable>();
+
+    private JavaLibrarySpec() {
+    }
+
+    /**
+     * @param library the library class
+     * @param comments Javadoc of the library, may be <code>null</code>
+     * @return the spec, or <code>null</code> if the library is not supported
+     */
+    static JavaLibrarySpec reflect(Class<?> library, JavadocComments comments) {
+        int modifiers = library.getModifiers();
+        if (!Modifier.isPublic(modifiers) || Modifier.isAbstract(modifiers) || library.isInterface()
+                || library.getConstructors().length == 0)
+            return null;
+
+        Set<String> objectMethods = new HashSet<String>();
+        for (Method method : Object.class.getMethods())
+            objectMethods.add(method.getName());
+        // Keyed by method name, in keyword order.
+        Map<String, List<Method>> methods = new TreeMap<String, List<Method>>();
+        for (Method method : library.getMethods()) {
+            if (DYNAMIC_API.contains(method.getName()))
+                return null;
+            if (method.isBridge() || method.isSynthetic() || method.getName().startsWith("_")
+                    || objectMethods.contains(method.getName()))
+                continue;
+            List<Method> overloads = methods.get(method.getName());
+            if (overloads == null) {
+                overloads = new ArrayList<Method>();
+                methods.put(method.getName(), overloads);
+            }
+            overloads.add(method);
+        }
+
+        JavaLibrarySpec spec = new JavaLibrarySpec();
+        spec.name = library.getName();
+        spec.version = staticField(library, "ROBOT_LIBRARY_VERSION", spec.version);
+        spec.docFormat = staticField(library, "ROBOT_LIBRARY_DOC_FORMAT", spec.docFormat).toUpperCase(Locale.ENGLISH);
+        spec.scope = scope(staticField(library, "ROBOT_LIBRARY_SCOPE", spec.scope));
+        if (comments != null)
+            spec.doc = comments.getClassDoc();
+
+        List<Class<?>[]> constructors = new ArrayList<Class<?>[]>();
+        for (Constructor<?> constructor : library.getConstructors())
+            constructors.add(constructor.getParameterTypes());
+        Invocable init = Invocable.create(null, library.getSimpleName(), constructors, comments);
+        if (init == null)
+            return null;
+        if (!init.arguments.isEmpty())
+            spec.inits.add(init);
+
+        for (List<Method> overloads : methods.values()) {
+            List<Class<?>[]> signatures = new ArrayList<Class<?>[]>();
+            for (Method method : overloads)
+                signatures.add(method.getParameterTypes());
+            String methodName = overloads.get(0).getName();
+            Invocable keyword = Invocable.create(printableName(methodName), methodName, signatures, comments);
+            if (keyword == null)
+                return null;
+            spec.keywords.add(keyword);
+        }
+        sortKeywords(spec.keywords);
+        return spec;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    void setVersion(String version) {
+        this.version = version;
+    }
+
+    void setDocFormat(String docFormat) {
+        this.docFormat = docFormat.toUpperCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Writes the spec in the format libdoc writes for <code>.xml</code>
+     * outputs.
+     */
+    void write(File output) throws IOException {
+        SimpleDateFormat generated = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        generated.setTimeZone(TimeZone.getTimeZone("UTC"));
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(output));
+        try {
+            XMLStreamWriter out = XMLOutputFactory.newInstance().createXMLStreamWriter(stream, "UTF-8");
+            out.writeStartDocument("UTF-8", "1.0");
+            out.writeCharacters("\n");
+            out.writeStartElement("keywordspec");
+            out.writeAttribute("format", xmlText(docFormat));
+            out.writeAttribute("type", "LIBRARY");
+            out.writeAttribute("generated", generated.format(new Date()));
+            out.writeAttribute("scope", scope);
+            out.writeAttribute("name", xmlText(name));
+            out.writeAttribute("specversion", "2");
+            out.writeAttribute("namedargs", "true");
+            out.writeCharacters("\n");
+            writeElement(out, "version", version);
+            writeElement(out, "scope", oldStyleScope(scope));
+            writeElement(out, "namedargs", "yes");
+            writeElement(out, "doc", doc);
+            for (Invocable init : inits)
+                init.write(out, "init");
+            for (Invocable keyword : keywords)
+                keyword.write(out, "kw");
+            out.writeEndElement();
+            out.writeCharacters("\n");
+            out.writeEndDocument();
+            out.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Writing library spec " + output + " failed: " + e.getMessage(), e);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static void writeElement(XMLStreamWriter out, String element, String text) throws XMLStreamException {
+        out.writeStartElement(element);
+        out.writeCharacters(xmlText(text));
+        out.writeEndElement();
+        out.writeCharacters("\n");
+    }
+
+    /**
+     * Replaces the characters XML 1.0 does not allow, such as control
+     * characters a Javadoc may hold, which the stream writer would pass
+     * through into an unparseable spec.
+     */
+    static String xmlText(String text) {
+        StringBuilder result = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean pair = Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1));
+            boolean valid = pair || c == '\t' || c == '\n' || c == '\r'
+                    || c >= 0x20 && c <= 0xFFFD && !Character.isSurrogate(c);
+            if (!valid && result == null)
+                result = new StringBuilder(text.length()).append(text, 0, i);
+            if (result != null)
+                result.append(valid ? c : '\uFFFD');
+            if (pair) {
+                if (result != null)
+                    result.append(text.charAt(i + 1));
+                i++;
+            }
+        }
+        return result != null ? result.toString() : text;
+    }
+
+    /**
+     * Converts a method name to a keyword name like Robot Framework does, for
+     * example <code>getHTTPStatus2</code> to <code>Get HTTP Status 2</code>.
+     */
+    static String printableName(String methodName) {
+        String string = methodName.replace('_', ' ').trim();
+        List<String> parts = new ArrayList<String>(Arrays.asList(string.split("\\s+")));
+        if (parts.size() == 1 && !isLowerCaseWord(string))
+            parts = splitCamelCase(string);
+        StringBuilder result = new StringBuilder();
+        for (String part : parts) {
+            if (part.isEmpty())
+                continue;
+            if (result.length() > 0)
+                result.append(' ');
+            result.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+        }
+        return result.toString();
+    }
+
+    private static boolean isLowerCaseWord(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (!Character.isLetter(string.charAt(i)) || !Character.isLowerCase(string.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    private static List<String> splitCamelCase(String string) {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < string.length(); i++) {
+            char previous = i > 0 ? string.charAt(i - 1) : ' ';
+            char current = string.charAt(i);
+            char next = i + 1 < string.length() ? string.charAt(i + 1) : ' ';
+            if (isCamelCaseBoundary(previous, current, next)) {
+                if (token.length() > 0)
+                    tokens.add(token.toString());
+                token.setLength(0);
+            }
+            token.append(current);
+        }
+        if (token.length() > 0)
+            tokens.add(token.toString());
+        return tokens;
+    }
+
+    private static boolean isCamelCaseBoundary(char previous, char current, char next) {
+        if (Character.isDigit(previous))
+            return !Character.isDigit(current);
+        if (Character.isUpperCase(current))
+            return Character.isLowerCase(next) || Character.isLetter(previous) && !Character.isUpperCase(previous);
+        return Character.isDigit(current);
+    }
+
+    private static String staticField(Class<?> library, String name, String defaultValue) {
+        try {
+            Field field = library.getField(name);
+            if (!Modifier.isStatic(field.getModifiers()))
+                return defaultValue;
+            Object value = field.get(null);
+            return value != null ? value.toString() : defaultValue;
+        } catch (NoSuchFieldException e) {
+            return defaultValue;
+        } catch (IllegalAccessException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String scope(String value) {
+        String normalized = value.toUpperCase(Locale.ENGLISH).replace(" ", "").replace("_", "");
+        if (normalized.equals("GLOBAL"))
+            return "GLOBAL";
+        if (normalized.equals("TESTSUITE") || normalized.equals("SUITE"))
+            return "SUITE";
+        return "TEST";
+    }
+
+    private static String oldStyleScope(String scope) {
+        if (scope.equals("GLOBAL"))
+            return "global";
+        if (scope.equals("SUITE"))
+            return "test suite";
+        return "test case";
+    }
+
+    private static void sortKeywords(List<Invocable> keywords) {
+        Map<String, Invocable> sorted = new TreeMap<String, Invocable>();
+        for (Invocable keyword : keywords)
+            sorted.put(keyword.name.toLowerCase(Locale.ENGLISH) + '\0' + keyword.name, keyword);
+        keywords.clear();
+        keywords.addAll(sorted.values());
+    }
+
+    /**
+     * A keyword or the library initialization.
+     */
+    private static class Invocable {
+
+        final String name;
+
+        final List<String> arguments = new ArrayList<String>();
+
+        String doc = "";
+
+        final List<String> tags = new ArrayList<String>();
+
+        private Invocable(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param name keyword name, <code>null</code> for the initialization
+         * @param javaName method name or simple class name
+         * @param signatures parameter types of all overloads
+         * @param comments Javadoc of the library, may be <code>null</code>
+         * @return the keyword, or <code>null</code> if overloads use varargs or
+         *         kwargs
+         */
+        static Invocable create(String name, String javaName, List<Class<?>[]> signatures,
+                JavadocComments comments) {
+            Invocable invocable = new Invocable(name);
+            JavadocComments.Declaration declaration = null;
+            if (comments != null) {
+                for (Class<?>[] signature : signatures) {
+                    declaration = comments.find(javaName, signature);
+                    if (declaration != null)
+                        break;
+                }
+            }
+
+            if (signatures.size() == 1) {
+                Class<?>[] types = signatures.get(0);
+                List<String> names = declaration != null ? declaration.getParameterNames() : null;
+                int positional = types.length;
+                boolean kwargs = positional > 0 && Map.class.isAssignableFrom(types[positional - 1]);
+                if (kwargs)
+                    positional--;
+                boolean varargs = positional > 0 && (types[positional - 1].isArray()
+                        || List.class.isAssignableFrom(types[positional - 1]));
+                if (varargs)
+                    positional--;
+                for (int i = 0; i < positional; i++)
+                    invocable.arguments.add(names != null ? names.get(i) : "arg" + (i + 1));
+                if (varargs)
+                    invocable.arguments.add("*" + (names != null ? names.get(positional) : "varargs"));
+                if (kwargs)
+                    invocable.arguments.add("**" + (names != null ? names.get(types.length - 1) : "kwargs"));
+            } else {
+                // Overloads become one keyword whose extra arguments are
+                // optional, as Robot Framework picks the overload by count.
+                int min = Integer.MAX_VALUE;
+                int max = 0;
+                for (Class<?>[] types : signatures) {
+                    if (types.length > 0 && (types[types.length - 1].isArray()
+                            || List.class.isAssignableFrom(types[types.length - 1])
+                            || Map.class.isAssignableFrom(types[types.length - 1])))
+                        return null;
+                    min = Math.min(min, types.length);
+                    max = Math.max(max, types.length);
+                }
+                for (int i = 0; i < max; i++)
+                    invocable.arguments.add("arg" + (i + 1) + (i >= min ? "=" : ""));
+            }
+
+            if (declaration != null)
+                invocable.setDoc(declaration.getDoc());
+            return invocable;
+        }
+
+        private void setDoc(String javadoc) {
+            doc = javadoc.trim();
+            if (doc.isEmpty())
+                return;
+            String[] lines = doc.split("\n");
+            Matcher matcher = TAGS.matcher(lines[lines.length - 1]);
+            if (!matcher.matches())
+                return;
+            doc = joinLines(Arrays.copyOf(lines, lines.length - 1)).trim();
+            // Normalized like Robot Framework tags: sorted and deduplicated
+            // ignoring case and spaces.
+            Map<String, String> normalized = new TreeMap<String, String>();
+            for (String tag : matcher.group(1).split(",")) {
+                tag = tag.trim();
+                String key = tag.toLowerCase(Locale.ENGLISH).replace(" ", "");
+                if (!tag.isEmpty() && !normalized.containsKey(key))
+                    normalized.put(key, tag);
+            }
+            tags.addAll(normalized.values());
+        }
+
+        private static String joinLines(String[] lines) {
+            StringBuilder result = new StringBuilder();
+            for (String line : lines) {
+                if (result.length() > 0)
+                    result.append('\n');
+                result.append(line);
+            }
+            return result.toString();
+        }
+
+        void write(XMLStreamWriter out, String element) throws XMLStreamException {
+            out.writeStartElement(element);
+            if (name != null)
+                out.writeAttribute("name", xmlText(name));
+            out.writeCharacters("\n");
+            out.writeStartElement("arguments");
+            out.writeCharacters("\n");
+            for (String argument : arguments)
+                writeElement(out, "arg", argument);
+            out.writeEndElement();
+            out.writeCharacters("\n");
+            writeElement(out, "doc", doc);
+            if (!tags.isEmpty()) {
+                out.writeStartElement("tags");
+                out.writeCharacters("\n");
+                for (String tag : tags)
+                    writeElement(out, "tag", tag);
+                out.writeEndElement();
+                out.writeCharacters("\n");
+            }
+            out.writeEndElement();
+            out.writeCharacters("\n");
+        }
+    }
+}
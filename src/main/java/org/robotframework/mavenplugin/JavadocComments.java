@@ -0,0 +1,206 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Javadoc comments of a top-level class and of its constructors and methods,
+ * read from the Java source file without compiling it.
+ * <p></p>
+ * Only what libdoc needs is understood: the comment text, and the name and
+ * parameters of the declaration that follows it. Comment text is cleaned up
+ * the way libdoc does for Java sources: the leading <code>*</code> and
+ * whitespace of every line are removed, block tags are kept.
+ */
+class JavadocComments {
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*\\*(.*?)\\*/", Pattern.DOTALL);
+
+    private static final Pattern ANNOTATION = Pattern.compile("@[\\w.]+(\\s*\\([^)]*\\))?");
+
+    private static final Pattern LINE_COMMENT = Pattern.compile("//[^\\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+
+    private static final Pattern CLASS = Pattern.compile("\\b(class|interface|enum)\\s+(\\w+)");
+
+    private static final Pattern INVOCABLE = Pattern.compile("(\\w+)\\s*\\(([^)]*)\\)");
+
+    private String classDoc = "";
+
+    private final List<Declaration> declarations = new ArrayList<Declaration>();
+
+    private JavadocComments() {
+    }
+
+    /**
+     * @param sourceDirectories source roots to look for the class in
+     * @param type a top-level class
+     * @return its comments, or <code>null</code> if no source is found
+     */
+    static JavadocComments find(List<File> sourceDirectories, Class<?> type) {
+        if (type.getEnclosingClass() != null)
+            return null;
+        String path = type.getName().replace('.', File.separatorChar) + ".java";
+        for (File directory : sourceDirectories) {
+            File source = new File(directory, path);
+            if (source.isFile()) {
+                try {
+                    return parse(new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8),
+                            type.getSimpleName());
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    static JavadocComments parse(String source, String className) {
+        JavadocComments comments = new JavadocComments();
+        Matcher comment = COMMENT.matcher(source);
+        while (comment.find()) {
+            String doc = cleanUp(comment.group(1));
+            String declaration = declarationAfter(source, comment.end());
+            Matcher type = CLASS.matcher(declaration);
+            if (type.find()) {
+                if (type.group(2).equals(className))
+                    comments.classDoc = doc;
+                continue;
+            }
+            Matcher invocable = INVOCABLE.matcher(declaration);
+            if (invocable.find())
+                comments.declarations.add(new Declaration(invocable.group(1), parameters(invocable.group(2)), doc));
+        }
+        return comments;
+    }
+
+    String getClassDoc() {
+        return classDoc;
+    }
+
+    /**
+     * @param name method name, or the simple class name for constructors
+     * @param parameterTypes parameter types of the method or constructor
+     * @return the commented declaration with the same name and parameters,
+     *         or <code>null</code> if there is none
+     */
+    Declaration find(String name, Class<?>[] parameterTypes) {
+        Declaration candidate = null;
+        for (Declaration declaration : declarations) {
+            if (!declaration.name.equals(name) || declaration.parameterNames.size() != parameterTypes.length)
+                continue;
+            if (declaration.matchesTypes(parameterTypes))
+                return declaration;
+            candidate = candidate == null ? declaration : candidate;
+        }
+        return candidate;
+    }
+
+    private static String cleanUp(String comment) {
+        StringBuilder doc = new StringBuilder();
+        for (String line : comment.split("\r?\n|\r")) {
+            line = line.trim();
+            int start = 0;
+            while (start < line.length() && line.charAt(start) == '*')
+                start++;
+            if (doc.length() > 0)
+                doc.append('\n');
+            doc.append(line.substring(start).trim());
+        }
+        return doc.toString().trim();
+    }
+
+    /**
+     * Text from the end of a comment to the start of the body, the initializer
+     * or the end of the declaration, without comments and annotations.
+     */
+    private static String declarationAfter(String source, int start) {
+        int end = start;
+        int depth = 0;
+        while (end < source.length()) {
+            char c = source.charAt(end);
+            if (c == '(')
+                depth++;
+            else if (c == ')')
+                depth--;
+            else if (depth == 0 && (c == '{' || c == ';' || c == '='))
+                break;
+            end++;
+        }
+        String declaration = LINE_COMMENT.matcher(source.substring(start, end)).replaceAll(" ");
+        return ANNOTATION.matcher(declaration).replaceAll(" ");
+    }
+
+    private static List<String[]> parameters(String list) {
+        List<String[]> parameters = new ArrayList<String[]>();
+        if (list.trim().isEmpty())
+            return parameters;
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i <= list.length(); i++) {
+            char c = i < list.length() ? list.charAt(i) : ',';
+            if (c == '<')
+                depth++;
+            else if (c == '>')
+                depth--;
+            else if (c == ',' && depth == 0) {
+                String parameter = list.substring(start, i).replaceAll("\\bfinal\\b", " ").replace("...", " ... ")
+                        .trim();
+                int split = parameter.lastIndexOf(' ');
+                String type = parameter.substring(0, Math.max(split, 0)).trim();
+                parameters.add(new String[] { type, parameter.substring(split + 1) });
+                start = i + 1;
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * A commented constructor or method.
+     */
+    static class Declaration {
+
+        private final String name;
+
+        private final List<String> parameterNames = new ArrayList<String>();
+
+        private final List<String> parameterTypes = new ArrayList<String>();
+
+        private final String doc;
+
+        Declaration(String name, List<String[]> parameters, String doc) {
+            this.name = name;
+            for (String[] parameter : parameters) {
+                parameterTypes.add(parameter[0]);
+                parameterNames.add(parameter[1]);
+            }
+            this.doc = doc;
+        }
+
+        private boolean matchesTypes(Class<?>[] types) {
+            for (int i = 0; i < types.length; i++) {
+                // Compared by simple name, without type arguments.
+                String declared = parameterTypes.get(i).replaceAll("<.*>", "").replace("...", "[]")
+                        .replaceAll("\\s+", "");
+                declared = declared.substring(declared.lastIndexOf('.') + 1);
+                if (!declared.equals(types[i].getSimpleName()))
+                    return false;
+            }
+            return true;
+        }
+
+        List<String> getParameterNames() {
+            return Collections.unmodifiableList(parameterNames);
+        }
+
+        String getDoc() {
+            return doc;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.robotframework.mavenplugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the JSON that Robot Framework embeds in its HTML outputs into maps,
+ * lists, strings, numbers, booleans and <code>null</code>. Also accepts the
+ * JavaScript <code>\xHH</code> escapes Robot Framework uses to keep
+ * <code>&lt;/script&gt;</code> out of the data.
+ */
+class JsonReader {
+
+    private final CharSequence text;
+
+    private int position;
+
+    private JsonReader(CharSequence text, int position) {
+        this.text = text;
+        this.position = position;
+    }
+
+    /**
+     * @param text text holding the value
+     * @param start index of the first character of the value
+     * @return the value
+     * @throws IOException if the text is not a JSON value
+     */
+    static Object read(CharSequence text, int start) throws IOException {
+        return new JsonReader(text, start).value();
+    }
+
+    private Object value() throws IOException {
+        skipWhitespace();
+        char c = peek();
+        switch (c) {
+        case '{':
+            return object();
+        case '[':
+            return array();
+        case '"':
+            return string();
+        case 't':
+            return literal("true", Boolean.TRUE);
+        case 'f':
+            return literal("false", Boolean.FALSE);
+        case 'n':
+            return literal("null", null);
+        default:
+            return number();
+        }
+    }
+
+    private Map<String, Object> object() throws IOException {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        position++;
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return result;
+        }
+        while (true) {
+            skipWhitespace();
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            result.put(key, value());
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return result;
+            }
+            expect(',');
+        }
+    }
+
+    private List<Object> array() throws IOException {
+        List<Object> result = new ArrayList<Object>();
+        position++;
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return result;
+        }
+        while (true) {
+            result.add(value());
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return result;
+            }
+            expect(',');
+        }
+    }
+
+    private String string() throws IOException {
+        expect('"');
+        StringBuilder result = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"')
+                return result.toString();
+            if (c != '\\') {
+                result.append(c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+            case 'b':
+                result.append('\b');
+                break;
+            case 'f':
+                result.append('\f');
+                break;
+            case 'n':
+                result.append('\n');
+                break;
+            case 'r':
+                result.append('\r');
+                break;
+            case 't':
+                result.append('\t');
+                break;
+            case 'u':
+                result.append((char) hex(4));
+                break;
+            case 'x':
+                result.append((char) hex(2));
+                break;
+            default:
+                result.append(c);
+            }
+        }
+    }
+
+    private Object number() throws IOException {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0)
+            position++;
+        String number = text.subSequence(start, position).toString();
+        try {
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0)
+                return Long.valueOf(number);
+            return Double.valueOf(number);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid JSON at " + start + ": " + number);
+        }
+    }
+
+    private Object literal(String literal, Object value) throws IOException {
+        for (int i = 0; i < literal.length(); i++)
+            expect(literal.charAt(i));
+        return value;
+    }
+
+    private int hex(int digits) throws IOException {
+        int value = 0;
+        for (int i = 0; i < digits; i++) {
+            int digit = Character.digit(next(), 16);
+            if (digit < 0)
+                throw new IOException("Invalid JSON escape at " + position);
+            value = value * 16 + digit;
+        }
+        return value;
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+            position++;
+    }
+
+    private char peek() throws IOException {
+        if (position >= text.length())
+            throw new IOException("Unexpected end of JSON");
+        return text.charAt(position);
+    }
+
+    private char next() throws IOException {
+        char c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (next() != expected)
+            throw new IOException("Invalid JSON at " + (position - 1) + ", expected '" + expected + "'");
+    }
+}
@@ -0,0 +1,337 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * One searchable index of the keywords of all libdoc outputs in a directory,
+ * written to its <code>keyword-index</code> subdirectory.
+ * <p></p>
+ * <code>index.html</code> searches <code>keywords.js</code>, which only holds
+ * the name, arguments and short documentation of every keyword. The full
+ * documentation of a library is in its own file under <code>docs</code>,
+ * loaded when one of its keywords is opened.
+ * <p></p>
+ * Both HTML outputs, whose data libdoc embeds as JSON, and XML spec outputs
+ * are read. Every output is read once: what was read is kept under
+ * <code>parts</code> and reused until the output changes.
+ */
+class KeywordIndex {
+
+    static final String DIRECTORY = "keyword-index";
+
+    private static final String STATE = ".state";
+
+    private static final String HTML_DATA = "libdoc = ";
+
+    private final File outputDirectory;
+
+    private final File indexDirectory;
+
+    private final File partsDirectory;
+
+    private final File docsDirectory;
+
+    private int libraries;
+
+    private int keywords;
+
+    /**
+     * @param outputDirectory directory of the libdoc outputs
+     */
+    KeywordIndex(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+        this.indexDirectory = new File(outputDirectory, DIRECTORY);
+        this.partsDirectory = new File(indexDirectory, "parts");
+        this.docsDirectory = new File(indexDirectory, "docs");
+    }
+
+    /**
+     * Brings the index up to date with the outputs in the directory.
+     *
+     * @return the index page
+     */
+    File update() throws IOException {
+        if (!partsDirectory.isDirectory() && !partsDirectory.mkdirs())
+            throw new IOException("Keyword index directory cannot be created: " + partsDirectory.getAbsolutePath());
+        if (!docsDirectory.isDirectory() && !docsDirectory.mkdirs())
+            throw new IOException("Keyword index directory cannot be created: " + docsDirectory.getAbsolutePath());
+
+        Properties state = loadState();
+        Properties newState = new Properties();
+        Map<String, File> parts = new TreeMap<String, File>();
+        File[] outputs = outputDirectory.listFiles();
+        for (File output : outputs != null ? outputs : new File[0]) {
+            String name = output.getName();
+            if (!output.isFile() || name.startsWith(".")
+                    || !(name.endsWith(".html") || name.endsWith(".xml")))
+                continue;
+            String stamp = output.length() + "/" + output.lastModified();
+            File part = new File(partsDirectory, name + ".js");
+            if (!stamp.equals(state.getProperty(name)) || !part.isFile())
+                readOutput(output, part, new File(docsDirectory, name + ".js"));
+            newState.setProperty(name, stamp);
+            parts.put(name, part);
+        }
+
+        // Outputs that are gone.
+        for (String name : state.stringPropertyNames()) {
+            if (!newState.containsKey(name)) {
+                new File(partsDirectory, name + ".js").delete();
+                new File(docsDirectory, name + ".js").delete();
+            }
+        }
+
+        writeKeywords(parts.values());
+        File page = new File(indexDirectory, "index.html");
+        InputStream template = getClass().getResourceAsStream("keyword-index.html");
+        try {
+            FileUtils.copyInputStreamToFile(template, page);
+        } finally {
+            template.close();
+        }
+        saveState(newState);
+        return page;
+    }
+
+    int getLibraries() {
+        return libraries;
+    }
+
+    int getKeywords() {
+        return keywords;
+    }
+
+    private void readOutput(File output, File part, File docs) throws IOException {
+        Library library = output.getName().endsWith(".xml") ? readSpec(output) : readHtml(output);
+        Writer partOut = writer(part);
+        try {
+            if (library != null)
+                library.writePart(partOut, output.getName());
+        } finally {
+            partOut.close();
+        }
+        if (library == null) {
+            docs.delete();
+            return;
+        }
+        Writer docsOut = writer(docs);
+        try {
+            library.writeDocs(docsOut, output.getName());
+        } finally {
+            docsOut.close();
+        }
+    }
+
+    /**
+     * @return the library, or <code>null</code> if the file is not a libdoc
+     *         output
+     */
+    private static Library readHtml(File output) throws IOException {
+        String html = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+        int start = html.indexOf(HTML_DATA);
+        if (start < 0)
+            return null;
+        Object data = JsonReader.read(html, start + HTML_DATA.length());
+        if (!(data instanceof Map))
+            return null;
+        Map<?, ?> libdoc = (Map<?, ?>) data;
+        Library library = new Library(String.valueOf(libdoc.get("name")));
+        Object keywords = libdoc.get("keywords");
+        if (keywords instanceof List) {
+            for (Object item : (List<?>) keywords) {
+                Map<?, ?> keyword = (Map<?, ?>) item;
+                List<?> arguments = (List<?>) keyword.get("args");
+                library.keywords.add(new String[] { String.valueOf(keyword.get("name")),
+                        join(arguments != null ? arguments : new ArrayList<Object>()),
+                        String.valueOf(keyword.get("shortdoc")), "HTML", String.valueOf(keyword.get("doc")) });
+            }
+        }
+        return library;
+    }
+
+    private static Library readSpec(File output) throws IOException {
+        InputStream in = new FileInputStream(output);
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                if (reader.nextTag() != XMLStreamConstants.START_ELEMENT
+                        || !reader.getLocalName().equals("keywordspec"))
+                    return null;
+                Library library = new Library(attribute(reader, "name"));
+                String format = attribute(reader, "format");
+                String keyword = null;
+                List<String> arguments = new ArrayList<String>();
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT)
+                        continue;
+                    String element = reader.getLocalName();
+                    if (element.equals("kw")) {
+                        keyword = attribute(reader, "name");
+                        arguments.clear();
+                    } else if (element.equals("init")) {
+                        keyword = null;
+                    } else if (keyword != null && element.equals("arg")) {
+                        arguments.add(reader.getElementText());
+                    } else if (keyword != null && element.equals("doc")) {
+                        String doc = reader.getElementText();
+                        String[] lines = doc.trim().split("\r?\n", 2);
+                        library.keywords.add(new String[] { keyword, join(arguments), lines[0], format, doc });
+                        keyword = null;
+                    }
+                }
+                return library;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            // Some other XML file.
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value != null ? value : "";
+    }
+
+    private void writeKeywords(Collection<File> parts) throws IOException {
+        libraries = 0;
+        keywords = 0;
+        Writer out = writer(new File(indexDirectory, "keywords.js"));
+        try {
+            out.write("window.keywordIndex = [\n");
+            for (File part : parts) {
+                String library = FileUtils.readFileToString(part, StandardCharsets.UTF_8);
+                if (library.isEmpty())
+                    continue;
+                if (libraries++ > 0)
+                    out.write(",\n");
+                out.write(library);
+                keywords += Integer.parseInt(library.substring(library.lastIndexOf(',') + 1,
+                        library.lastIndexOf(']')).trim());
+            }
+            out.write("\n];\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private Properties loadState() throws IOException {
+        Properties state = new Properties();
+        File file = new File(indexDirectory, STATE);
+        if (file.isFile()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return state;
+    }
+
+    private void saveState(Properties state) throws IOException {
+        OutputStream out = new FileOutputStream(new File(indexDirectory, STATE));
+        try {
+            state.store(out, "Libdoc outputs read into the keyword index");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static Writer writer(File file) throws IOException {
+        return new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+    }
+
+    private static String join(List<?> values) {
+        StringBuilder result = new StringBuilder();
+        for (Object value : values) {
+            if (result.length() > 0)
+                result.append(", ");
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return the value as a JavaScript string literal that is safe within
+     *         HTML script elements
+     */
+    static String quote(String value) {
+        StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                result.append('\\').append(c);
+            else if (c < ' ' || c == '<' || c == '>' || c == '&' || c == 0x2028 || c == 0x2029)
+                result.append(String.format("\\u%04x", (int) c));
+            else
+                result.append(c);
+        }
+        return result.append('"').toString();
+    }
+
+    private static class Library {
+
+        final String name;
+
+        /** Name, arguments, short doc, doc format and doc of each keyword. */
+        final List<String[]> keywords = new ArrayList<String[]>();
+
+        Library(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Writes <code>[name, file, [[keyword, args, shortdoc], ...], count]</code>.
+         */
+        void writePart(Writer out, String file) throws IOException {
+            out.write("[" + quote(name) + "," + quote(file) + ",[");
+            for (int i = 0; i < keywords.size(); i++) {
+                String[] keyword = keywords.get(i);
+                out.write((i > 0 ? ",\n" : "\n") + "[" + quote(keyword[0]) + "," + quote(keyword[1]) + ","
+                        + quote(keyword[2]) + "]");
+            }
+            out.write("]," + keywords.size() + "]");
+        }
+
+        /**
+         * Writes a script that hands the documentation of every keyword, in
+         * index order, to the index page.
+         */
+        void writeDocs(Writer out, String file) throws IOException {
+            out.write("window.keywordIndexDocs(" + quote(file) + ",[");
+            for (int i = 0; i < keywords.size(); i++) {
+                String[] keyword = keywords.get(i);
+                out.write((i > 0 ? ",\n" : "\n") + "[" + quote(keyword[3]) + "," + quote(keyword[4]) + "]");
+            }
+            out.write("]);\n");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Makes a testdoc page render the contents of a suite or a test only when it
+ * is first opened. The page as generated renders every suite, test and
+ * keyword up front, which makes documentation of many suites slow to open.
+ */
+class LazyTestDocSections {
+
+    private static final String MARKER = "<!-- LAZY SECTIONS -->";
+
+    private static final String BODY_END = "</body>";
+
+    private LazyTestDocSections() {
+    }
+
+    /**
+     * Adds the script that replaces the rendering functions of the page, unless
+     * already added.
+     *
+     * @param page testdoc HTML output
+     * @return true if the page was changed
+     */
+    static boolean apply(File page) throws IOException {
+        String html = FileUtils.readFileToString(page, StandardCharsets.UTF_8);
+        int end = html.lastIndexOf(BODY_END);
+        if (end < 0 || html.contains(MARKER))
+            return false;
+        InputStream in = LazyTestDocSections.class.getResourceAsStream("testdoc-lazy-sections.html");
+        String script;
+        try {
+            script = IOUtils.toString(in, StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+        FileUtils.writeStringToFile(page, html.substring(0, end) + script + html.substring(end),
+                StandardCharsets.UTF_8);
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.robotframework.RobotFramework;
+import org.robotframework.mavenplugin.harvesters.HarvestUtils;
+
+/**
+ * Libdoc outputs of libraries that come from artifacts in the local Maven
+ * repository, shared by all projects and builds using the same repository.
+ * <p></p>
+ * An entry is stored under the coordinates of the artifact, derived from its
+ * path in the local repository, and named by a SHA-256 hash of the artifact
+ * contents, the Robot Framework jar in use and the libdoc arguments. The
+ * output path and the <code>--pythonpath</code> entries are left out of the
+ * hash, as they differ between projects but not between their outputs.
+ * Entries are written atomically, so concurrent builds at worst generate the
+ * same documentation twice.
+ */
+class LibDocCache {
+
+    private final File directory;
+
+    private final File localRepository;
+
+    private final String variant;
+
+    private final Map<File, String> checksums = new ConcurrentHashMap<File, String>();
+
+    /**
+     * @param directory cache directory
+     * @param localRepository local Maven repository, the only artifacts
+     *            cached are those in it
+     * @param variant anything else the outputs depend on, such as how Java
+     *            libraries are documented
+     */
+    LibDocCache(File directory, File localRepository, String variant) {
+        this.directory = directory;
+        this.localRepository = localRepository.getAbsoluteFile();
+        this.variant = variant;
+    }
+
+    /**
+     * @param arguments libdoc arguments
+     * @param inputs what the run documents, see
+     *            {@link LibDocConfiguration#resolveInputs(String[])}
+     * @return the cache entry for the run, or <code>null</code> if it does
+     *         not document a library from the local repository
+     */
+    File entry(String[] arguments, List<URL> inputs) throws IOException {
+        if (inputs.size() != 1 || !"jar".equals(inputs.get(0).getProtocol()))
+            return null;
+        File jar = jarFile(inputs.get(0));
+        if (jar == null || !jar.isFile())
+            return null;
+        String artifactPath = relativePath(jar.getParentFile());
+        if (artifactPath == null)
+            return null;
+
+        MessageDigest digest = UpToDateManifest.sha256();
+        UpToDateManifest.update(digest, checksum(jar));
+        UpToDateManifest.update(digest, variant);
+        CodeSource robot = RobotFramework.class.getProtectionDomain().getCodeSource();
+        UpToDateManifest.update(digest, robot != null ? new File(robot.getLocation().getPath()).getName() : "");
+        String output = arguments[arguments.length - 1];
+        for (int i = 0; i < arguments.length - 1; i++) {
+            if (arguments[i].equals("--pythonpath"))
+                i++;
+            else
+                UpToDateManifest.update(digest, arguments[i]);
+        }
+        String extension = HarvestUtils.extractExtension(new File(output).getName());
+        UpToDateManifest.update(digest, extension);
+        return new File(new File(directory, artifactPath), UpToDateManifest.hex(digest.digest()) + extension);
+    }
+
+    /**
+     * Copies a cached output in place.
+     *
+     * @return true if the entry existed
+     */
+    boolean restore(File entry, File output) throws IOException {
+        if (!entry.isFile())
+            return false;
+        Files.copy(entry.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * Stores a generated output.
+     */
+    void store(File entry, File output) throws IOException {
+        File parent = entry.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+            throw new IOException("Cache directory cannot be created: " + parent.getAbsolutePath());
+        File temporary = File.createTempFile(entry.getName(), ".tmp", parent);
+        try {
+            Files.copy(output.toPath(), temporary.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(temporary.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    private static File jarFile(URL input) throws IOException {
+        URL jar = ((JarURLConnection) input.openConnection()).getJarFileURL();
+        if (!"file".equals(jar.getProtocol()))
+            return null;
+        try {
+            return new File(jar.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return <code>group/path/artifactId/version</code>, or <code>null</code>
+     *         if the directory is not an artifact version directory of the
+     *         local repository
+     */
+    private String relativePath(File versionDirectory) {
+        String repository = localRepository.getPath() + File.separator;
+        String path = versionDirectory.getAbsolutePath();
+        if (!path.startsWith(repository))
+            return null;
+        String relative = path.substring(repository.length());
+        // At least a group, an artifact and a version.
+        return relative.split(Pattern.quote(File.separator)).length >= 3 ? relative : null;
+    }
+
+    private String checksum(File jar) throws IOException {
+        String checksum = checksums.get(jar);
+        if (checksum == null) {
+            MessageDigest digest = UpToDateManifest.sha256();
+            InputStream in = Files.newInputStream(jar.toPath());
+            try {
+                byte[] buffer = new byte[65536];
+                int count;
+                while ((count = in.read(buffer)) >= 0)
+                    digest.update(buffer, 0, count);
+            } finally {
+                in.close();
+            }
+            checksum = UpToDateManifest.hex(digest.digest());
+            checksums.put(jar, checksum);
+        }
+        return checksum;
+    }
+}
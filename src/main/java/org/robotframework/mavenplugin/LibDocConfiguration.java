@@ -19,14 +19,20 @@ package org.robotframework.mavenplugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.codehaus.plexus.util.StringUtils;
 import org.robotframework.mavenplugin.harvesters.ClassNameHarvester;
+import org.robotframework.mavenplugin.harvesters.HarvestIndex;
 import org.robotframework.mavenplugin.harvesters.HarvestUtils;
 import org.robotframework.mavenplugin.harvesters.ResourceNameHarvester;
 import org.robotframework.mavenplugin.harvesters.SourceFileNameHarvester;
@@ -37,7 +43,8 @@ public class LibDocConfiguration {
         ArrayList<String[]> result = new ArrayList<String[]>();
 
         // Phase I - harvest the files/classes/resources, if any
-        ArrayList<String> fileArguments = harvestResourceOrFileCandidates(projectBaseDir, libraryOrResourceFile);
+        ArrayList<String> fileArguments = new ArrayList<String>(
+                harvestResourceOrFileCandidates(projectBaseDir, getLibraryOrResourcePatterns()).keySet());
 
         // Phase II - prepare the argument lines for the harvested
         // files/classes/resources.
@@ -56,6 +63,52 @@ public class LibDocConfiguration {
         return result;
     }
 
+    /**
+     * Finds what a libdoc run documents, for the up-to-date check of
+     * incremental builds: the given file, the bytes of a Java class, a Python
+     * module under the extra path directories or a class path resource.
+     *
+     * @param runArguments one of the argument lists from
+     *            {@link #generateRunArguments(File)}
+     * @return the documented library or resource, empty if it is not known
+     */
+    public List<URL> resolveInputs(String[] runArguments) {
+        String libraryOrResource = runArguments[runArguments.length - 2];
+        List<URL> result = new ArrayList<URL>();
+        try {
+            File file = new File(libraryOrResource);
+            if (file.isFile()) {
+                result.add(file.toURI().toURL());
+                return result;
+            }
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            URL classFile = loader.getResource(libraryOrResource.replace('.', '/') + ".class");
+            if (classFile != null) {
+                result.add(classFile);
+                return result;
+            }
+            // A module, or a class within a module, on the PYTHONPATH.
+            String modulePath = libraryOrResource.replace('.', File.separatorChar);
+            String parentModulePath = modulePath.indexOf(File.separatorChar) > 0
+                    ? modulePath.substring(0, modulePath.lastIndexOf(File.separatorChar)) : null;
+            for (File directory : getExtraPathDirectoriesWithDefault()) {
+                for (String candidate : new String[] { modulePath + ".py", modulePath + File.separator + "__init__.py",
+                        parentModulePath == null ? null : parentModulePath + ".py" }) {
+                    if (candidate != null && new File(directory, candidate).isFile()) {
+                        result.add(new File(directory, candidate).toURI().toURL());
+                        return result;
+                    }
+                }
+            }
+            URL resource = loader.getResource(libraryOrResource);
+            if (resource != null)
+                result.add(resource);
+        } catch (MalformedURLException e) {
+            // Unknown input, always generated.
+        }
+        return result;
+    }
+
     private Arguments generateLibdocArgumentList(File projectBaseDir, boolean multipleOutputs, String fileArgument) {
         Arguments result = new Arguments();
         result.add("libdoc");
@@ -102,42 +155,82 @@ public class LibDocConfiguration {
         return result;
     }
 
-    private ArrayList<String> harvestResourceOrFileCandidates(File projectBaseDir, String pattern) {
-        File libOrResource = new File(pattern);
-        ArrayList<String> fileArguments = new ArrayList<String>();
-        if (libOrResource.isFile()) {
-            // Single file specification, no patterns.
-            fileArguments.add(libOrResource.getAbsolutePath());
-        } else {
-            // Possible pattern, process further.
-            if (HarvestUtils.hasDirectoryStructure(pattern)) {
+    /**
+     * Harvests all patterns together, so that the file tree and the class path
+     * are traversed once regardless of the number of patterns.
+     *
+     * @return harvested names mapped to the patterns they matched
+     */
+    private Map<String, Set<String>> harvestResourceOrFileCandidates(File projectBaseDir, List<String> patterns) {
+        Map<String, Set<String>> fileArguments = new LinkedHashMap<String, Set<String>>();
+        List<String> namePatterns = new ArrayList<String>();
+        List<String> directoryPatterns = new ArrayList<String>();
+        for (String pattern : patterns) {
+            File libOrResource = new File(pattern);
+            if (libOrResource.isFile()) {
+                // Single file specification, no patterns.
+                HarvestUtils.addHit(fileArguments, libOrResource.getAbsolutePath(), pattern);
+            } else if (HarvestUtils.hasDirectoryStructure(pattern)) {
                 // Directory structure, no class resolution, harvest file names.
-                SourceFileNameHarvester harv = new SourceFileNameHarvester(projectBaseDir);
-                fileArguments.addAll(harv.harvest(pattern));
+                directoryPatterns.add(pattern);
             } else {
-                // A) May have files, try for harvesting file names first.
-                SourceFileNameHarvester harv = new SourceFileNameHarvester(projectBaseDir);
-                Set<String> harvested = harv.harvest(pattern);
-                if (harvested.size() > 0) {
-                    fileArguments.addAll(harvested);
-                } else {
-                    // B) If no files found, try harvesting classes.
-                    ClassNameHarvester charv = new ClassNameHarvester();
-                    harvested = charv.harvest(pattern);
-                    if (harvested.size() > 0) {
-                        fileArguments.addAll(harvested);
-                    } else {
-                        // C) If no files found, try harvesting resources.
-                        ResourceNameHarvester rharv = new ResourceNameHarvester();
-                        fileArguments.addAll(rharv.harvest(pattern));
-                    } // resources
-                } // classes
-            } // files
-        } // single file or pattern
+                namePatterns.add(pattern);
+            }
+        }
+
+        // A) May have files, try for harvesting file names first.
+        List<String> filePatterns = new ArrayList<String>(directoryPatterns);
+        filePatterns.addAll(namePatterns);
+        SourceFileNameHarvester harv = new SourceFileNameHarvester(projectBaseDir, excludes, harvestIndex);
+        Map<String, Set<String>> harvested = harv.harvestAll(filePatterns);
+        putAllHits(fileArguments, harvested);
+
+        // B) If no files found, try harvesting classes.
+        List<String> remaining = withoutHits(namePatterns, harvested);
+        if (!remaining.isEmpty()) {
+            ClassNameHarvester charv = new ClassNameHarvester(harvestIndex);
+            harvested = charv.harvestAll(remaining);
+            putAllHits(fileArguments, harvested);
+
+            // C) If no classes found, try harvesting resources.
+            remaining = withoutHits(remaining, harvested);
+            if (!remaining.isEmpty()) {
+                ResourceNameHarvester rharv = new ResourceNameHarvester(harvestIndex);
+                putAllHits(fileArguments, rharv.harvestAll(remaining));
+            }
+        }
         return fileArguments;
     }
 
-    private List<File> getExtraPathDirectoriesWithDefault() {
+    private static void putAllHits(Map<String, Set<String>> hits, Map<String, Set<String>> harvested) {
+        for (Map.Entry<String, Set<String>> hit : harvested.entrySet()) {
+            for (String pattern : hit.getValue())
+                HarvestUtils.addHit(hits, hit.getKey(), pattern);
+        }
+    }
+
+    private static List<String> withoutHits(List<String> patterns, Map<String, Set<String>> harvested) {
+        Set<String> matched = new HashSet<String>();
+        for (Set<String> hitPatterns : harvested.values())
+            matched.addAll(hitPatterns);
+        List<String> result = new ArrayList<String>();
+        for (String pattern : patterns) {
+            if (!matched.contains(pattern))
+                result.add(pattern);
+        }
+        return result;
+    }
+
+    private List<String> getLibraryOrResourcePatterns() {
+        List<String> patterns = new ArrayList<String>();
+        if (libraryOrResourceFile != null)
+            patterns.add(libraryOrResourceFile);
+        if (libraryOrResourceFiles != null)
+            patterns.addAll(libraryOrResourceFiles);
+        return patterns;
+    }
+
+    List<File> getExtraPathDirectoriesWithDefault() {
         if (extraPathDirectories == null) {
             return Collections.singletonList(defaultExtraPath);
         } else {
@@ -163,10 +256,15 @@ public class LibDocConfiguration {
         return StringUtils.join(parts, File.separator);
     }
 
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
     public void populateDefaults(LibDocMojo defaults) {
         if (this.outputDirectory == null)
             this.outputDirectory = defaults.defaultLibdocOutputDirectory;
         this.defaultExtraPath = defaults.libdocDefaultExtraPath;
+        this.harvestIndex = defaults.harvestIndex;
     }
 
     /**
@@ -210,6 +308,23 @@ public class LibDocConfiguration {
      */
     private String libraryOrResourceFile;
 
+    /**
+     * Several names, paths or ant-like patterns of documented libraries or
+     * resource files, in the same format as {@link #libraryOrResourceFile}.
+     * All of them are harvested in a single pass over the project files and
+     * the class path. May be used together with
+     * {@link #libraryOrResourceFile}.
+     */
+    private List<String> libraryOrResourceFiles;
+
+    /**
+     * Ant-like patterns of files and directories that are never harvested for
+     * libraries or resources, relative to the location of <code>pom.xml</code>.
+     * Excluded directories are not traversed at all, for example
+     * <code>**{@literal /}target/**</code> or <code>**{@literal /}.git/**</code>.
+     */
+    private List<String> excludes;
+
     /**
      * A directory to be added to the PYTHONPATH/CLASSPATH when creating
      * documentation.
@@ -219,4 +334,6 @@ public class LibDocConfiguration {
     private File[] extraPathDirectories;
 
     private File defaultExtraPath;
+
+    private HarvestIndex harvestIndex;
 }
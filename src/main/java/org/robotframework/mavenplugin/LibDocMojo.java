@@ -19,11 +19,15 @@ package org.robotframework.mavenplugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.robotframework.RobotFramework;
+import org.robotframework.mavenplugin.harvesters.HarvestIndex;
 
 /**
  * Create documentation of test libraries or resource files using the Robot Framework <code>libdoc</code> tool.
@@ -36,6 +40,8 @@ import org.robotframework.RobotFramework;
  */
 public class LibDocMojo extends AbstractMojoWithLoadedClasspath {
 
+    private static final String INCREMENTAL_MANIFEST = ".libdoc-manifest";
+
     protected void subclassExecute() throws MojoExecutionException, MojoFailureException {
         try {
             runLibDoc();
@@ -44,20 +50,146 @@ public class LibDocMojo extends AbstractMojoWithLoadedClasspath {
         }
     }
 
-    public void runLibDoc() throws IOException {
+    public void runLibDoc() throws IOException, MojoExecutionException {
+        if (harvestIndexFile != null)
+            harvestIndex = HarvestIndex.load(harvestIndexFile);
         libdoc.populateDefaults(this);
         libdoc.ensureOutputDirectoryExists();
 
         if (projectBaseDir == null)
             projectBaseDir = new File("");
         List<String[]> runArgs = libdoc.generateRunArguments(projectBaseDir);
+        saveHarvestIndex();
+        DocumentationRunner runner = new DocumentationRunner(getLog(), threads, batch, externalRunner,
+                getClassPathString());
+        if (incremental)
+            runIncrementally(runner, runArgs);
+        else
+            run(runner, runArgs, null);
+        if (keywordIndex) {
+            KeywordIndex index = new KeywordIndex(libdoc.getOutputDirectory());
+            File page = index.update();
+            getLog().info("Keyword index of " + index.getKeywords() + " keywords in " + index.getLibraries()
+                    + " libraries: " + page.getPath());
+        }
+    }
+
+    private void run(DocumentationRunner runner, List<String[]> runArgs,
+            final DocumentationRunner.RunListener listener) throws IOException, MojoExecutionException {
+        final LibDocCache cache = createDependencyCache();
+        if (cache == null) {
+            generate(runner, runArgs, listener);
+            return;
+        }
+        final Map<String, File> cacheEntries = new HashMap<String, File>();
+        List<String[]> uncachedRunArgs = new ArrayList<String[]>();
         for (String[] args : runArgs) {
-            if (externalRunner != null && externalRunner.getRunWithPython()) {
-                PythonRunner.run(args);
+            String output = args[args.length - 1];
+            File entry = cache.entry(args, libdoc.resolveInputs(args));
+            if (entry != null && cache.restore(entry, new File(output))) {
+                getLog().debug("Copied cached documentation: " + output);
+                if (listener != null)
+                    listener.succeeded(args);
             } else {
-                RobotFramework.run(args);
+                if (entry != null)
+                    cacheEntries.put(output, entry);
+                uncachedRunArgs.add(args);
+            }
+        }
+        getLog().info("Copied documentation for " + (runArgs.size() - uncachedRunArgs.size()) + " of "
+                + runArgs.size() + " libraries or resources from the dependency cache.");
+        generate(runner, uncachedRunArgs, new DocumentationRunner.RunListener() {
+            public void succeeded(String[] arguments) {
+                String output = arguments[arguments.length - 1];
+                File entry = cacheEntries.get(output);
+                if (entry != null) {
+                    try {
+                        cache.store(entry, new File(output));
+                    } catch (IOException e) {
+                        // Only other builds get slower.
+                        getLog().warn("Failed to cache " + output + ": " + e.getMessage());
+                    }
+                }
+                if (listener != null)
+                    listener.succeeded(arguments);
+            }
+        });
+    }
+
+    private LibDocCache createDependencyCache() {
+        if (!dependencyCache)
+            return null;
+        File localRepository = getLocalRepository();
+        if (localRepository == null || dependencyCacheDirectory == null) {
+            getLog().debug("No local repository, the dependency cache is not used.");
+            return null;
+        }
+        return new LibDocCache(dependencyCacheDirectory, localRepository,
+                reflectJavaLibraries ? "reflected" : "imported");
+    }
+
+    private void generate(DocumentationRunner runner, List<String[]> runArgs,
+            DocumentationRunner.RunListener listener) throws IOException, MojoExecutionException {
+        if (!reflectJavaLibraries) {
+            runner.run(runArgs, listener);
+            return;
+        }
+        JavaLibraryDocumenter documenter = new JavaLibraryDocumenter(getLog(),
+                Thread.currentThread().getContextClassLoader(), getJavaSourceDirectories());
+        try {
+            runner.run(documenter.document(runArgs, listener), listener);
+        } finally {
+            documenter.cleanUp();
+        }
+    }
+
+    private List<File> getJavaSourceDirectories() {
+        List<File> directories = new ArrayList<File>();
+        if (compileSourceRoots == null && testCompileSourceRoots == null) {
+            // Outside of Maven, like in unit tests.
+            directories.add(new File(projectBaseDir.getAbsoluteFile(), "src/main/java"));
+            directories.add(new File(projectBaseDir.getAbsoluteFile(), "src/test/java"));
+        }
+        for (List<String> roots : Arrays.asList(compileSourceRoots, testCompileSourceRoots)) {
+            if (roots != null) {
+                for (String root : roots)
+                    directories.add(new File(root));
             }
         }
+        directories.addAll(libdoc.getExtraPathDirectoriesWithDefault());
+        return directories;
+    }
+
+    private void runIncrementally(DocumentationRunner runner, List<String[]> runArgs)
+            throws IOException, MojoExecutionException {
+        UpToDateManifest manifest = UpToDateManifest.load(new File(libdoc.getOutputDirectory(), INCREMENTAL_MANIFEST));
+        List<String[]> staleRunArgs = new ArrayList<String[]>();
+        for (String[] args : runArgs) {
+            if (manifest.isUpToDate(args, libdoc.resolveInputs(args)))
+                getLog().debug("Documentation is up to date: " + args[args.length - 1]);
+            else
+                staleRunArgs.add(args);
+        }
+        getLog().info("Generating documentation for " + staleRunArgs.size() + " of " + runArgs.size()
+                + " libraries or resources, the others are up to date.");
+        try {
+            // Java libraries documented by reflection are rendered from their
+            // spec, the manifest matches them by output.
+            run(runner, staleRunArgs, manifest);
+        } finally {
+            manifest.save();
+        }
+    }
+
+    private void saveHarvestIndex() {
+        if (harvestIndex == null)
+            return;
+        try {
+            harvestIndex.save();
+        } catch (IOException e) {
+            // Only the next build gets slower.
+            getLog().warn("Failed to save harvest index: " + e.getMessage());
+        }
     }
 
     /**
@@ -78,6 +210,9 @@ public class LibDocMojo extends AbstractMojoWithLoadedClasspath {
      *
      * Note that you should preferably import java classes by classname, not path. Dynamic libraries will not be compiled correctly with path.</li>
      * </ul>
+     * Instead of <code>libraryOrResourceFile</code>, several names, paths or patterns can be listed in
+     * <code>libraryOrResourceFiles</code>. They are all harvested in a single pass over the project files and the
+     * class path, which is cheaper than declaring one <code>libdoc</code> execution per pattern.
      * Optional settings:
      * <ul>
      * <li><code>outputDirectory</code>     Specifies the directory where documentation files are written.
@@ -87,6 +222,8 @@ public class LibDocMojo extends AbstractMojoWithLoadedClasspath {
      * <li><code>version</code>             Sets the version of the documented library or resource.</li>
      * <li><code>extraPathDirectories</code> A directory to be added to the PYTHONPATH/CLASSPATH when creating documentation.
      * e.g. src/main/java/com/test/</li>
+     * <li><code>excludes</code>            Ant-like patterns of files and directories never harvested, relative to the ${basedir}
+     *                                      of the project, e.g. <code>**{@literal /}target/**</code>. Excluded directories are not traversed.</li>
      * </ul>
      *
      * Example 1:
@@ -106,6 +243,15 @@ public class LibDocMojo extends AbstractMojoWithLoadedClasspath {
      *      <outputFile>*.html</outputFile>
      *      <libraryOrResourceFile>com.**.*Lib</libraryOrResourceFile>
      * </libdoc>]]></pre>
+     *
+     * Example 4:
+     * <pre><![CDATA[<libdoc>
+     *      <outputFile>*.html</outputFile>
+     *      <libraryOrResourceFiles>
+     *          <libraryOrResourceFile>com.acme.keywords.**</libraryOrResourceFile>
+     *          <libraryOrResourceFile>src/main/robot/**{@literal /}*.resource</libraryOrResourceFile>
+     *      </libraryOrResourceFiles>
+     * </libdoc>]]></pre>
      * @parameter
      * @required
      */
@@ -135,4 +281,92 @@ public class LibDocMojo extends AbstractMojoWithLoadedClasspath {
      */
     File projectBaseDir;
 
+    /**
+     * File where the names of class path entries and project directories seen while harvesting are kept between
+     * builds. Jars and directories that have not changed are not read again.
+     *
+     * @parameter default-value="${project.build.directory}/robotframework/libdoc-harvest-index.bin"
+     */
+    File harvestIndexFile;
+
+    HarvestIndex harvestIndex;
+
+    /**
+     * Number of libraries documented at the same time. With more than one, each library is documented in its own
+     * forked JVM. Libraries that fail are reported together at the end of the run.
+     *
+     * @parameter default-value="1"
+     */
+    int threads;
+
+    /**
+     * Documents all libraries in a single Robot Framework session instead of starting it anew for every library, so
+     * that libdoc and the modules and classes the libraries import are loaded only once. With more than one thread,
+     * every thread gets one forked JVM for its share of the libraries. The time taken by every library is logged. Not
+     * used when running with Python.
+     *
+     * @parameter default-value="false"
+     */
+    boolean batch;
+
+    /**
+     * Documents static Java libraries given by class name, such as harvested <code>com.acme.**</code> patterns, by
+     * reflecting over the compiled class instead of importing it into Robot Framework. Documentation, tags and argument
+     * names come from the Javadoc of the source, where found in the compile source roots or the extra path
+     * directories. Outputs ending with <code>.xml</code> are written without starting Robot Framework at all, other
+     * outputs are rendered by libdoc from the reflected spec. Dynamic and hybrid libraries, Python libraries and
+     * resource files are always documented by libdoc.
+     *
+     * @parameter default-value="false"
+     */
+    boolean reflectJavaLibraries;
+
+    /**
+     * Shares the documentation of libraries that come from dependencies in the local Maven repository between projects
+     * and builds. The documentation is cached under the coordinates of the dependency, keyed by a hash of the
+     * dependency jar, the Robot Framework version and the libdoc options, and copied into the output directory instead
+     * of being generated again. Libraries of the project itself are always generated.
+     *
+     * @parameter default-value="false"
+     */
+    boolean dependencyCache;
+
+    /**
+     * Directory of the dependency cache, see <code>dependencyCache</code>.
+     *
+     * @parameter default-value="${settings.localRepository}/.cache/robotframework-libdoc"
+     */
+    File dependencyCacheDirectory;
+
+    /**
+     * Builds one searchable index of the keywords of all libraries and resources in the output directory, in its
+     * <code>keyword-index</code> subdirectory. The index page only loads the names, arguments and short documentation
+     * of the keywords; the full documentation of a library is loaded when one of its keywords is opened. HTML and XML
+     * outputs are both indexed, and only outputs that changed since the previous build are read again.
+     *
+     * @parameter default-value="false"
+     */
+    boolean keywordIndex;
+
+    /**
+     * @parameter default-value="${project.compileSourceRoots}"
+     * @readonly
+     */
+    List<String> compileSourceRoots;
+
+    /**
+     * @parameter default-value="${project.testCompileSourceRoots}"
+     * @readonly
+     */
+    List<String> testCompileSourceRoots;
+
+    /**
+     * Only generates documentation whose library or resource changed since the previous build. The inputs of every
+     * generated file are remembered as a hash of the source file, class file or resource and of the libdoc
+     * arguments, in a <code>.libdoc-manifest</code> file in the output directory. Changes in code that a library only
+     * imports or extends are not detected; run a clean build for those.
+     *
+     * @parameter default-value="false"
+     */
+    boolean incremental;
 }
@@ -0,0 +1,101 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Remembers which outputs a combined output was made of, by path, size and
+ * modification time, so that outputs added since can be folded into it
+ * instead of combining all of them again. The combined output itself is
+ * recorded the same way, so a changed or replaced one is not built on.
+ */
+class MergeManifest {
+
+    private final File manifestFile;
+
+    private final Properties recorded = new Properties();
+
+    private MergeManifest(File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Loads the manifest. A missing or unreadable file gives an empty
+     * manifest, so all outputs are combined.
+     */
+    static MergeManifest load(File manifestFile) {
+        MergeManifest manifest = new MergeManifest(manifestFile);
+        if (manifestFile.isFile()) {
+            try {
+                InputStream in = new FileInputStream(manifestFile);
+                try {
+                    manifest.recorded.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                manifest.recorded.clear();
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * @param merged combined output
+     * @param outputs outputs to combine, in order
+     * @return how many of the first outputs the combined output already
+     *         contains, 0 if it cannot be built on: it is missing or changed,
+     *         or one of the outputs it contains has changed, is gone or no
+     *         longer comes first
+     */
+    int containedOutputs(File merged, List<File> outputs) {
+        if (!merged.isFile() || !stamp(merged).equals(recorded.getProperty("merged")))
+            return 0;
+        int count;
+        try {
+            count = Integer.parseInt(recorded.getProperty("outputs", "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        if (count > outputs.size())
+            return 0;
+        for (int i = 0; i < count; i++) {
+            File output = outputs.get(i);
+            if (!output.getAbsolutePath().equals(recorded.getProperty("output." + (i + 1)))
+                    || !stamp(output).equals(recorded.getProperty("output." + (i + 1) + ".stamp")))
+                return 0;
+        }
+        return count;
+    }
+
+    /**
+     * Records that the combined output now contains the given outputs.
+     */
+    void save(File merged, List<File> outputs) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("merged", stamp(merged));
+        properties.setProperty("outputs", String.valueOf(outputs.size()));
+        for (int i = 0; i < outputs.size(); i++) {
+            properties.setProperty("output." + (i + 1), outputs.get(i).getAbsolutePath());
+            properties.setProperty("output." + (i + 1) + ".stamp", stamp(outputs.get(i)));
+        }
+        OutputStream out = new FileOutputStream(manifestFile);
+        try {
+            properties.store(out, "Outputs in the combined output, see the incrementalMerge parameter");
+        } finally {
+            out.close();
+        }
+        recorded.clear();
+        recorded.putAll(properties);
+    }
+
+    private static String stamp(File file) {
+        return file.length() + "," + file.lastModified();
+    }
+}
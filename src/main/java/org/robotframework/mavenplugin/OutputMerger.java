@@ -0,0 +1,713 @@
+package org.robotframework.mavenplugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Combines Robot Framework output files into one, the same way as
+ * <code>rebot</code> does without <code>--merge</code>: the top level suites of
+ * the outputs become the child suites of a new top level suite, whose name is
+ * their names joined with <code>&amp;</code>.
+ * <p></p>
+ * The outputs are streamed with StAX and copied element by element, so memory
+ * use does not grow with their size. Suite and test ids are renumbered on the
+ * way. Total and tag statistics are recomputed from the tests as they pass,
+ * the way rebot computes them without criticality and tag statistics
+ * options: every test is critical and every tag has a statistic. Suite
+ * statistics of the outputs get the new ids and full names. They and the
+ * errors are spooled to temporary files, as they are written after all
+ * suites.
+ * <p></p>
+ * Outputs compressed with gzip, named <code>*.gz</code>, are decompressed
+ * as they are read.
+ * <p></p>
+ * New outputs can also be folded into an earlier combined output, the base,
+ * whose child suites, statistics and errors are then copied as they are. The
+ * result is the same as combining all the outputs again.
+ */
+class OutputMerger {
+
+    private static final String TIMESTAMP_FORMAT = "yyyyMMdd HH:mm:ss.SSS";
+
+    private static final String ROOT_ID = "s1";
+
+    /** The base first, if any, then the outputs. */
+    private final List<File> outputs;
+
+    private final File base;
+
+    private final int baseSuites;
+
+    private String baseName;
+
+    private String rootName;
+
+    private String rpa;
+
+    private String generator;
+
+    private File spoolDirectory;
+
+    private final List<File> temporaryFiles = Collections.synchronizedList(new ArrayList<File>());
+
+    /**
+     * @param outputs output files, in the order of their suites
+     */
+    OutputMerger(List<File> outputs) {
+        this(null, 0, outputs);
+    }
+
+    /**
+     * @param base output combined by this class to add the outputs to, or
+     *            <code>null</code>
+     * @param baseSuites number of outputs combined into the base
+     * @param outputs output files, in the order of their suites
+     */
+    OutputMerger(File base, int baseSuites, List<File> outputs) {
+        this.base = base;
+        this.baseSuites = baseSuites;
+        this.outputs = new ArrayList<File>();
+        if (base != null)
+            this.outputs.add(base);
+        this.outputs.addAll(outputs);
+    }
+
+    /**
+     * Writes the combined output, reading one output at a time.
+     *
+     * @param target file to write, not one of the outputs
+     */
+    void merge(File target) throws IOException {
+        merge(target, 1);
+    }
+
+    /**
+     * Writes the combined output. With more than one thread, the outputs are
+     * read concurrently, each into parts of temporary files, which are
+     * combined pairwise in a fork/join tree. Parts keep the order of the
+     * outputs, so the result is the same as when reading one by one, and the
+     * target is written once.
+     *
+     * @param target file to write, not one of the outputs
+     * @param threads number of outputs read at the same time
+     */
+    void merge(File target, int threads) throws IOException {
+        readHeaders();
+        spoolDirectory = target.getAbsoluteFile().getParentFile();
+        try {
+            Writer out = writer(target);
+            try {
+                out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                out.write("<robot rpa=\"" + escape(rpa != null ? rpa : "false", true) + "\" generator=\""
+                        + escape(generator, true) + "\" generated=\"" + timestamp(new Date()) + "\">\n");
+                out.write("<suite name=\"" + escape(rootName, true) + "\" id=\"" + ROOT_ID + "\">\n");
+                Part result;
+                if (threads > 1 && outputs.size() > 1) {
+                    ForkJoinPool pool = new ForkJoinPool(threads);
+                    try {
+                        result = pool.invoke(new PartTask(0, outputs.size()));
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    } finally {
+                        pool.shutdown();
+                    }
+                    for (File suites : result.suites)
+                        append(out, suites);
+                } else {
+                    result = new Part();
+                    for (int i = 0; i < outputs.size(); i++)
+                        result.add(readOutput(i, out));
+                }
+                out.write("<status status=\"" + (result.all[1] > 0 ? "FAIL" : "PASS")
+                        + "\" starttime=\"N/A\" endtime=\"N/A\" elapsedtime=\"" + result.elapsed + "\"></status>\n");
+                out.write("</suite>\n");
+                writeStatistics(out, result);
+                out.write("<errors>\n");
+                for (File errors : result.errors)
+                    append(out, errors);
+                out.write("</errors>\n");
+                out.write("</robot>\n");
+            } finally {
+                out.close();
+            }
+        } finally {
+            for (File file : temporaryFiles)
+                file.delete();
+            temporaryFiles.clear();
+        }
+    }
+
+    private void readHeaders() throws IOException {
+        XMLInputFactory factory = newInputFactory();
+        List<String> names = new ArrayList<String>();
+        rpa = null;
+        generator = null;
+        for (File output : outputs) {
+            Map<String, String> header = readHeader(factory, output);
+            names.add(header.get("name"));
+            if (output == base)
+                baseName = header.get("name");
+            if (rpa == null)
+                rpa = header.get("rpa");
+            // Robot Framework handles failed suite teardowns when reading
+            // outputs generated by robot, so keep that if any of them was.
+            String outputGenerator = header.get("generator");
+            if (generator == null || !generator.startsWith("Robot") && outputGenerator.startsWith("Robot"))
+                generator = outputGenerator;
+        }
+        rootName = join(names, " & ");
+    }
+
+    /**
+     * @return the attributes of the <code>robot</code> element, and the
+     *         <code>name</code> of the top level suite
+     */
+    private static Map<String, String> readHeader(XMLInputFactory factory, File output) throws IOException {
+        InputStream in = CompressedOutputs.open(output);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                expect(reader, "robot", output);
+                Map<String, String> header = attributes(reader);
+                if (!header.containsKey("generator"))
+                    header.put("generator", "");
+                expect(reader, "suite", output);
+                header.put("name", attributes(reader).get("name"));
+                return header;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid output file " + output + ": " + e.getMessage(), e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads one output, writing its suite to the given writer and its suite
+     * statistics and errors to temporary files.
+     */
+    private Part readOutput(int index, Writer suitesOut) throws IOException {
+        Part part = new Part();
+        File suiteStats = temporaryFile("suite-stats");
+        part.suiteStats.add(suiteStats);
+        File errors = temporaryFile("errors");
+        part.errors.add(errors);
+        File output = outputs.get(index);
+        Writer suiteStatsOut = writer(suiteStats);
+        try {
+            Writer errorsOut = writer(errors);
+            try {
+                copyOutput(output, suiteId(index), part, suitesOut, suiteStatsOut, errorsOut);
+            } finally {
+                errorsOut.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid output file " + output + ": " + e.getMessage(), e);
+        } finally {
+            suiteStatsOut.close();
+        }
+        return part;
+    }
+
+    /**
+     * Reads one output into temporary files only.
+     */
+    private Part readOutput(int index) throws IOException {
+        File suites = temporaryFile("suites");
+        Writer suitesOut = writer(suites);
+        try {
+            Part part = readOutput(index, suitesOut);
+            part.suites.add(suites);
+            return part;
+        } finally {
+            suitesOut.close();
+        }
+    }
+
+    /**
+     * @return new id of the top level suite of the given output, the root id
+     *         for the base
+     */
+    private String suiteId(int index) {
+        if (base == null)
+            return ROOT_ID + "-s" + (index + 1);
+        return index == 0 ? ROOT_ID : ROOT_ID + "-s" + (baseSuites + index);
+    }
+
+    private File temporaryFile(String prefix) throws IOException {
+        File file = File.createTempFile(prefix, ".xml", spoolDirectory);
+        temporaryFiles.add(file);
+        return file;
+    }
+
+    private void copyOutput(File output, String id, Part part, Writer out, Writer suiteStatsOut,
+            Writer errorsOut) throws IOException, XMLStreamException {
+        InputStream in = CompressedOutputs.open(output);
+        try {
+            XMLStreamReader reader = newInputFactory().createXMLStreamReader(in);
+            try {
+                expect(reader, "robot", output);
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    String element = reader.getLocalName();
+                    if (element.equals("suite") && output == base) {
+                        // The suites of the base, which are numbered already.
+                        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                            if (reader.getLocalName().equals("suite")) {
+                                copyElement(reader, id, part, out);
+                                out.write('\n');
+                            } else {
+                                skipElement(reader);
+                            }
+                        }
+                    } else if (element.equals("suite")) {
+                        copyElement(reader, id, part, out);
+                        out.write('\n');
+                    } else if (element.equals("statistics")) {
+                        readStatistics(reader, id, part, suiteStatsOut);
+                    } else if (element.equals("errors")) {
+                        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                            copyElement(reader, null, part, errorsOut);
+                            errorsOut.write('\n');
+                        }
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Copies the element the reader is at, leaving the reader at its end.
+     *
+     * @param id new id of the top level suite, when copying one
+     * @param part where the tests and elapsed time of the suite are counted
+     */
+    private static void copyElement(XMLStreamReader reader, String id, Part part, Writer out)
+            throws IOException, XMLStreamException {
+        int depth = 0;
+        // Depth of the test being copied, and its tags and status.
+        int testDepth = -1;
+        List<String> tags = new ArrayList<String>();
+        StringBuilder tag = null;
+        boolean passed = false;
+        while (true) {
+            switch (reader.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT:
+                String element = reader.getLocalName();
+                if (id != null && element.equals("test")) {
+                    testDepth = depth + 1;
+                    tags.clear();
+                } else if (testDepth > 0 && depth == testDepth + 1 && element.equals("tag")) {
+                    tag = new StringBuilder();
+                } else if (testDepth > 0 && depth == testDepth && element.equals("status")) {
+                    passed = "PASS".equals(reader.getAttributeValue(null, "status"));
+                }
+                boolean identified = id != null && (element.equals("suite") || element.equals("test"));
+                out.write('<');
+                out.write(element);
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    String name = reader.getAttributeLocalName(i);
+                    String value = reader.getAttributeValue(i);
+                    if (identified && name.equals("id"))
+                        value = renumber(value, id);
+                    out.write(' ');
+                    out.write(name);
+                    out.write("=\"");
+                    out.write(escape(value, true));
+                    out.write('"');
+                }
+                out.write('>');
+                depth++;
+                if (id != null && depth == 2 && element.equals("status"))
+                    part.elapsed += elapsedTime(attributes(reader));
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                out.write("</" + reader.getLocalName() + ">");
+                if (tag != null) {
+                    tags.add(tag.toString());
+                    tag = null;
+                } else if (depth == testDepth) {
+                    part.countTest(passed, tags);
+                    testDepth = -1;
+                }
+                depth--;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.CDATA:
+                if (tag != null)
+                    tag.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                writeText(reader, out);
+                break;
+            default:
+                break;
+            }
+            if (depth == 0)
+                return;
+            reader.next();
+        }
+    }
+
+    private void readStatistics(XMLStreamReader reader, String id, Part part, Writer suiteStatsOut)
+            throws IOException, XMLStreamException {
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String section = reader.getLocalName();
+            List<String> labels = new ArrayList<String>();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                Map<String, String> attributes = attributes(reader);
+                String text = reader.getElementText();
+                long pass = count(attributes.remove("pass"));
+                long fail = count(attributes.remove("fail"));
+                if (section.equals("total")) {
+                    labels.add(text);
+                } else if (section.equals("suite") && id.equals(ROOT_ID)) {
+                    // From the base: all but its top level suite, renamed.
+                    if (!ROOT_ID.equals(attributes.get("id")) && text.startsWith(baseName + "."))
+                        writeStat(suiteStatsOut, pass, fail, attributes,
+                                rootName + text.substring(baseName.length()));
+                } else if (section.equals("suite")) {
+                    if (attributes.containsKey("id"))
+                        attributes.put("id", renumber(attributes.get("id"), id));
+                    writeStat(suiteStatsOut, pass, fail, attributes, rootName + "." + text);
+                }
+            }
+            if (section.equals("total") && labels.size() == 2)
+                part.totalLabels = labels.toArray(new String[2]);
+        }
+    }
+
+    private void writeStatistics(Writer out, Part result) throws IOException {
+        long[] all = result.all;
+        String[] labels = result.totalLabels != null ? result.totalLabels
+                : new String[] { "Critical Tests", "All Tests" };
+        Map<String, String> noAttributes = Collections.emptyMap();
+        out.write("<statistics>\n<total>\n");
+        writeStat(out, all[0], all[1], noAttributes, labels[0]);
+        writeStat(out, all[0], all[1], noAttributes, labels[1]);
+        out.write("</total>\n<tag>\n");
+        List<TagStat> tags = new ArrayList<TagStat>(result.tagStats.values());
+        Collections.sort(tags);
+        for (TagStat stat : tags)
+            writeStat(out, stat.counts[0], stat.counts[1], noAttributes, stat.name);
+        out.write("</tag>\n<suite>\n");
+        Map<String, String> root = new LinkedHashMap<String, String>();
+        root.put("name", rootName);
+        root.put("id", ROOT_ID);
+        writeStat(out, all[0], all[1], root, rootName);
+        for (File suiteStats : result.suiteStats)
+            append(out, suiteStats);
+        out.write("</suite>\n</statistics>\n");
+    }
+
+    private static void writeStat(Writer out, long pass, long fail, Map<String, String> attributes, String text)
+            throws IOException {
+        out.write("<stat pass=\"" + pass + "\" fail=\"" + fail + "\"");
+        for (Map.Entry<String, String> attribute : attributes.entrySet())
+            out.write(" " + attribute.getKey() + "=\"" + escape(attribute.getValue(), true) + "\"");
+        out.write(">" + escape(text, false) + "</stat>\n");
+    }
+
+    /**
+     * @return the id with the top level suite id of its output replaced
+     */
+    private static String renumber(String value, String id) {
+        if (value.equals(ROOT_ID))
+            return id;
+        if (value.startsWith(ROOT_ID + "-"))
+            return id + value.substring(ROOT_ID.length());
+        return value;
+    }
+
+    private static long elapsedTime(Map<String, String> status) {
+        if (status.containsKey("elapsedtime"))
+            return count(status.get("elapsedtime"));
+        if (!status.containsKey("starttime") || !status.containsKey("endtime"))
+            return 0;
+        try {
+            SimpleDateFormat format = new SimpleDateFormat(TIMESTAMP_FORMAT, Locale.ROOT);
+            return format.parse(status.get("endtime")).getTime() - format.parse(status.get("starttime")).getTime();
+        } catch (ParseException e) {
+            // N/A
+            return 0;
+        }
+    }
+
+    private static String timestamp(Date date) {
+        return new SimpleDateFormat(TIMESTAMP_FORMAT, Locale.ROOT).format(date);
+    }
+
+    private static long count(String value) {
+        try {
+            return value != null ? Long.parseLong(value.trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    private static void expect(XMLStreamReader reader, String element, File output) throws XMLStreamException {
+        if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !reader.getLocalName().equals(element))
+            throw new XMLStreamException(output + " is not a Robot Framework output, expected <" + element + ">");
+    }
+
+    private static Map<String, String> attributes(XMLStreamReader reader) {
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        for (int i = 0; i < reader.getAttributeCount(); i++)
+            attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        return attributes;
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    static void writeText(XMLStreamReader reader, Writer out) throws IOException {
+        char[] text = reader.getTextCharacters();
+        int start = reader.getTextStart();
+        int end = start + reader.getTextLength();
+        int from = start;
+        for (int i = start; i < end; i++) {
+            String replacement = replacement(text[i], false);
+            if (replacement != null) {
+                out.write(text, from, i - from);
+                out.write(replacement);
+                from = i + 1;
+            }
+        }
+        out.write(text, from, end - from);
+    }
+
+    static String escape(String value, boolean attribute) {
+        StringBuilder result = null;
+        for (int i = 0; i < value.length(); i++) {
+            String replacement = replacement(value.charAt(i), attribute);
+            if (replacement != null && result == null)
+                result = new StringBuilder(value.length() + 16).append(value, 0, i);
+            if (result != null) {
+                if (replacement != null)
+                    result.append(replacement);
+                else
+                    result.append(value.charAt(i));
+            }
+        }
+        return result != null ? result.toString() : value;
+    }
+
+    private static String replacement(char c, boolean attribute) {
+        switch (c) {
+        case '&':
+            return "&amp;";
+        case '<':
+            return "&lt;";
+        case '>':
+            return "&gt;";
+        case '"':
+            return attribute ? "&quot;" : null;
+        case '\n':
+            return attribute ? "&#10;" : null;
+        case '\r':
+            return "&#13;";
+        case '\t':
+            return attribute ? "&#9;" : null;
+        default:
+            return null;
+        }
+    }
+
+    private static void append(Writer out, File spool) throws IOException {
+        Reader in = new InputStreamReader(new FileInputStream(spool), StandardCharsets.UTF_8);
+        try {
+            char[] buffer = new char[65536];
+            int count;
+            while ((count = in.read(buffer)) >= 0)
+                out.write(buffer, 0, count);
+        } finally {
+            in.close();
+        }
+    }
+
+    static Writer writer(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 65536);
+    }
+
+    private static String join(List<String> values, String separator) {
+        StringBuilder result = new StringBuilder();
+        for (String value : values) {
+            if (result.length() > 0)
+                result.append(separator);
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return the tag in lower case without spaces and underscores, which
+     *         Robot Framework ignores when comparing tags
+     */
+    private static String normalize(String tag) {
+        return tag.toLowerCase(Locale.ROOT).replace(" ", "").replace("_", "");
+    }
+
+    /**
+     * What has been read from a range of the outputs.
+     */
+    private static class Part {
+
+        /** Passed and failed tests. */
+        final long[] all = new long[2];
+
+        /** By normalized tag. */
+        final Map<String, TagStat> tagStats = new HashMap<String, TagStat>();
+
+        long elapsed;
+
+        String[] totalLabels;
+
+        /** Temporary files, in the order of the outputs. */
+        final List<File> suites = new ArrayList<File>();
+
+        final List<File> suiteStats = new ArrayList<File>();
+
+        final List<File> errors = new ArrayList<File>();
+
+        void countTest(boolean passed, List<String> tags) {
+            int result = passed ? 0 : 1;
+            all[result]++;
+            for (String tag : tags) {
+                String normalized = normalize(tag);
+                TagStat stat = tagStats.get(normalized);
+                if (stat == null) {
+                    stat = new TagStat(tag, normalized);
+                    tagStats.put(normalized, stat);
+                }
+                stat.counts[result]++;
+            }
+        }
+
+        /**
+         * Adds what was read from the outputs that follow this part's.
+         */
+        void add(Part next) {
+            all[0] += next.all[0];
+            all[1] += next.all[1];
+            for (TagStat stat : next.tagStats.values()) {
+                TagStat existing = tagStats.get(stat.normalizedName);
+                if (existing == null) {
+                    tagStats.put(stat.normalizedName, stat);
+                } else {
+                    existing.counts[0] += stat.counts[0];
+                    existing.counts[1] += stat.counts[1];
+                }
+            }
+            elapsed += next.elapsed;
+            if (totalLabels == null)
+                totalLabels = next.totalLabels;
+            suites.addAll(next.suites);
+            suiteStats.addAll(next.suiteStats);
+            errors.addAll(next.errors);
+        }
+    }
+
+    /**
+     * Reads the outputs from <code>from</code> to <code>to</code>, exclusive,
+     * splitting the range in halves.
+     */
+    private class PartTask extends RecursiveTask<Part> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+
+        private final int to;
+
+        PartTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Part compute() {
+            if (to - from == 1) {
+                try {
+                    return readOutput(from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            PartTask first = new PartTask(from, middle);
+            first.fork();
+            Part second = new PartTask(middle, to).compute();
+            Part result = first.join();
+            result.add(second);
+            return result;
+        }
+    }
+
+    private static class TagStat implements Comparable<TagStat> {
+
+        /** As first seen. */
+        final String name;
+
+        final String normalizedName;
+
+        /** Passed and failed tests. */
+        final long[] counts = new long[2];
+
+        TagStat(String name, String normalizedName) {
+            this.name = name;
+            this.normalizedName = normalizedName;
+        }
+
+        public int compareTo(TagStat other) {
+            return normalizedName.compareTo(other.normalizedName);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Copies a Robot Framework output, leaving out keyword data that is rarely
+ * looked at, so that rebot can load outputs that would not fit in its memory
+ * otherwise. Tests, suites, statistics and errors are copied as they are.
+ * <ul>
+ * <li>Passed keywords lose their child keywords and messages. Their name,
+ * arguments, documentation, tags and status stay. Failed keywords are
+ * copied, with their passed child keywords pruned the same way.</li>
+ * <li>Passed <code>FOR</code> loop iterations are dropped, except the last
+ * one.</li>
+ * <li>Messages are cut to a maximum length.</li>
+ * </ul>
+ * A keyword's status comes after its contents, so the output is read twice:
+ * first to note which keywords passed and which iterations are the last of
+ * their loop, then to copy it. Both passes stream the output with StAX, and
+ * only two bits per keyword are kept in memory. Compressed outputs are
+ * decompressed as they are read. The format read is that of Robot Framework
+ * 3, where loops are keywords of type <code>for</code> and
+ * <code>foritem</code>.
+ */
+class OutputPruner {
+
+    private final boolean passedKeywords;
+
+    private final boolean forIterations;
+
+    private final int maxMessageLength;
+
+    /** By keyword in document order. */
+    private final BitSet passed = new BitSet();
+
+    private final BitSet lastIterations = new BitSet();
+
+    private int keywordIndex;
+
+    /**
+     * @param passedKeywords whether to prune passed keywords
+     * @param forIterations whether to drop passed loop iterations but the last
+     * @param maxMessageLength number of characters messages are cut to, 0 or
+     *            less for no limit
+     */
+    OutputPruner(boolean passedKeywords, boolean forIterations, int maxMessageLength) {
+        this.passedKeywords = passedKeywords;
+        this.forIterations = forIterations;
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * @param output output to read
+     * @param target file to write, not the output
+     */
+    void prune(File output, File target) throws IOException {
+        passed.clear();
+        lastIterations.clear();
+        try {
+            readStatuses(output);
+            Writer out = OutputMerger.writer(target);
+            try {
+                copy(output, out);
+            } finally {
+                out.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid output file " + output + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void readStatuses(File output) throws IOException, XMLStreamException {
+        InputStream in = CompressedOutputs.open(output);
+        try {
+            XMLStreamReader reader = OutputMerger.newInputFactory().createXMLStreamReader(in);
+            try {
+                // Open keywords: index, element depth and, for loops, the
+                // index of the last iteration so far.
+                Deque<int[]> keywords = new ArrayDeque<int[]>();
+                int count = 0;
+                int depth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        String element = reader.getLocalName();
+                        if (element.equals("kw")) {
+                            int[] parent = keywords.peek();
+                            if (parent != null && "foritem".equals(reader.getAttributeValue(null, "type")))
+                                parent[2] = count;
+                            keywords.push(new int[] { count++, depth, -1 });
+                        } else if (element.equals("status") && !keywords.isEmpty()
+                                && keywords.peek()[1] == depth - 1
+                                && "PASS".equals(reader.getAttributeValue(null, "status"))) {
+                            passed.set(keywords.peek()[0]);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        if (reader.getLocalName().equals("kw")) {
+                            int[] keyword = keywords.pop();
+                            if (keyword[2] >= 0)
+                                lastIterations.set(keyword[2]);
+                        }
+                        depth--;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void copy(File output, Writer out) throws IOException, XMLStreamException {
+        InputStream in = CompressedOutputs.open(output);
+        try {
+            XMLStreamReader reader = OutputMerger.newInputFactory().createXMLStreamReader(in);
+            try {
+                out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                keywordIndex = 0;
+                // Depth of the passed keyword whose children are being
+                // pruned, and of the message being copied.
+                int prunedDepth = -1;
+                int messageDepth = -1;
+                long messageLength = 0;
+                int depth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        String element = reader.getLocalName();
+                        if (prunedDepth >= 0 && depth == prunedDepth
+                                && (element.equals("kw") || element.equals("msg"))) {
+                            if (element.equals("kw"))
+                                keywordIndex++;
+                            skip(reader);
+                            continue;
+                        }
+                        if (element.equals("kw")) {
+                            int index = keywordIndex++;
+                            if (forIterations && passed.get(index) && !lastIterations.get(index)
+                                    && "foritem".equals(reader.getAttributeValue(null, "type"))) {
+                                skip(reader);
+                                continue;
+                            }
+                            if (passedKeywords && prunedDepth < 0 && passed.get(index))
+                                prunedDepth = depth + 1;
+                        } else if (element.equals("msg")) {
+                            messageDepth = depth + 1;
+                            messageLength = 0;
+                        }
+                        writeStartElement(reader, out);
+                        depth++;
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth == messageDepth) {
+                            if (maxMessageLength > 0 && messageLength > maxMessageLength)
+                                out.write(OutputMerger.escape("\n[" + (messageLength - maxMessageLength)
+                                        + " characters removed]", false));
+                            messageDepth = -1;
+                        }
+                        if (depth == prunedDepth)
+                            prunedDepth = -1;
+                        out.write("</" + reader.getLocalName() + ">");
+                        depth--;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.CDATA:
+                        if (depth == messageDepth && maxMessageLength > 0) {
+                            long available = maxMessageLength - messageLength;
+                            messageLength += reader.getTextLength();
+                            if (available <= 0)
+                                break;
+                            if (reader.getTextLength() > available) {
+                                out.write(OutputMerger.escape(new String(reader.getTextCharacters(),
+                                        reader.getTextStart(), (int) available), false));
+                                break;
+                            }
+                        }
+                        OutputMerger.writeText(reader, out);
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeStartElement(XMLStreamReader reader, Writer out) throws IOException {
+        out.write('<');
+        out.write(reader.getLocalName());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            out.write(' ');
+            out.write(reader.getAttributeLocalName(i));
+            out.write("=\"");
+            out.write(OutputMerger.escape(reader.getAttributeValue(i), true));
+            out.write('"');
+        }
+        out.write('>');
+    }
+
+    /**
+     * Skips the element the reader is at, counting the keywords inside it.
+     */
+    private void skip(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (reader.getLocalName().equals("kw"))
+                    keywordIndex++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
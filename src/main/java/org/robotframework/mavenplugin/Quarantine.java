@@ -0,0 +1,157 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of quarantined tests, flaky ones whose results should not fail the
+ * build or trigger reruns. The list is a UTF-8 text file with one test long
+ * name per line, such as <code>Suite.Sub Suite.Test</code>; lines starting
+ * with <code>#</code> are comments, so the list can also be edited by hand.
+ * <p></p>
+ * Robot Framework 3 only excludes or marks non-critical tests by tag, so a
+ * run is given a pre-run modifier that tags the quarantined tests with
+ * {@link #TAG} before tags are matched. The modifier is a generated Python
+ * file with the names in it, as modifier arguments are split at colons,
+ * which paths and names may contain.
+ */
+class Quarantine {
+
+    static final String TAG = "quarantined";
+
+    static final String MODIFIER = "Quarantine.py";
+
+    private Quarantine() {
+    }
+
+    /**
+     * @return long names of the quarantined tests, none if the file is
+     *         missing
+     */
+    static List<String> read(File file) throws IOException {
+        List<String> tests = new ArrayList<String>();
+        if (!file.isFile())
+            return tests;
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#"))
+                tests.add(line);
+        }
+        return tests;
+    }
+
+    /**
+     * @param flaky long names of the tests to quarantine and why
+     */
+    static void write(File file, Map<String, String> flaky) throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append("# Flaky tests, one long name per line. Written by the flaky-tests goal.\n");
+        for (Map.Entry<String, String> entry : flaky.entrySet()) {
+            text.append("# ").append(entry.getValue()).append('\n');
+            text.append(entry.getKey()).append('\n');
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tag patterns selecting only the quarantined tests among those the given
+     * include patterns select. Robot Framework selects tests matching any
+     * <code>--include</code>, so each pattern is combined with {@link #TAG}
+     * instead of adding it as one more. As <code>AND</code> binds tighter than
+     * <code>OR</code> and <code>NOT</code>, the tag goes in front of every
+     * alternative before the first <code>NOT</code>, e.g.
+     * <code>aORbNOTc</code> becomes
+     * <code>quarantinedANDaORquarantinedANDbNOTc</code>.
+     *
+     * @param includes include patterns, may be <code>null</code>
+     * @return the combined patterns, or just {@link #TAG} without includes
+     */
+    static List<String> onlyQuarantined(List<String> includes) {
+        List<String> patterns = new ArrayList<String>();
+        if (includes != null) {
+            for (String include : includes) {
+                if (include == null || include.trim().isEmpty())
+                    continue;
+                int not = include.indexOf("NOT");
+                String selected = not >= 0 ? include.substring(0, not) : include;
+                StringBuilder pattern = new StringBuilder();
+                if (selected.trim().isEmpty()) {
+                    pattern.append(TAG);
+                } else {
+                    for (String alternative : selected.split("OR", -1)) {
+                        if (pattern.length() > 0)
+                            pattern.append("OR");
+                        pattern.append(TAG).append("AND").append(alternative);
+                    }
+                }
+                if (not >= 0)
+                    pattern.append(include.substring(not));
+                patterns.add(pattern.toString());
+            }
+        }
+        if (patterns.isEmpty())
+            patterns.add(TAG);
+        return patterns;
+    }
+
+    /**
+     * Writes the pre-run modifier tagging the given tests.
+     *
+     * @param directory directory to write {@link #MODIFIER} in
+     * @param tests long names of the tests
+     * @param rootName name the top level suite is given with
+     *            <code>--name</code>, or <code>null</code>; the modifier runs
+     *            before the name is set, while the long names are those of
+     *            past outputs
+     * @return the modifier
+     */
+    static File writeModifier(File directory, List<String> tests, String rootName) throws IOException {
+        StringBuilder python = new StringBuilder();
+        python.append("from robot.api import SuiteVisitor\n\n\n");
+        python.append("class Quarantine(SuiteVisitor):\n");
+        python.append("    tag = ").append(literal(TAG)).append("\n");
+        python.append("    root_name = ").append(rootName == null ? "None" : literal(rootName)).append("\n");
+        python.append("    tests = frozenset([\n");
+        for (String test : tests)
+            python.append("        ").append(literal(test)).append(",\n");
+        python.append("    ])\n\n");
+        python.append("    def start_suite(self, suite):\n");
+        python.append("        if suite.parent is None:\n");
+        python.append("            self.root_length = len(suite.longname)\n\n");
+        python.append("    def visit_test(self, test):\n");
+        python.append("        longname = test.longname\n");
+        python.append("        if self.root_name is not None:\n");
+        python.append("            longname = self.root_name + longname[self.root_length:]\n");
+        python.append("        if longname in self.tests:\n");
+        python.append("            test.tags.add(self.tag)\n");
+        directory.mkdirs();
+        File modifier = new File(directory, MODIFIER);
+        Files.write(modifier.toPath(), python.toString().getBytes(StandardCharsets.US_ASCII));
+        return modifier;
+    }
+
+    /**
+     * @return the text as an ASCII Python unicode literal
+     */
+    static String literal(String text) {
+        StringBuilder literal = new StringBuilder("u'");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == '\'')
+                literal.append('\\').append(c);
+            else if (c < 0x20 || c > 0x7e)
+                literal.append(String.format("\\u%04x", (int) c));
+            else
+                literal.append(c);
+        }
+        return literal.append('\'').toString();
+    }
+}
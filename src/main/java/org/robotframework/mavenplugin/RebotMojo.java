@@ -18,9 +18,17 @@ package org.robotframework.mavenplugin;
  */
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.codehaus.plexus.util.StringUtils;
@@ -38,6 +46,23 @@ import org.robotframework.RobotFramework;
 public class RebotMojo
         extends AbstractMojoWithLoadedClasspath {
 
+    private static final String MERGED_OUTPUT = "merged-output.xml";
+
+    private static final String MERGE_MANIFEST = ".merged-output-manifest";
+
+    private static final String DECOMPRESSED_OUTPUTS = ".decompressed-outputs";
+
+    private static final String COMBINED_OUTPUT = "rebot-output.xml";
+
+    private static final String DEFERRED_LOG_OUTPUT = "rebot-log.txt";
+
+    private static final File NONE = new File("NONE");
+
+    /**
+     * Return codes from this up are errors, lower ones count failed tests.
+     */
+    private static final int ERROR_RETURN_CODE = 250;
+
     protected void subclassExecute()
             throws MojoExecutionException, MojoFailureException {
         try {
@@ -48,34 +73,335 @@ public class RebotMojo
     }
 
     public void runRebot()
-            throws IOException {
+            throws IOException, MojoExecutionException {
         this.ensureOutputDirectoryExists();
+        List<String> inputs = Collections.singletonList(getOutputPath());
+        List<File> outputs = findOutputs(outputDirectory);
+        File stagingDirectory = new File(outputDirectory, DECOMPRESSED_OUTPUTS);
+        if (streamingReport && merge)
+            getLog().warn("streamingReport is not used with merge, rebot writes the report.");
+        Process deferredLog = null;
+        try {
+            if (streamingReport && !merge) {
+                writeStreamingReport(outputs, stagingDirectory);
+                return;
+            }
+            if (streamingMerge && !merge && outputs.size() > 1) {
+                File mergedOutput = new File(outputDirectory, MERGED_OUTPUT);
+                mergeOutputs(outputs, mergedOutput);
+                inputs = Collections.singletonList(mergedOutput.getPath());
+                if (isPruning())
+                    inputs = stage(Collections.singletonList(mergedOutput), stagingDirectory);
+            } else if (isPruning() && !outputs.isEmpty() || containsCompressed(outputs)) {
+                inputs = stage(outputs, stagingDirectory);
+            }
+            if (concurrentReports || deferLog) {
+                deferredLog = runInPhases(inputs);
+            } else {
+                runInProcess(generateRunArguments(output, log, report, xunitFile, merge, inputs));
+            }
+        } finally {
+            FileUtils.deleteDirectory(stagingDirectory);
+        }
+        if (deferredLog != null)
+            awaitDeferredLog(deferredLog);
+    }
+
+    private static boolean containsCompressed(List<File> outputs) {
+        for (File output : outputs) {
+            if (CompressedOutputs.isCompressed(output))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isPruning() {
+        return prunePassedKeywords || pruneForIterations || maxMessageLength > 0;
+    }
+
+    /**
+     * Writes pruned copies of the outputs into the given directory, when
+     * pruning, or else decompressed copies of the compressed outputs, which
+     * rebot cannot read.
+     *
+     * @return paths of the outputs for rebot, in the order of the outputs
+     */
+    private List<String> stage(List<File> outputs, File stagingDirectory)
+            throws IOException {
+        if (!stagingDirectory.isDirectory() && !stagingDirectory.mkdirs())
+            throw new IOException("Directory cannot be created: " + stagingDirectory.getAbsolutePath());
+        long start = System.currentTimeMillis();
+        long originalBytes = 0;
+        long bytes = 0;
+        int count = 0;
+        List<String> inputs = new ArrayList<String>();
+        OutputPruner pruner = isPruning() ? new OutputPruner(prunePassedKeywords, pruneForIterations,
+                maxMessageLength) : null;
+        for (File output : outputs) {
+            if (pruner == null && !CompressedOutputs.isCompressed(output)) {
+                inputs.add(output.getPath());
+                continue;
+            }
+            String name = output.getName();
+            File staged = new File(stagingDirectory, CompressedOutputs.isCompressed(output)
+                    ? name.substring(0, name.length() - CompressedOutputs.SUFFIX.length()) : name);
+            if (pruner != null)
+                pruner.prune(output, staged);
+            else
+                CompressedOutputs.decompress(output, staged);
+            originalBytes += output.length();
+            bytes += staged.length();
+            count++;
+            inputs.add(staged.getPath());
+        }
+        getLog().info((pruner != null ? "Pruned " : "Decompressed ") + count + " outputs from "
+                + CompressedOutputs.size(originalBytes) + " to " + CompressedOutputs.size(bytes) + " for rebot in "
+                + (System.currentTimeMillis() - start) + " ms.");
+        return inputs;
+    }
+
+    /**
+     * Writes the report with {@link StreamingReport} instead of rebot, from
+     * the only output or the outputs merged by streaming.
+     */
+    private void writeStreamingReport(List<File> outputs, File stagingDirectory)
+            throws IOException {
+        if (isNone(report))
+            return;
+        if (outputs.isEmpty()) {
+            getLog().warn("No outputs to report on in " + outputDirectory + ".");
+            return;
+        }
+        File source = outputs.get(0);
+        if (outputs.size() > 1) {
+            source = new File(outputDirectory, MERGED_OUTPUT);
+            mergeOutputs(outputs, source);
+        }
+        if (isPruning())
+            source = new File(stage(Collections.singletonList(source), stagingDirectory).get(0));
+        File reportFile = resolve(report != null ? report : new File("report.html"));
+        long start = System.currentTimeMillis();
+        StreamingReport streamingReport = new StreamingReport(reportTitle);
+        streamingReport.write(source, reportFile);
+        getLog().info("Wrote " + reportFile + " of " + streamingReport.getSuites() + " suites, "
+                + streamingReport.getTests() + " tests and " + streamingReport.getKeywords() + " keywords in "
+                + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private void mergeOutputs(List<File> outputs, File mergedOutput)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        if (!incrementalMerge) {
+            new OutputMerger(outputs).merge(mergedOutput, mergeThreads);
+            getLog().info("Merged " + outputs.size() + " outputs into " + mergedOutput + " in "
+                    + (System.currentTimeMillis() - start) + " ms.");
+            return;
+        }
+        MergeManifest manifest = MergeManifest.load(new File(outputDirectory, MERGE_MANIFEST));
+        int contained = manifest.containedOutputs(mergedOutput, outputs);
+        if (contained == outputs.size()) {
+            getLog().info(mergedOutput + " already contains all " + outputs.size() + " outputs.");
+            return;
+        }
+        if (contained > 0) {
+            // The merger cannot write over its own base.
+            File folded = new File(outputDirectory, MERGED_OUTPUT + ".tmp");
+            new OutputMerger(mergedOutput, contained, outputs.subList(contained, outputs.size())).merge(folded,
+                    mergeThreads);
+            Files.move(folded.toPath(), mergedOutput.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            new OutputMerger(outputs).merge(mergedOutput, mergeThreads);
+        }
+        manifest.save(mergedOutput, outputs);
+        getLog().info("Merged " + (outputs.size() - contained) + " of " + outputs.size() + " outputs into "
+                + mergedOutput + " in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    /**
+     * Writes the combined output and the xunit file first, then the log and the
+     * report at the same time from the combined output. The log is written by a
+     * forked run and, with <code>deferLog</code>, left running in the
+     * background. Fails if rebot reports an error in any phase it waits for.
+     *
+     * @return the deferred log run to wait for at the end of the goal, with
+     *         <code>awaitDeferredLog</code>, or <code>null</code>
+     */
+    private Process runInPhases(List<String> inputs)
+            throws IOException, MojoExecutionException {
+        // Absolute, as rebot takes relative output paths to be relative to the
+        // output directory.
+        File combinedOutput = (output != null && !isNone(output) ? resolve(output)
+                : new File(outputDirectory, COMBINED_OUTPUT)).getAbsoluteFile();
+        long start = System.currentTimeMillis();
+        runPhase(generateRunArguments(combinedOutput, NONE, NONE, xunitFile, merge, inputs),
+                "the combined output and the xunit file");
+        getLog().info("Wrote " + combinedOutput + " and the xunit file in " + (System.currentTimeMillis() - start)
+                + " ms.");
+
+        start = System.currentTimeMillis();
+        Process logProcess = null;
+        if (!isNone(log)) {
+            String[] logArguments = generateRunArguments(NONE, log != null ? log : new File("log.html"), NONE,
+                    null, false, Collections.singletonList(combinedOutput.getPath()));
+            DocumentationRunner runner = new DocumentationRunner(getLog(), 2, false, externalRunner,
+                    getClassPathString());
+            logProcess = runner.fork(logArguments, deferLog ? new File(outputDirectory, DEFERRED_LOG_OUTPUT) : null);
+        }
+        if (!isNone(report))
+            runPhase(generateRunArguments(NONE, NONE, report != null ? report : new File("report.html"), null,
+                    false, Collections.singletonList(combinedOutput.getPath())), "the report");
+        if (logProcess == null)
+            return null;
+        if (deferLog) {
+            getLog().info("Writing the log in the background, its output goes to "
+                    + new File(outputDirectory, DEFERRED_LOG_OUTPUT) + ".");
+            if (awaitDeferredLog)
+                return logProcess;
+            awaitOnExit(logProcess);
+            return null;
+        }
+        String logOutput = DocumentationRunner.readFully(logProcess.getInputStream());
+        int returnCode = waitFor(logProcess);
+        if (returnCode >= ERROR_RETURN_CODE) {
+            getLog().error(logOutput.trim());
+            throw new MojoExecutionException("Rebot failed to write the log, return code " + returnCode + ".");
+        }
+        if (logOutput.length() > 0)
+            getLog().info(logOutput.trim());
+        getLog().info("Wrote the log and the report in " + (System.currentTimeMillis() - start) + " ms.");
+        return null;
+    }
+
+    /**
+     * Waits for the deferred log, whose output went to a file, and fails the
+     * build if it could not be written.
+     */
+    private void awaitDeferredLog(Process logProcess)
+            throws IOException, MojoExecutionException {
+        long start = System.currentTimeMillis();
+        int returnCode = waitFor(logProcess);
+        File logOutput = new File(outputDirectory, DEFERRED_LOG_OUTPUT);
+        if (returnCode >= ERROR_RETURN_CODE) {
+            if (logOutput.isFile())
+                getLog().error(FileUtils.readFileToString(logOutput, StandardCharsets.UTF_8).trim());
+            throw new MojoExecutionException("Rebot failed to write the deferred log, return code " + returnCode
+                    + ", see " + logOutput + ".");
+        }
+        getLog().info("Waited " + (System.currentTimeMillis() - start) + " ms for the deferred log.");
+    }
+
+    private static int waitFor(Process process)
+            throws IOException {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the log.", e);
+        }
+    }
+
+    private void runInProcess(String[] runArguments) {
         if (externalRunner != null && externalRunner.getRunWithPython()) {
-            PythonRunner.run(this.generateRunArguments());
+            PythonRunner.run(runArguments);
         } else {
-            RobotFramework.run(this.generateRunArguments());
+            RobotFramework.run(runArguments);
         }
     }
-    
-    
+
+    /**
+     * Runs one phase of <code>runInPhases</code> like {@link #runInProcess(String[])}, failing on rebot errors.
+     * Lower return codes only count failed tests.
+     */
+    private void runPhase(String[] runArguments, String written)
+            throws IOException, MojoExecutionException {
+        int returnCode;
+        if (externalRunner != null && externalRunner.getRunWithPython()) {
+            try {
+                returnCode = PythonRunner.exec(runArguments);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing " + written + ".", e);
+            }
+        } else {
+            returnCode = RobotFramework.run(runArguments);
+        }
+        if (returnCode >= ERROR_RETURN_CODE)
+            throw new MojoExecutionException("Rebot failed to write " + written + ", return code " + returnCode
+                    + ".");
+    }
+
+    /**
+     * Keeps this JVM from exiting before the detached log run has finished, so
+     * that the log is complete. Nothing can be reported from here; what the
+     * run printed, errors included, is in <code>rebot-log.txt</code>.
+     */
+    private static void awaitOnExit(final Process process) {
+        Runtime.getRuntime().addShutdownHook(new Thread("rebot-deferred-log") {
+            public void run() {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException e) {
+                    // Exiting anyway
+                }
+            }
+        });
+    }
+
+    private File resolve(File file) {
+        return file.isAbsolute() ? file : new File(outputDirectory, file.getPath());
+    }
+
+    private static boolean isNone(File file) {
+        return file != null && file.getName().equalsIgnoreCase("NONE");
+    }
+
+    /**
+     * @return the files matching <code>output*.xml</code> or
+     *         <code>output*.xml.gz</code> in the output directory, in name
+     *         order as rebot takes them
+     */
+    static List<File> findOutputs(File outputDirectory) {
+        File[] files = outputDirectory.listFiles(new FilenameFilter() {
+            public boolean accept(File directory, String name) {
+                return name.startsWith("output")
+                        && (name.endsWith(".xml") || name.endsWith(".xml" + CompressedOutputs.SUFFIX));
+            }
+        });
+        List<File> outputs = new ArrayList<File>();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.isFile())
+                    outputs.add(file);
+            }
+        }
+        return outputs;
+    }
+
     public String[] generateRunArguments() {
+        return generateRunArguments(output, log, report, xunitFile, merge, Collections.singletonList(getOutputPath()));
+    }
+
+    private String[] generateRunArguments(File outputFile, File logFile, File reportFile, File xunit,
+            boolean merging, List<String> inputs) {
         Arguments generatedArguments = new Arguments();
         generatedArguments.add("rebot");
         generatedArguments.addFileToArguments(outputDirectory, "-d");
-        generatedArguments.addFileToArguments(output, "-o");
-        generatedArguments.addFileToArguments(log, "-l");
+        generatedArguments.addFileToArguments(outputFile, "-o");
+        generatedArguments.addFileToArguments(logFile, "-l");
         generatedArguments.addNonEmptyStringToArguments(logTitle, "--logtitle");
-        generatedArguments.addFileToArguments(report, "-r");
+        generatedArguments.addFileToArguments(reportFile, "-r");
         generatedArguments.addNonEmptyStringToArguments(reportTitle, "--reporttitle");
         generatedArguments.addNonEmptyStringToArguments(splitOutputs, "--splitoutputs");
-        generatedArguments.addFlagToArguments(merge, "--merge");
-        generatedArguments.addFileToArguments(xunitFile, "-x");
+        generatedArguments.addFlagToArguments(merging, "--merge");
+        generatedArguments.addFileToArguments(xunit, "-x");
         generatedArguments.addNonEmptyStringToArguments(logLevel, "-L");
         generatedArguments.addFlagToArguments(true, "--xunitskipnoncritical");
         generatedArguments.addFlagToArguments(rpa, "--rpa");
         generatedArguments.addListToArguments(removeKeywords, "--removekeywords");
         generatedArguments.addListToArguments(flattenKeywords, "--flattenkeywords");
-        generatedArguments.add(getOutputPath());
+        for (String input : inputs)
+            generatedArguments.add(input);
         return generatedArguments.toArray();
     }
     
@@ -116,6 +442,107 @@ public class RebotMojo
      * @parameter default-value="false"
      */
     private boolean merge;
+
+    /**
+     * Combine the <code>output*.xml</code> files into <code>merged-output.xml</code> in the output directory before
+     * running rebot, which then only reads that file. The outputs are streamed instead of loaded into memory, which
+     * takes far less memory and time with large outputs. The result is the same as when rebot combines them: their
+     * suites under a new top level suite. Not used with <code>merge</code>, or when there is only one output.
+     * Outputs compressed with gzip, <code>output*.xml.gz</code>, are decompressed as they are read. Without
+     * <code>streamingMerge</code>, they are decompressed into a temporary directory for rebot.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean streamingMerge;
+
+    /**
+     * Number of outputs read at the same time by <code>streamingMerge</code>. With more than one, every output is
+     * read into temporary files and these are combined pairwise in a fork/join tree, keeping the order of the outputs.
+     * The merged output is the same as with one thread. Worth it with many outputs, such as from shards or reruns.
+     *
+     * @parameter default-value="1"
+     */
+    private int mergeThreads;
+
+    /**
+     * Keep <code>merged-output.xml</code> between builds and fold only the outputs added since into it, instead of
+     * combining all outputs again with <code>streamingMerge</code>. Which outputs it contains is recorded by path,
+     * size and modification time in <code>.merged-output-manifest</code> in the output directory. When one of those
+     * has changed or is gone, or a new output sorts before them, all outputs are combined again. Worth it when
+     * outputs, such as of reruns, are added to the output directory and rebot runs again several times in a build.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean incrementalMerge;
+
+    /**
+     * Write the log and the report at the same time. Rebot first writes the combined output and the xunit file, so
+     * that they are ready as soon as possible, and then the log and the report from the combined output: the log in a
+     * forked JVM, or a Python process with <code>runWithPython</code>, and the report alongside it. Without
+     * <code>output</code>, the combined output is written to <code>rebot-output.xml</code> in the output directory.
+     * Takes longer in total, as the combined output is read once more, but less time to wait for on more than one
+     * processor.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean concurrentReports;
+
+    /**
+     * Write the log in the background, as with <code>concurrentReports</code>, without waiting for it. The build goes
+     * on once the xunit file and the report are written, and the log appears when ready; Maven does not exit before
+     * it is. What the log run prints goes to <code>rebot-log.txt</code> in the output directory, which is the only
+     * place its errors show, unless <code>awaitDeferredLog</code> is set.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean deferLog;
+
+    /**
+     * With <code>deferLog</code>, wait for the log at the end of this goal, once the xunit file and the report are
+     * written, and fail the build if the log cannot be written.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean awaitDeferredLog;
+
+    /**
+     * Before rebot reads the outputs, remove the child keywords and messages of passed keywords in a streaming pass,
+     * keeping the keywords themselves with their arguments and status. Failed keywords stay as they are, apart from
+     * their passed child keywords. Unlike <code>removeKeywords</code>, this happens before rebot loads the outputs,
+     * so it also helps when they are too large to load. The pruned copies are written to a temporary directory; with
+     * <code>streamingMerge</code> the merged output is pruned.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean prunePassedKeywords;
+
+    /**
+     * Before rebot reads the outputs, drop the passed iterations of <code>FOR</code> loops except the last one in a
+     * streaming pass, like <code>prunePassedKeywords</code>.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean pruneForIterations;
+
+    /**
+     * Before rebot reads the outputs, cut longer messages to this many characters in a streaming pass, like
+     * <code>prunePassedKeywords</code>. 0 keeps messages whole.
+     *
+     * @parameter default-value="0"
+     */
+    private int maxMessageLength;
+
+    /**
+     * Write the report with a renderer that streams the output instead of running rebot, for outputs too large for
+     * rebot to load. More than one output is first combined as with <code>streamingMerge</code>. The report page
+     * loads its data from a directory next to it, <code>report-data</code> for <code>report.html</code>: a summary
+     * with the statistics and errors, one file per suite with its child suites and tests, and one file per suite or
+     * test with its keywords and messages, each loaded only when opened. The report thus also serves as the log.
+     * Rebot is not run, so no log, xunit file or combined output is written. Not used with <code>merge</code>.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean streamingReport;
     
     /**
      * Sets the threshold level for logging.
@@ -0,0 +1,502 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.hsqldb.jdbc.JDBCDriver;
+
+/**
+ * Local HSQLDB database of the suites, tests, tags and keywords of Robot
+ * Framework outputs, kept across builds so that history can be queried with
+ * SQL instead of reading many outputs again. The database is opened with the
+ * JDBC URL <code>jdbc:hsqldb:file:&lt;path&gt;</code>. Its tables are:
+ * <ul>
+ * <li><code>runs</code>: one row per output, with its path, size and
+ * modification time and when it was generated;</li>
+ * <li><code>suites</code>, <code>tests</code> and <code>keywords</code>:
+ * name, status, start time and elapsed milliseconds, keyed by run and id,
+ * with the suite, test and parent keyword they are in;</li>
+ * <li><code>test_tags</code>: the tags of the tests.</li>
+ * </ul>
+ * Ids of suites and tests are those of the output, such as
+ * <code>s1-s2-t3</code>; keywords are numbered in document order within a
+ * run.
+ * <p></p>
+ * Outputs are streamed with StAX and rows inserted in batches, one
+ * transaction per output, into cached tables kept on disk rather than in
+ * memory, so outputs with millions of keywords can be indexed. An output
+ * with the same path, size and modification time as one already in the
+ * database is not read again.
+ */
+class ResultIndex {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[] SCHEMA = {
+            "CREATE CACHED TABLE runs (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "source VARCHAR(4096) NOT NULL, file_size BIGINT NOT NULL, file_modified BIGINT NOT NULL, "
+                    + "generated VARCHAR(32), generator VARCHAR(255), indexed TIMESTAMP DEFAULT CURRENT_TIMESTAMP)",
+            "CREATE INDEX runs_source ON runs (source)",
+            "CREATE CACHED TABLE suites (run_id BIGINT NOT NULL, id VARCHAR(255) NOT NULL, "
+                    + "parent_id VARCHAR(255), name VARCHAR(1024), longname VARCHAR(4096), source VARCHAR(4096), "
+                    + "status VARCHAR(16), starttime VARCHAR(32), elapsed BIGINT, PRIMARY KEY (run_id, id))",
+            "CREATE CACHED TABLE tests (run_id BIGINT NOT NULL, id VARCHAR(255) NOT NULL, "
+                    + "suite_id VARCHAR(255) NOT NULL, name VARCHAR(1024), longname VARCHAR(4096), "
+                    + "status VARCHAR(16), critical BOOLEAN, message VARCHAR(4096), starttime VARCHAR(32), "
+                    + "elapsed BIGINT, PRIMARY KEY (run_id, id))",
+            "CREATE INDEX tests_longname ON tests (longname)",
+            "CREATE CACHED TABLE test_tags (run_id BIGINT NOT NULL, test_id VARCHAR(255) NOT NULL, "
+                    + "tag VARCHAR(1024) NOT NULL)",
+            "CREATE CACHED TABLE keywords (run_id BIGINT NOT NULL, id BIGINT NOT NULL, parent_id BIGINT, "
+                    + "suite_id VARCHAR(255) NOT NULL, test_id VARCHAR(255), type VARCHAR(32), name VARCHAR(4096), "
+                    + "library VARCHAR(1024), status VARCHAR(16), starttime VARCHAR(32), elapsed BIGINT, "
+                    + "PRIMARY KEY (run_id, id))" };
+
+    private static final int MAX_TEXT = 4096;
+
+    private final Connection connection;
+
+    private PreparedStatement insertSuite;
+
+    private PreparedStatement insertTest;
+
+    private PreparedStatement insertTag;
+
+    private PreparedStatement insertKeyword;
+
+    /** Statements with rows to insert. */
+    private final Set<PreparedStatement> batched = new LinkedHashSet<PreparedStatement>();
+
+    private int pending;
+
+    /** Rows added from the output being indexed. */
+    private long suites;
+
+    private long tests;
+
+    private long keywords;
+
+    private ResultIndex(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Opens the database, creating it if it does not exist.
+     *
+     * @param database path of the database files, without extension
+     */
+    static ResultIndex open(File database) throws IOException {
+        File parent = database.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Database directory cannot be created: " + parent.getAbsolutePath());
+        Properties properties = new Properties();
+        properties.setProperty("user", "SA");
+        properties.setProperty("password", "");
+        try {
+            // Not through DriverManager, which does not see drivers loaded by
+            // the plugin class loader.
+            Connection connection = new JDBCDriver().connect(
+                    "jdbc:hsqldb:file:" + database.getAbsolutePath() + ";shutdown=true", properties);
+            ResultIndex index = new ResultIndex(connection);
+            try {
+                index.createSchema();
+                connection.setAutoCommit(false);
+                return index;
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Cannot open result database " + database + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void createSchema() throws SQLException {
+        ResultSet tables = connection.getMetaData().getTables(null, null, "RUNS", null);
+        try {
+            if (tables.next())
+                return;
+        } finally {
+            tables.close();
+        }
+        Statement statement = connection.createStatement();
+        try {
+            for (String sql : SCHEMA)
+                statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return whether the output, by path, size and modification time, is in
+     *         the database
+     */
+    boolean contains(File output) throws IOException {
+        try {
+            PreparedStatement query = connection.prepareStatement(
+                    "SELECT COUNT(*) FROM runs WHERE source = ? AND file_size = ? AND file_modified = ?");
+            try {
+                query.setString(1, output.getAbsolutePath());
+                query.setLong(2, output.length());
+                query.setLong(3, output.lastModified());
+                ResultSet result = query.executeQuery();
+                result.next();
+                return result.getLong(1) > 0;
+            } finally {
+                query.close();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Cannot query result database: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds an output to the database in one transaction.
+     *
+     * @return numbers of suites, tests and keywords added
+     */
+    long[] add(File output) throws IOException {
+        suites = 0;
+        tests = 0;
+        keywords = 0;
+        batched.clear();
+        pending = 0;
+        try {
+            InputStream in = CompressedOutputs.open(output);
+            try {
+                XMLStreamReader reader = OutputMerger.newInputFactory().createXMLStreamReader(in);
+                try {
+                    if (reader.nextTag() != XMLStreamConstants.START_ELEMENT
+                            || !reader.getLocalName().equals("robot"))
+                        throw new XMLStreamException(output + " is not a Robot Framework output");
+                    long runId = insertRun(output, reader.getAttributeValue(null, "generated"),
+                            reader.getAttributeValue(null, "generator"));
+                    prepareStatements(runId);
+                    read(reader);
+                    executeBatches();
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                in.close();
+            }
+            connection.commit();
+            return new long[] { suites, tests, keywords };
+        } catch (XMLStreamException e) {
+            rollback();
+            throw new IOException("Invalid output file " + output + ": " + e.getMessage(), e);
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException("Cannot add " + output + " to the result database: " + e.getMessage(), e);
+        } catch (IOException e) {
+            rollback();
+            throw e;
+        } finally {
+            closeStatements();
+        }
+    }
+
+    private long insertRun(File output, String generated, String generator) throws SQLException {
+        PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO runs (source, file_size, file_modified, generated, generator) VALUES (?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS);
+        try {
+            insert.setString(1, output.getAbsolutePath());
+            insert.setLong(2, output.length());
+            insert.setLong(3, output.lastModified());
+            insert.setString(4, generated);
+            insert.setString(5, generator);
+            insert.executeUpdate();
+            ResultSet keys = insert.getGeneratedKeys();
+            keys.next();
+            return keys.getLong(1);
+        } finally {
+            insert.close();
+        }
+    }
+
+    private void prepareStatements(long runId) throws SQLException {
+        insertSuite = connection.prepareStatement("INSERT INTO suites (run_id, id, parent_id, name, longname, "
+                + "source, status, starttime, elapsed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        insertTest = connection.prepareStatement("INSERT INTO tests (run_id, id, suite_id, name, longname, "
+                + "status, critical, message, starttime, elapsed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        insertTag = connection.prepareStatement("INSERT INTO test_tags (run_id, test_id, tag) VALUES (?, ?, ?)");
+        insertKeyword = connection.prepareStatement("INSERT INTO keywords (run_id, id, parent_id, suite_id, "
+                + "test_id, type, name, library, status, starttime, elapsed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        insertSuite.setLong(1, runId);
+        insertTest.setLong(1, runId);
+        insertTag.setLong(1, runId);
+        insertKeyword.setLong(1, runId);
+    }
+
+    /**
+     * Reads the suites of the output, inserting every suite, test and keyword
+     * once its status has been read.
+     */
+    private void read(XMLStreamReader reader) throws XMLStreamException, SQLException {
+        Deque<Item> open = new ArrayDeque<Item>();
+        StringBuilder text = null;
+        long keywordCount = 0;
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String element = reader.getLocalName();
+                Item parent = open.peek();
+                if (parent == null && (element.equals("statistics") || element.equals("errors"))) {
+                    // Its suite statistics are not suites.
+                    skipElement(reader);
+                    depth--;
+                } else if (element.equals("suite") || element.equals("test") || element.equals("kw")) {
+                    Item item = new Item(element, depth, parent);
+                    item.id = element.equals("kw") ? String.valueOf(++keywordCount)
+                            : reader.getAttributeValue(null, "id");
+                    item.name = reader.getAttributeValue(null, "name");
+                    item.source = reader.getAttributeValue(null, "source");
+                    item.type = reader.getAttributeValue(null, "type");
+                    item.library = reader.getAttributeValue(null, "library");
+                    open.push(item);
+                } else if (parent != null && parent.depth == depth - 1 && element.equals("status")) {
+                    parent.status = reader.getAttributeValue(null, "status");
+                    parent.starttime = reader.getAttributeValue(null, "starttime");
+                    parent.elapsed = elapsedTime(reader.getAttributeValue(null, "elapsedtime"), parent.starttime,
+                            reader.getAttributeValue(null, "endtime"));
+                    parent.critical = reader.getAttributeValue(null, "critical");
+                    if (parent.element.equals("test"))
+                        text = parent.message = new StringBuilder();
+                } else if (parent != null && parent.element.equals("test") && element.equals("tag")) {
+                    text = new StringBuilder();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String element = reader.getLocalName();
+                Item item = open.peek();
+                if (item != null && item.depth == depth) {
+                    insert(open.pop());
+                } else if (text != null && element.equals("tag") && item != null && item.element.equals("test")) {
+                    insertTag.setString(2, item.id);
+                    insertTag.setString(3, truncate(text.toString()));
+                    addBatch(insertTag);
+                }
+                text = null;
+                depth--;
+            } else if (text != null && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE)) {
+                if (text.length() < MAX_TEXT)
+                    text.append(reader.getTextCharacters(), reader.getTextStart(),
+                            Math.min(reader.getTextLength(), MAX_TEXT - text.length()));
+            }
+        }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    private void insert(Item item) throws SQLException {
+        Item suite = item.enclosing("suite");
+        Item test = item.enclosing("test");
+        if (item.element.equals("suite")) {
+            insertSuite.setString(2, item.id);
+            insertSuite.setString(3, suite != null ? suite.id : null);
+            insertSuite.setString(4, truncate(item.name));
+            insertSuite.setString(5, truncate(item.longName()));
+            insertSuite.setString(6, truncate(item.source));
+            insertSuite.setString(7, item.status);
+            insertSuite.setString(8, item.starttime);
+            setElapsed(insertSuite, 9, item.elapsed);
+            addBatch(insertSuite);
+            suites++;
+        } else if (item.element.equals("test")) {
+            insertTest.setString(2, item.id);
+            insertTest.setString(3, suite != null ? suite.id : "");
+            insertTest.setString(4, truncate(item.name));
+            insertTest.setString(5, truncate(item.longName()));
+            insertTest.setString(6, item.status);
+            if (item.critical != null)
+                insertTest.setBoolean(7, item.critical.equals("yes"));
+            else
+                insertTest.setNull(7, Types.BOOLEAN);
+            insertTest.setString(8, item.message != null ? truncate(item.message.toString()) : null);
+            insertTest.setString(9, item.starttime);
+            setElapsed(insertTest, 10, item.elapsed);
+            addBatch(insertTest);
+            tests++;
+        } else {
+            Item parent = item.parent != null && item.parent.element.equals("kw") ? item.parent : null;
+            insertKeyword.setLong(2, Long.parseLong(item.id));
+            if (parent != null)
+                insertKeyword.setLong(3, Long.parseLong(parent.id));
+            else
+                insertKeyword.setNull(3, Types.BIGINT);
+            insertKeyword.setString(4, suite != null ? suite.id : "");
+            insertKeyword.setString(5, test != null ? test.id : null);
+            insertKeyword.setString(6, item.type != null ? item.type : "kw");
+            insertKeyword.setString(7, truncate(item.name));
+            insertKeyword.setString(8, truncate(item.library));
+            insertKeyword.setString(9, item.status);
+            insertKeyword.setString(10, item.starttime);
+            setElapsed(insertKeyword, 11, item.elapsed);
+            addBatch(insertKeyword);
+            keywords++;
+        }
+    }
+
+    private void addBatch(PreparedStatement statement) throws SQLException {
+        statement.addBatch();
+        batched.add(statement);
+        if (++pending >= BATCH_SIZE)
+            executeBatches();
+    }
+
+    private void executeBatches() throws SQLException {
+        // HSQLDB does not take an empty batch.
+        for (PreparedStatement statement : batched)
+            statement.executeBatch();
+        batched.clear();
+        pending = 0;
+    }
+
+    private void closeStatements() {
+        for (PreparedStatement statement : new PreparedStatement[] { insertSuite, insertTest, insertTag,
+                insertKeyword }) {
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // Nothing to do
+                }
+            }
+        }
+        insertSuite = insertTest = insertTag = insertKeyword = null;
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            // The original failure is reported
+        }
+    }
+
+    void close() throws IOException {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("Cannot close result database: " + e.getMessage(), e);
+        }
+    }
+
+    private static void setElapsed(PreparedStatement statement, int index, long elapsed) throws SQLException {
+        if (elapsed >= 0)
+            statement.setLong(index, elapsed);
+        else
+            statement.setNull(index, Types.BIGINT);
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > MAX_TEXT ? value.substring(0, MAX_TEXT) : value;
+    }
+
+    /**
+     * @return elapsed milliseconds, -1 if not known
+     */
+    static long elapsedTime(String elapsed, String start, String end) {
+        if (elapsed != null) {
+            try {
+                return Long.parseLong(elapsed.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        long startMillis = timestamp(start);
+        long endMillis = timestamp(end);
+        return startMillis >= 0 && endMillis >= 0 ? endMillis - startMillis : -1;
+    }
+
+    /**
+     * Parses <code>yyyyMMdd HH:mm:ss.SSS</code> without a date format, which
+     * would cost more than reading the keyword.
+     *
+     * @return milliseconds since the epoch, ignoring time zones, or -1 for
+     *         <code>N/A</code> and other values
+     */
+    static long timestamp(String value) {
+        if (value == null || value.length() != 21 || value.charAt(8) != ' ')
+            return -1;
+        try {
+            long days = LocalDate.of(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(4, 6)),
+                    Integer.parseInt(value.substring(6, 8))).toEpochDay();
+            long seconds = Integer.parseInt(value.substring(9, 11)) * 3600L
+                    + Integer.parseInt(value.substring(12, 14)) * 60L + Integer.parseInt(value.substring(15, 17));
+            return (days * 86400L + seconds) * 1000L + Integer.parseInt(value.substring(18, 21));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A suite, test or keyword being read.
+     */
+    private static class Item {
+
+        final String element;
+
+        final int depth;
+
+        final Item parent;
+
+        String id, name, source, type, library, status, starttime, critical;
+
+        long elapsed = -1;
+
+        StringBuilder message;
+
+        Item(String element, int depth, Item parent) {
+            this.element = element;
+            this.depth = depth;
+            this.parent = parent;
+        }
+
+        /**
+         * @return the closest enclosing item of the given kind, not this one
+         */
+        Item enclosing(String kind) {
+            for (Item item = parent; item != null; item = item.parent) {
+                if (item.element.equals(kind))
+                    return item;
+            }
+            return null;
+        }
+
+        String longName() {
+            Item suite = enclosing("suite");
+            return suite != null ? suite.longName() + "." + name : name;
+        }
+    }
+}
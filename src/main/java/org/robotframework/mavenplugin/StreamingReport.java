@@ -0,0 +1,583 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Report of a Robot Framework output written while the output is streamed,
+ * instead of from a model of the whole output as rebot does, so that outputs
+ * of any size take little memory to report on and the report opens as fast
+ * for them as for small ones.
+ * <p></p>
+ * The report page loads its data from JavaScript files in a directory next
+ * to it, named after the page with <code>-data</code>:
+ * <ul>
+ * <li><code>summary.js</code>: when and by what the output was generated,
+ * the total, tag and suite statistics, and the errors;</li>
+ * <li><code>suites/&lt;id&gt;.js</code>: a suite, with its child suites and
+ * tests, loaded when the suite is opened;</li>
+ * <li><code>keywords/&lt;id&gt;.js</code>: the keywords of a suite or test,
+ * with their messages, loaded when they are opened.</li>
+ * </ul>
+ * Every file is written as its part of the output is read and held in memory
+ * only while a suite or test is open, apart from keywords and their messages,
+ * which are written as they are read. The files are loaded by adding script
+ * elements, which browsers also allow for pages opened from disk.
+ * Compressed outputs are decompressed as they are read. The format read is
+ * that of Robot Framework 3.
+ */
+class StreamingReport {
+
+    static final String DATA_SUFFIX = "-data";
+
+    private static final String SUITES = "suites";
+
+    private static final String KEYWORDS = "keywords";
+
+    private final String title;
+
+    private File dataDirectory;
+
+    /** Names of the open elements, the innermost last. */
+    private final List<String> elements = new ArrayList<String>();
+
+    private final Deque<Suite> suites = new ArrayDeque<Suite>();
+
+    private final Deque<Keyword> keywords = new ArrayDeque<Keyword>();
+
+    private Test test;
+
+    private String generator;
+
+    private String generated;
+
+    private String rootId;
+
+    private Writer summary;
+
+    private boolean firstSummaryItem;
+
+    private boolean firstStat;
+
+    /** Text of the element being read, if needed. */
+    private StringBuilder text;
+
+    /** Where the text of the message being read is written to. */
+    private Writer message;
+
+    private List<String> values;
+
+    private int suiteCount;
+
+    private int testCount;
+
+    private int keywordCount;
+
+    /**
+     * @param title title of the report, or <code>null</code> for the name of
+     *            the top level suite
+     */
+    StreamingReport(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Writes the report page and its data directory, replacing an earlier
+     * one.
+     *
+     * @param output output to read
+     * @param report report page to write
+     */
+    void write(File output, File report) throws IOException {
+        String name = report.getName();
+        int extension = name.lastIndexOf('.');
+        String dataName = (extension > 0 ? name.substring(0, extension) : name) + DATA_SUFFIX;
+        dataDirectory = new File(report.getAbsoluteFile().getParentFile(), dataName);
+        FileUtils.deleteDirectory(dataDirectory);
+        for (String directory : new String[] { SUITES, KEYWORDS }) {
+            File created = new File(dataDirectory, directory);
+            if (!created.mkdirs())
+                throw new IOException("Report data directory cannot be created: " + created.getAbsolutePath());
+        }
+        boolean complete = false;
+        try {
+            InputStream in = CompressedOutputs.open(output);
+            try {
+                XMLStreamReader reader = OutputMerger.newInputFactory().createXMLStreamReader(in);
+                try {
+                    read(reader);
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                in.close();
+            }
+            complete = true;
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid output file " + output + ": " + e.getMessage(), e);
+        } finally {
+            closeAll(complete);
+        }
+        writePage(report, dataName);
+    }
+
+    int getSuites() {
+        return suiteCount;
+    }
+
+    int getTests() {
+        return testCount;
+    }
+
+    int getKeywords() {
+        return keywordCount;
+    }
+
+    private void writePage(File report, String dataName) throws IOException {
+        InputStream in = getClass().getResourceAsStream("streaming-report.html");
+        String page;
+        try {
+            page = IOUtils.toString(in, StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+        page = page.replace("${data}", KeywordIndex.quote(dataName)).replace("${title}",
+                title != null ? KeywordIndex.quote(title) : "null");
+        FileUtils.writeStringToFile(report, page, StandardCharsets.UTF_8);
+    }
+
+    private void read(XMLStreamReader reader) throws XMLStreamException, IOException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                String element = reader.getLocalName();
+                start(reader, element, parent(0));
+                elements.add(element);
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                elements.remove(elements.size() - 1);
+                end(reader.getLocalName(), parent(0));
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.CDATA:
+                if (message != null)
+                    writeEscaped(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength(), message);
+                else if (text != null)
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                break;
+            default:
+                break;
+            }
+        }
+        if (summary == null)
+            startSummary();
+        summary.write("});\n");
+        summary.close();
+        summary = null;
+    }
+
+    /**
+     * @param level 0 for the parent of the current element, 1 for its
+     *            grandparent
+     * @return name of the element, or an empty string at the top
+     */
+    private String parent(int level) {
+        int index = elements.size() - 1 - level;
+        return index >= 0 ? elements.get(index) : "";
+    }
+
+    private void start(XMLStreamReader reader, String element, String parent) throws IOException {
+        if (element.equals("statistics") && parent.equals("robot")) {
+            startSummary();
+            summary.write(",\"statistics\":{");
+            firstSummaryItem = true;
+        } else if (parent.equals("statistics")) {
+            // Total, tag and suite statistics.
+            summary.write((firstSummaryItem ? "" : ",") + KeywordIndex.quote(element) + ":[");
+            firstSummaryItem = false;
+            firstStat = true;
+        } else if (element.equals("stat") && parent(1).equals("statistics")) {
+            writeStat(reader);
+            text = new StringBuilder();
+        } else if (element.equals("robot")) {
+            generator = reader.getAttributeValue(null, "generator");
+            generated = reader.getAttributeValue(null, "generated");
+        } else if (element.equals("suite") && (parent.equals("robot") || parent.equals("suite"))) {
+            startSuite(reader);
+        } else if (element.equals("test") && parent.equals("suite")) {
+            test = new Test(reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "name"));
+        } else if (element.equals("kw") && (parent.equals("suite") || parent.equals("test") || parent.equals("kw"))) {
+            startKeyword(reader);
+        } else if (element.equals("msg") && parent.equals("kw")) {
+            Keyword keyword = keywords.peek();
+            keyword.child();
+            startMessage(reader, keyword.out);
+        } else if (element.equals("status") && (parent.equals("suite") || parent.equals("test")
+                || parent.equals("kw"))) {
+            String[] status = new String[] { reader.getAttributeValue(null, "status"),
+                    reader.getAttributeValue(null, "starttime"), reader.getAttributeValue(null, "endtime"),
+                    reader.getAttributeValue(null, "elapsedtime"), reader.getAttributeValue(null, "critical") };
+            if (parent.equals("kw")) {
+                keywords.peek().status = status;
+            } else {
+                (parent.equals("test") ? test : suites.peek()).status = status;
+                text = new StringBuilder();
+            }
+        } else if (element.equals("doc") && (parent.equals("suite") || parent.equals("test")
+                || parent.equals("kw"))) {
+            text = new StringBuilder();
+        } else if ((element.equals("tags") && (parent.equals("test") || parent.equals("kw")))
+                || ((element.equals("arguments") || element.equals("assign")) && parent.equals("kw"))
+                || (element.equals("metadata") && parent.equals("suite"))) {
+            values = new ArrayList<String>();
+        } else if (values != null && (element.equals("tag") || element.equals("arg") || element.equals("var"))) {
+            text = new StringBuilder();
+        } else if (values != null && element.equals("item")) {
+            values.add(reader.getAttributeValue(null, "name"));
+            text = new StringBuilder();
+        } else if (element.equals("errors") && parent.equals("robot")) {
+            if (summary == null)
+                startSummary();
+            summary.write(",\"errors\":[");
+            firstSummaryItem = true;
+        } else if (element.equals("msg") && parent.equals("errors")) {
+            if (!firstSummaryItem)
+                summary.write(",");
+            firstSummaryItem = false;
+            startMessage(reader, summary);
+        }
+    }
+
+    private void end(String element, String parent) throws IOException {
+        if (element.equals("suite") && (parent.equals("robot") || parent.equals("suite"))) {
+            endSuite();
+        } else if (element.equals("test") && parent.equals("suite")) {
+            endTest();
+        } else if (element.equals("kw") && (parent.equals("suite") || parent.equals("test") || parent.equals("kw"))) {
+            endKeyword();
+        } else if (element.equals("msg") && message != null) {
+            message.write("\"}");
+            message = null;
+        } else if (element.equals("status") && text != null) {
+            (parent.equals("test") ? test : suites.peek()).message = text.toString();
+        } else if (element.equals("doc") && text != null) {
+            if (parent.equals("kw") && !keywords.peek().childrenOpen)
+                keywords.peek().out.write(",\"doc\":" + KeywordIndex.quote(text.toString()));
+            else if (parent.equals("test"))
+                test.doc = text.toString();
+            else if (parent.equals("suite"))
+                suites.peek().doc = text.toString();
+        } else if (text != null && values != null && (element.equals("tag") || element.equals("arg")
+                || element.equals("var") || element.equals("item"))) {
+            values.add(text.toString());
+        } else if (values != null && (element.equals("tags") || element.equals("arguments")
+                || element.equals("assign") || element.equals("metadata"))) {
+            if (parent.equals("kw") && !keywords.peek().childrenOpen)
+                keywords.peek().out.write(",\"" + (element.equals("assign") ? "assign" : element.equals("tags")
+                        ? "tags" : "args") + "\":" + array(values));
+            else if (parent.equals("test"))
+                test.tags = values;
+            else if (parent.equals("suite"))
+                suites.peek().metadata = values;
+            values = null;
+        } else if (element.equals("stat") && text != null) {
+            summary.write(",\"label\":" + KeywordIndex.quote(text.toString()) + "}");
+        } else if (parent.equals("statistics")) {
+            summary.write("]");
+        } else if (element.equals("statistics") && parent.equals("robot")) {
+            summary.write("}");
+            firstSummaryItem = true;
+        } else if (element.equals("errors") && parent.equals("robot")) {
+            summary.write("]");
+        }
+        text = null;
+    }
+
+    private void startSuite(XMLStreamReader reader) throws IOException {
+        String id = reader.getAttributeValue(null, "id");
+        if (rootId == null)
+            rootId = id;
+        Suite suite = new Suite(id, reader.getAttributeValue(null, "name"));
+        suite.out = OutputMerger.writer(chunk(SUITES, id));
+        suite.out.write("streamingReport.suite(" + KeywordIndex.quote(id) + ",{\"id\":" + KeywordIndex.quote(id)
+                + ",\"name\":" + quote(suite.name) + ",\"source\":" + quote(reader.getAttributeValue(null, "source"))
+                + ",\"items\":[");
+        suites.push(suite);
+    }
+
+    private void endSuite() throws IOException {
+        Suite suite = suites.pop();
+        closeKeywords(suite);
+        long elapsed = elapsed(suite.status);
+        suite.out.write("],\"doc\":" + quote(suite.doc) + ",\"metadata\":" + array(suite.metadata) + ",\"status\":"
+                + quote(suite.status != null ? suite.status[0] : null) + ",\"message\":" + quote(suite.message)
+                + ",\"start\":" + quote(suite.status != null ? suite.status[1] : null) + ",\"elapsed\":" + elapsed
+                + ",\"pass\":" + suite.pass + ",\"fail\":" + suite.fail + ",\"keywords\":"
+                + suite.hasKeywords + "});\n");
+        suite.out.close();
+        suite.out = null;
+        suiteCount++;
+        Suite parent = suites.peek();
+        if (parent == null)
+            return;
+        parent.item();
+        parent.out.write("{\"type\":\"suite\",\"id\":" + KeywordIndex.quote(suite.id) + ",\"name\":"
+                + quote(suite.name) + ",\"status\":" + quote(suite.status != null ? suite.status[0] : null)
+                + ",\"elapsed\":" + elapsed + ",\"pass\":" + suite.pass + ",\"fail\":" + suite.fail + "}");
+        parent.pass += suite.pass;
+        parent.fail += suite.fail;
+    }
+
+    private void endTest() throws IOException {
+        closeKeywords(test);
+        Suite suite = suites.peek();
+        String status = test.status != null ? test.status[0] : null;
+        if ("PASS".equals(status))
+            suite.pass++;
+        else
+            suite.fail++;
+        suite.item();
+        suite.out.write("{\"type\":\"test\",\"id\":" + KeywordIndex.quote(test.id) + ",\"name\":" + quote(test.name)
+                + ",\"status\":" + quote(status) + ",\"critical\":"
+                + (test.status == null || !"no".equals(test.status[4])) + ",\"message\":" + quote(test.message)
+                + ",\"doc\":" + quote(test.doc) + ",\"tags\":" + array(test.tags) + ",\"start\":"
+                + quote(test.status != null ? test.status[1] : null) + ",\"elapsed\":" + elapsed(test.status)
+                + ",\"keywords\":" + test.hasKeywords + "}");
+        test = null;
+        testCount++;
+    }
+
+    private void startKeyword(XMLStreamReader reader) throws IOException {
+        Keyword parent = keywords.peek();
+        Writer out;
+        if (parent != null) {
+            out = parent.out;
+            parent.child();
+        } else {
+            Owner owner = test != null ? test : suites.peek();
+            if (owner.keywords == null) {
+                owner.keywords = OutputMerger.writer(chunk(KEYWORDS, owner.id));
+                owner.keywords.write("streamingReport.keywords(" + KeywordIndex.quote(owner.id) + ",[");
+                owner.hasKeywords = true;
+            } else {
+                owner.keywords.write(",\n");
+            }
+            out = owner.keywords;
+        }
+        String type = reader.getAttributeValue(null, "type");
+        out.write("{\"type\":" + KeywordIndex.quote(type != null ? type : "kw") + ",\"name\":"
+                + quote(reader.getAttributeValue(null, "name")) + ",\"library\":"
+                + quote(reader.getAttributeValue(null, "library")));
+        keywords.push(new Keyword(out));
+    }
+
+    private void endKeyword() throws IOException {
+        Keyword keyword = keywords.pop();
+        if (keyword.childrenOpen)
+            keyword.out.write("]");
+        String[] status = keyword.status;
+        keyword.out.write(",\"status\":" + quote(status != null ? status[0] : null) + ",\"start\":"
+                + quote(status != null ? status[1] : null) + ",\"elapsed\":" + elapsed(status) + "}");
+        keywordCount++;
+    }
+
+    private void startMessage(XMLStreamReader reader, Writer out) throws IOException {
+        out.write("{\"level\":" + quote(reader.getAttributeValue(null, "level")) + ",\"time\":"
+                + quote(reader.getAttributeValue(null, "timestamp")) + ",\"html\":"
+                + "yes".equals(reader.getAttributeValue(null, "html")) + ",\"text\":\"");
+        message = out;
+    }
+
+    private void startSummary() throws IOException {
+        summary = OutputMerger.writer(new File(dataDirectory, "summary.js"));
+        summary.write("streamingReport.summary({\"generator\":" + quote(generator) + ",\"generated\":"
+                + quote(generated) + ",\"root\":" + quote(rootId));
+    }
+
+    private void writeStat(XMLStreamReader reader) throws IOException {
+        StringBuilder attributes = new StringBuilder(firstStat ? "{" : ",\n{");
+        firstStat = false;
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (i > 0)
+                attributes.append(',');
+            attributes.append(KeywordIndex.quote(reader.getAttributeLocalName(i))).append(':')
+                    .append(KeywordIndex.quote(reader.getAttributeValue(i)));
+        }
+        summary.write(attributes.toString());
+    }
+
+    private File chunk(String directory, String id) {
+        return new File(new File(dataDirectory, directory), id.replaceAll("[^A-Za-z0-9_-]", "_") + ".js");
+    }
+
+    private static void closeKeywords(Owner owner) throws IOException {
+        if (owner.keywords != null) {
+            owner.keywords.write("]);\n");
+            owner.keywords.close();
+            owner.keywords = null;
+        }
+    }
+
+    /**
+     * Closes the files still open, normally none unless reading failed.
+     *
+     * @param complete whether reading succeeded; if not, errors closing the
+     *            files are dropped so that the failure itself is reported
+     */
+    private void closeAll(boolean complete) throws IOException {
+        List<Writer> open = new ArrayList<Writer>();
+        for (Suite suite : suites) {
+            open.add(suite.out);
+            open.add(suite.keywords);
+        }
+        if (test != null)
+            open.add(test.keywords);
+        open.add(summary);
+        IOException failure = null;
+        for (Writer writer : open) {
+            if (writer == null)
+                continue;
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        suites.clear();
+        keywords.clear();
+        test = null;
+        summary = null;
+        if (failure != null && complete)
+            throw failure;
+    }
+
+    private static long elapsed(String[] status) {
+        return status != null ? ResultIndex.elapsedTime(status[3], status[1], status[2]) : -1;
+    }
+
+    private static String quote(String value) {
+        return value != null ? KeywordIndex.quote(value) : "null";
+    }
+
+    private static String array(List<String> values) {
+        if (values == null)
+            return "[]";
+        StringBuilder array = new StringBuilder("[");
+        for (String value : values) {
+            if (array.length() > 1)
+                array.append(',');
+            array.append(KeywordIndex.quote(value));
+        }
+        return array.append(']').toString();
+    }
+
+    /**
+     * Writes text escaped as in {@link KeywordIndex#quote(String)}, without
+     * the quotes.
+     */
+    private static void writeEscaped(char[] chars, int start, int length, Writer out) throws IOException {
+        int from = start;
+        int end = start + length;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c == '"' || c == '\\' || c < ' ' || c == '<' || c == '>' || c == '&' || c == 0x2028
+                    || c == 0x2029) {
+                out.write(chars, from, i - from);
+                out.write(c == '"' || c == '\\' ? "\\" + c : String.format("\\u%04x", (int) c));
+                from = i + 1;
+            }
+        }
+        out.write(chars, from, end - from);
+    }
+
+    /**
+     * A suite or test, whose keywords are written to their own file.
+     */
+    private static class Owner {
+
+        final String id;
+
+        final String name;
+
+        Writer keywords;
+
+        boolean hasKeywords;
+
+        String[] status;
+
+        String message;
+
+        String doc;
+
+        Owner(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private static class Suite extends Owner {
+
+        Writer out;
+
+        boolean firstItem = true;
+
+        List<String> metadata;
+
+        long pass;
+
+        long fail;
+
+        Suite(String id, String name) {
+            super(id, name);
+        }
+
+        void item() throws IOException {
+            if (!firstItem)
+                out.write(",\n");
+            firstItem = false;
+        }
+    }
+
+    private static class Test extends Owner {
+
+        List<String> tags;
+
+        Test(String id, String name) {
+            super(id, name);
+        }
+    }
+
+    private static class Keyword {
+
+        final Writer out;
+
+        boolean childrenOpen;
+
+        String[] status;
+
+        Keyword(Writer out) {
+            this.out = out;
+        }
+
+        void child() throws IOException {
+            out.write(childrenOpen ? "," : ",\"children\":[");
+            childrenOpen = true;
+        }
+    }
+}
@@ -20,11 +20,15 @@ package org.robotframework.mavenplugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
 import org.codehaus.plexus.util.StringUtils;
+import org.robotframework.mavenplugin.harvesters.HarvestIndex;
 import org.robotframework.mavenplugin.harvesters.HarvestUtils;
 import org.robotframework.mavenplugin.harvesters.ResourceNameHarvester;
 import org.robotframework.mavenplugin.harvesters.SourceFileNameHarvester;
@@ -37,6 +41,11 @@ public class TestDocConfiguration {
 
         // Phase I - harvest the files/resources, if any
         ArrayList<String> fileArguments = harvestResourceOrFileCandidates(projectBaseDir, dataSourceFile);
+        if (aggregate) {
+            if (!fileArguments.isEmpty())
+                result.add(generateAggregateArgumentList(fileArguments).toArray());
+            return result;
+        }
 
         // Phase II - prepare the argument lines for the harvested
         // files/resources.
@@ -55,6 +64,69 @@ public class TestDocConfiguration {
         return result;
     }
     
+    /**
+     * Resolves what a run documents, for telling whether its output is up to
+     * date.
+     *
+     * @param runArguments arguments from {@link #generateRunArguments(File)}
+     * @return for every data source, the file, every file of a directory in
+     *         name order, or the class path resource; empty if a data source
+     *         is not found
+     */
+    public List<URL> resolveInputs(String[] runArguments) {
+        // Every option takes a value.
+        int first = 1;
+        while (first < runArguments.length - 1 && runArguments[first].startsWith("--"))
+            first += 2;
+        List<URL> result = new ArrayList<URL>();
+        try {
+            for (int i = first; i < runArguments.length - 1; i++) {
+                File file = new File(runArguments[i]);
+                if (file.isFile()) {
+                    result.add(file.toURI().toURL());
+                } else if (file.isDirectory()) {
+                    addFiles(file, result);
+                } else {
+                    URL resource = Thread.currentThread().getContextClassLoader().getResource(runArguments[i]);
+                    if (resource == null)
+                        return new ArrayList<URL>();
+                    result.add(resource);
+                }
+            }
+        } catch (MalformedURLException e) {
+            // Unknown input, always generated.
+            result.clear();
+        }
+        return result;
+    }
+
+    private static void addFiles(File directory, List<URL> result)
+            throws MalformedURLException {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory())
+                addFiles(file, result);
+            else if (file.isFile())
+                result.add(file.toURI().toURL());
+        }
+    }
+
+    private Arguments generateAggregateArgumentList(List<String> fileArguments) {
+        Arguments result = new Arguments();
+        result.add("testdoc");
+        result.addNonEmptyStringToArguments(title, "--title");
+        result.addNonEmptyStringToArguments(name, "--name");
+        result.addNonEmptyStringToArguments(doc, "--doc");
+        for (String fileArgument : fileArguments)
+            result.add(fileArgument);
+        // A pattern has no single input to take the name from.
+        result.add(outputDirectory + File.separator + outputFile.getName().replace("*", "testdoc"));
+        return result;
+    }
+
     private Arguments generateTestdocArgumentList(File projectBaseDir, boolean multipleOutputs, String fileArgument) {
         Arguments result = new Arguments();
         result.add("testdoc");
@@ -105,17 +177,17 @@ public class TestDocConfiguration {
             // Possible pattern, process further.
             if (HarvestUtils.hasDirectoryStructure(pattern)) {
                 // Directory structure, no class resolution, harvest file names.
-                SourceFileNameHarvester harv = new SourceFileNameHarvester(projectBaseDir);
+                SourceFileNameHarvester harv = new SourceFileNameHarvester(projectBaseDir, excludes, harvestIndex);
                 fileArguments.addAll(harv.harvest(pattern));
             } else {
                 // A) May have files, try for harvesting file names first.
-                SourceFileNameHarvester harv = new SourceFileNameHarvester(projectBaseDir);
+                SourceFileNameHarvester harv = new SourceFileNameHarvester(projectBaseDir, excludes, harvestIndex);
                 Set<String> harvested = harv.harvest(pattern);
                 if (harvested.size() > 0) {
                     fileArguments.addAll(harvested);
                 } else {
                     // B) If no files found, try harvesting resources.
-                    ResourceNameHarvester rharv = new ResourceNameHarvester();
+                    ResourceNameHarvester rharv = new ResourceNameHarvester(harvestIndex);
                     fileArguments.addAll(rharv.harvest(pattern));
                 } // resources
             } // files
@@ -141,9 +213,18 @@ public class TestDocConfiguration {
         return StringUtils.join(parts, File.separator);
     }
 
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public boolean isAggregate() {
+        return aggregate;
+    }
+
     public void populateDefaults(TestDocMojo defaults) {
         if (this.outputDirectory == null)
             this.outputDirectory = defaults.defaultTestdocOutputDirectory;
+        this.harvestIndex = defaults.harvestIndex;
     }
 
     /**
@@ -173,6 +254,13 @@ public class TestDocConfiguration {
      */
     private String dataSourceFile;
 
+    /**
+     * Ant-like patterns of files and directories that are never harvested for test data, relative to the location
+     * of <code>pom.xml</code>. Excluded directories are not traversed at all, for example
+     * <code>**{@literal /}target/**</code>.
+     */
+    private List<String> excludes;
+
     /**
      * Set the title of the generated documentation. Underscores in the title are converted to spaces. The default title is the name of the top level suite.
      */
@@ -187,4 +275,12 @@ public class TestDocConfiguration {
      * Override the documentation of the top level test suite.
      */
     private String doc;
+
+    /**
+     * Document all harvested data sources in one file, under one top level suite, with a single testdoc run. The
+     * sections of suites and tests are rendered when first opened.
+     */
+    private boolean aggregate;
+
+    private HarvestIndex harvestIndex;
 }
@@ -21,11 +21,12 @@ package org.robotframework.mavenplugin;
 import java.io.File;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.robotframework.RobotFramework;
+import org.robotframework.mavenplugin.harvesters.HarvestIndex;
 
 /**
  * Create documentation of test suites using the Robot Framework <code>testdoc</code> tool.
@@ -39,6 +40,8 @@ import org.robotframework.RobotFramework;
 public class TestDocMojo
         extends AbstractMojoWithLoadedClasspath {
 
+    private static final String INCREMENTAL_MANIFEST = ".testdoc-manifest";
+
     protected void subclassExecute()
             throws MojoExecutionException, MojoFailureException {
         try {
@@ -49,23 +52,62 @@ public class TestDocMojo
     }
 
     public void runTestDoc()
-            throws IOException {
+            throws IOException, MojoExecutionException {
+        if (harvestIndexFile != null)
+            harvestIndex = HarvestIndex.load(harvestIndexFile);
         testdoc.populateDefaults(this);
         testdoc.ensureOutputDirectoryExists();
 
         if (projectBaseDir == null)
             projectBaseDir = new File("");
         List<String[]> runArgs = testdoc.generateRunArguments(projectBaseDir);
-        for (String[] args : runArgs) {
-            getLog().debug("Run arguments -> " + args);
-            if (externalRunner != null && externalRunner.getRunWithPython()) {
-                PythonRunner.run(args);
-            } else {
-                RobotFramework.run(args);
+        saveHarvestIndex();
+        DocumentationRunner runner = new DocumentationRunner(getLog(), threads, false, externalRunner,
+                getClassPathString());
+        if (incremental)
+            runIncrementally(runner, runArgs);
+        else
+            runner.run(runArgs);
+        if (testdoc.isAggregate()) {
+            for (String[] args : runArgs) {
+                File page = new File(args[args.length - 1]);
+                if (page.isFile() && LazyTestDocSections.apply(page))
+                    getLog().debug("Suite sections are rendered when opened: " + page);
             }
         }
     }
 
+    private void runIncrementally(DocumentationRunner runner, List<String[]> runArgs)
+            throws IOException, MojoExecutionException {
+        UpToDateManifest manifest = UpToDateManifest.load(new File(testdoc.getOutputDirectory(),
+                INCREMENTAL_MANIFEST));
+        List<String[]> staleRunArgs = new ArrayList<String[]>();
+        for (String[] args : runArgs) {
+            if (manifest.isUpToDate(args, testdoc.resolveInputs(args)))
+                getLog().debug("Documentation is up to date: " + args[args.length - 1]);
+            else
+                staleRunArgs.add(args);
+        }
+        getLog().info("Generating documentation for " + staleRunArgs.size() + " of " + runArgs.size()
+                + " data sources, the others are up to date.");
+        try {
+            runner.run(staleRunArgs, manifest);
+        } finally {
+            manifest.save();
+        }
+    }
+
+    private void saveHarvestIndex() {
+        if (harvestIndex == null)
+            return;
+        try {
+            harvestIndex.save();
+        } catch (IOException e) {
+            // Only the next build gets slower.
+            getLog().warn("Failed to save harvest index: " + e.getMessage());
+        }
+    }
+
     /**
      * Test case documentation configuration.
      *
@@ -88,6 +130,12 @@ public class TestDocMojo
      *                                      name of the top level suite.</li>
      * <li><code>name</code>                Override the name of the top level test suite.</li>
      * <li><code>doc</code>                 Override the documentation of the top level test suite.</li>
+     * <li><code>aggregate</code>           Document all data sources matching the pattern in one file, generated in a
+     *                                      single testdoc run. Sections of suites and tests are rendered when first
+     *                                      opened. A <code>*</code> in <code>outputFile</code> is replaced with
+     *                                      <code>testdoc</code>.</li>
+     * <li><code>excludes</code>            Ant-like patterns of files and directories never harvested, relative to the ${basedir}
+     *                                      of the project, e.g. <code>**{@literal /}target/**</code>. Excluded directories are not traversed.</li>
      * </ul>
      *
      * Example 1:
@@ -121,4 +169,32 @@ public class TestDocMojo
      * @readonly
      */
     File projectBaseDir;
+
+    /**
+     * File where the names of class path entries and project directories seen while harvesting are kept between
+     * builds. Jars and directories that have not changed are not read again.
+     *
+     * @parameter default-value="${project.build.directory}/robotframework/testdoc-harvest-index.bin"
+     */
+    File harvestIndexFile;
+
+    HarvestIndex harvestIndex;
+
+    /**
+     * Number of data sources documented at the same time. With more than one, each data source is documented in its
+     * own forked JVM. Data sources that fail are reported together at the end of the run.
+     *
+     * @parameter default-value="1"
+     */
+    int threads;
+
+    /**
+     * Only generate documentation whose data source or options changed since the previous build. What went into
+     * every generated file is remembered as a hash of the data source file, or of every file in a data source
+     * directory, and of the testdoc arguments, in a <code>.testdoc-manifest</code> file in the output directory.
+     * Changes in resource files that the suites only import are not detected; run a clean build for those.
+     *
+     * @parameter default-value="false"
+     */
+    boolean incremental;
 }
@@ -0,0 +1,172 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.robotframework.RobotFramework;
+
+/**
+ * Remembers, per generated documentation file, a fingerprint of what it was
+ * generated from, so that unchanged documentation is not generated again.
+ * <p></p>
+ * A fingerprint is a SHA-256 hash of the tool arguments, the bytes of the
+ * inputs and the Robot Framework jar in use. Only what the inputs themselves
+ * contain is covered: a change in a module or class the input merely imports
+ * or extends goes unnoticed.
+ */
+class UpToDateManifest implements DocumentationRunner.RunListener {
+
+    private final File manifestFile;
+
+    private final Properties recorded = new Properties();
+
+    private final Map<String, String> current = new TreeMap<String, String>();
+
+    private final Map<String, String> pending = new HashMap<String, String>();
+
+    private UpToDateManifest(File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Loads the manifest. A missing or unreadable file gives an empty
+     * manifest, so everything is generated.
+     */
+    static UpToDateManifest load(File manifestFile) {
+        UpToDateManifest manifest = new UpToDateManifest(manifestFile);
+        if (manifestFile.isFile()) {
+            try {
+                InputStream in = new FileInputStream(manifestFile);
+                try {
+                    manifest.recorded.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                manifest.recorded.clear();
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * @param arguments tool arguments, ending with the output file
+     * @param inputs contents the output is generated from, empty when they
+     *            are not known
+     * @return true if the output exists and was generated from the same
+     *         inputs; otherwise the run is remembered until it succeeds
+     */
+    synchronized boolean isUpToDate(String[] arguments, List<URL> inputs) {
+        String output = arguments[arguments.length - 1];
+        String fingerprint = fingerprint(arguments, inputs);
+        if (fingerprint != null && new File(output).isFile() && fingerprint.equals(recorded.getProperty(output))) {
+            current.put(output, fingerprint);
+            return true;
+        }
+        if (fingerprint != null)
+            pending.put(output, fingerprint);
+        return false;
+    }
+
+    /**
+     * Records that the output of a run that was not up to date has been
+     * generated. Runs are matched by output, so the arguments may differ from
+     * those given to {@link #isUpToDate(String[], List)}.
+     */
+    public synchronized void succeeded(String[] arguments) {
+        String output = arguments[arguments.length - 1];
+        String fingerprint = pending.remove(output);
+        if (fingerprint != null)
+            current.put(output, fingerprint);
+    }
+
+    /**
+     * Writes the outputs that are up to date or were generated in this build.
+     */
+    synchronized void save() throws IOException {
+        File parent = manifestFile.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Manifest directory cannot be created: " + parent.getAbsolutePath());
+        Properties properties = new Properties();
+        properties.putAll(current);
+        OutputStream out = new FileOutputStream(manifestFile);
+        try {
+            properties.store(out, "Inputs of generated documentation, see the incremental parameter");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param arguments tool arguments
+     * @param inputs contents the output is generated from
+     * @return hex encoded fingerprint, or <code>null</code> if there are no
+     *         inputs or one cannot be read
+     */
+    static String fingerprint(String[] arguments, List<URL> inputs) {
+        if (inputs.isEmpty())
+            return null;
+        MessageDigest digest = sha256();
+        CodeSource robot = RobotFramework.class.getProtectionDomain().getCodeSource();
+        update(digest, robot != null ? robot.getLocation().toString() : "");
+        for (String argument : arguments)
+            update(digest, argument);
+        byte[] buffer = new byte[8192];
+        for (URL input : inputs) {
+            update(digest, input.toString());
+            try {
+                InputStream in = input.openStream();
+                try {
+                    int count;
+                    while ((count = in.read(buffer)) >= 0)
+                        digest.update(buffer, 0, count);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Also used by {@link LibDocCache}, so that both fingerprints are computed
+     * the same way.
+     */
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        // Separator, so that ("ab", "c") and ("a", "bc") differ.
+        digest.update((byte) 0);
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes)
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
@@ -18,20 +18,20 @@ package org.robotframework.mavenplugin;
  */
 
 import java.io.File;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * Verifies the results from acceptance-test goal.
@@ -53,12 +53,23 @@ public class VerifyMojo
     /**
      * Sets the path to the generated XUnit compatible result file, relative to outputDirectory. The file is in xml
      * format. By default, the file name is derived from the testCasesDirectory parameter, replacing blanks in the
-     * directory name by underscores.
+     * directory name by underscores. When only a gzip compressed file exists, named with <code>.gz</code> appended,
+     * that one is read.
      *
      * @parameter
      */
     private File xunitFile;
 
+    /**
+     * A glob of xunit files to verify together instead of <code>xunitFile</code>, relative to outputDirectory, such as
+     * <code>TEST-*.xml</code>, or <code>**&#47;TEST-*.xml</code> for files in subdirectories, one per shard or module.
+     * The files are read at the same time and their results added up. Compressed files matching the glob with
+     * <code>.gz</code> removed are read as well.
+     *
+     * @parameter
+     */
+    private String xunitFiles;
+
     /**
      * Configures where generated reports are to be placed.
      *
@@ -130,28 +141,27 @@ public class VerifyMojo
         final int failures;
 
         try {
-            DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document xunitResult = documentBuilder.parse(makeAbsolute(outputDirectory, xunitFile));
-
-            errors = readIntAttribute(xunitResult, "/testsuite/@errors");
-            failures = readIntAttribute(xunitResult, "/testsuite/@failures");
-            int tests = readIntAttribute(xunitResult, "/testsuite/@tests");
+            List<File> files = findXunitFiles();
+            long start = System.nanoTime();
+            XunitResults results = XunitResults.read(files, Runtime.getRuntime().availableProcessors());
+            getLog().debug("Read " + files.size() + " xunit files in " + (System.nanoTime() - start) / 1000000
+                    + " ms.");
+            errors = results.getErrors();
+            failures = results.getFailures();
 
             System.out.println("\nTest Results :");
 
             if (failures > 0 || errors > 0) {
 
                 System.out.println("\nFailing acceptance tests:\n");
-                NodeList testCases = getFailuresAndErrors(xunitResult);
-                for (int i = 0; i < testCases.getLength(); i++) {
-                    Node testCase = testCases.item(i);
-                    NamedNodeMap attributes = testCase.getAttributes();
-                    System.out.println("    "
-                            + attributes.getNamedItem("name").getNodeValue() + "(" + attributes.getNamedItem("classname").getNodeValue() + ")");
-                }
+                for (String test : results.getFailingTests())
+                    System.out.println("    " + test);
             }
 
-            System.out.println("\nTests run: " + tests + ", Failures: " + failures + ", Errors: " + errors + "\n");
+            System.out.println("\nTests run: " + results.getTests() + ", Failures: " + failures + ", Errors: "
+                    + errors + "\n");
+        } catch (MojoExecutionException e) {
+            throw e;
         } catch (Exception e) {
             throw new MojoExecutionException("failed to verify robotframework acceptance-test results", e);
         }
@@ -169,18 +179,39 @@ public class VerifyMojo
 
     }
 
-    private NodeList getFailuresAndErrors(Document xunitResult)
-            throws XPathExpressionException {
-        XPath xPath = XPathFactory.newInstance().newXPath();
-        String xPathExpression = "/testsuite/testcase[failure or error]";
-        NodeList testCases = (NodeList) xPath.evaluate(xPathExpression, xunitResult, XPathConstants.NODESET);
-        return testCases;
-    }
-
-    private int readIntAttribute(Document xunitResult, String xPathExpression)
-            throws XPathExpressionException {
-        XPath xPath = XPathFactory.newInstance().newXPath();
-        return ((Number) xPath.evaluate(xPathExpression, xunitResult, XPathConstants.NUMBER)).intValue();
+    /**
+     * @return the xunit file, or the files matching <code>xunitFiles</code> in
+     *         path order; compressed results are read as well
+     */
+    private List<File> findXunitFiles()
+            throws IOException, MojoExecutionException {
+        if (xunitFiles == null)
+            return Collections.singletonList(CompressedOutputs.existing(makeAbsolute(outputDirectory, xunitFile)));
+        final Path root = outputDirectory.toPath();
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + xunitFiles);
+        final List<File> files = new ArrayList<File>();
+        if (Files.isDirectory(root)) {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    Path relative = root.relativize(file);
+                    String name = file.getFileName().toString();
+                    if (matcher.matches(relative)) {
+                        files.add(file.toFile());
+                    } else if (name.endsWith(CompressedOutputs.SUFFIX)) {
+                        Path uncompressed = relative.resolveSibling(
+                                name.substring(0, name.length() - CompressedOutputs.SUFFIX.length()));
+                        if (matcher.matches(uncompressed) && !Files.exists(root.resolve(uncompressed)))
+                            files.add(file.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        if (files.isEmpty())
+            throw new MojoExecutionException("No xunit files matching " + xunitFiles + " in " + outputDirectory
+                    + ".");
+        Collections.sort(files);
+        return files;
     }
 
 }
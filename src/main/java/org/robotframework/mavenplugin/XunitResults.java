@@ -0,0 +1,173 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Totals and failing tests of xunit result files, as written by Robot
+ * Framework, read with StAX instead of into a DOM. The totals are the
+ * attributes of the <code>testsuite</code> root, so a file without failures
+ * or errors is read no further than its first element, and one with them
+ * only until that many failing tests have been found. Files with a
+ * <code>testsuites</code> root, as other tools write, are read through and
+ * the totals of their test suites added up. Compressed files are
+ * decompressed as they are read.
+ */
+class XunitResults {
+
+    private int tests;
+
+    private int failures;
+
+    private int errors;
+
+    /** As <code>name(classname)</code>, in file order. */
+    private final List<String> failingTests = new ArrayList<String>();
+
+    int getTests() {
+        return tests;
+    }
+
+    int getFailures() {
+        return failures;
+    }
+
+    int getErrors() {
+        return errors;
+    }
+
+    List<String> getFailingTests() {
+        return failingTests;
+    }
+
+    /**
+     * Reads the files, several at a time when there are more than one, and
+     * adds up their results in the order of the files.
+     *
+     * @param threads number of files read at the same time
+     */
+    static XunitResults read(List<File> files, int threads) throws IOException {
+        XunitResults total = new XunitResults();
+        if (threads <= 1 || files.size() <= 1) {
+            for (File file : files)
+                total.add(read(file));
+            return total;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        try {
+            List<Future<XunitResults>> futures = new ArrayList<Future<XunitResults>>();
+            for (final File file : files) {
+                futures.add(pool.submit(new Callable<XunitResults>() {
+                    public XunitResults call() throws IOException {
+                        return read(file);
+                    }
+                }));
+            }
+            for (Future<XunitResults> future : futures)
+                total.add(future.get());
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading xunit files.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    static XunitResults read(File file) throws IOException {
+        XunitResults results = new XunitResults();
+        try {
+            InputStream in = CompressedOutputs.open(file);
+            try {
+                XMLStreamReader reader = OutputMerger.newInputFactory().createXMLStreamReader(in);
+                try {
+                    reader.nextTag();
+                    if (reader.getLocalName().equals("testsuite")) {
+                        results.addTotals(reader);
+                        results.readFailingTests(reader, results.failures + results.errors);
+                    } else {
+                        results.readFailingTests(reader, -1);
+                    }
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid xunit file " + file + ": " + e.getMessage(), e);
+        }
+        return results;
+    }
+
+    /**
+     * @param expected number of failing tests to stop at, -1 to read through
+     *            and add up the totals of the test suites in a
+     *            <code>testsuites</code> root
+     */
+    private void readFailingTests(XMLStreamReader reader, int expected) throws XMLStreamException {
+        String test = null;
+        boolean failing = false;
+        int depth = 1;
+        while (failingTests.size() != expected && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String element = reader.getLocalName();
+                if (element.equals("testcase")) {
+                    test = reader.getAttributeValue(null, "name") + "(" + reader.getAttributeValue(null, "classname")
+                            + ")";
+                    failing = false;
+                } else if (test != null && !failing && (element.equals("failure") || element.equals("error"))) {
+                    failingTests.add(test);
+                    failing = true;
+                } else if (expected < 0 && depth == 2 && element.equals("testsuite")) {
+                    addTotals(reader);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (reader.getLocalName().equals("testcase"))
+                    test = null;
+                depth--;
+            }
+        }
+    }
+
+    private void addTotals(XMLStreamReader reader) {
+        tests += count(reader.getAttributeValue(null, "tests"));
+        failures += count(reader.getAttributeValue(null, "failures"));
+        errors += count(reader.getAttributeValue(null, "errors"));
+    }
+
+    private void add(XunitResults other) {
+        tests += other.tests;
+        failures += other.failures;
+        errors += other.errors;
+        failingTests.addAll(other.failingTests);
+    }
+
+    private static int count(String value) {
+        if (value == null)
+            return 0;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Compiled form of the ant-like patterns understood by
+ * {@link AntPatternClassPredicate}. The pattern is split once into the literal
+ * segments between '*' wildcards, and names are matched against those
+ * segments in place, without creating intermediate strings.
+ * <p></p>
+ * As with the predicate, a trailing <code>.class</code> is ignored, '*' matches
+ * any sequence of characters and '?' matches a single character. '.', '/' and
+ * the platform file separator are all treated as the same separator, so both
+ * class names (<code>com.acme.Lib</code>) and resource names
+ * (<code>com/acme/Lib.class</code>) can be matched directly.
+ */
+public class AntPatternMatcher implements Predicate<String> {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final String pattern;
+
+    private final String literalPrefix;
+
+    private final char[][] segments;
+
+    private final boolean hasWildcard;
+
+    public AntPatternMatcher(String aPattern) {
+        pattern = aPattern;
+        literalPrefix = HarvestUtils.extractLiteralPrefix(aPattern);
+        hasWildcard = aPattern.indexOf('*') >= 0;
+
+        List<char[]> parts = new ArrayList<char[]>();
+        int start = 0;
+        for (int i = 0; i <= aPattern.length(); i++) {
+            if (i == aPattern.length() || aPattern.charAt(i) == '*') {
+                char[] segment = new char[i - start];
+                for (int j = start; j < i; j++)
+                    segment[j - start] = normalize(aPattern.charAt(j));
+                parts.add(segment);
+                start = i + 1;
+            }
+        }
+        segments = parts.toArray(new char[parts.size()][]);
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return the part of the pattern before the first wildcard, which every
+     *         matching name starts with
+     */
+    public String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    public boolean apply(String target) {
+        return matches(target);
+    }
+
+    /**
+     * Matches a class or resource name against the pattern.
+     *
+     * @param name name to check
+     * @return true if the name matches
+     */
+    public boolean matches(CharSequence name) {
+        int end = name.length();
+        if (endsWithClassSuffix(name))
+            end -= CLASS_SUFFIX.length();
+
+        if (!hasWildcard)
+            return end == segments[0].length && regionMatches(name, 0, segments[0]);
+
+        char[] first = segments[0];
+        char[] last = segments[segments.length - 1];
+        if (end < first.length + last.length)
+            return false;
+        if (!regionMatches(name, 0, first) || !regionMatches(name, end - last.length, last))
+            return false;
+
+        // Middle segments are placed leftmost-first between the fixed ends,
+        // which is sufficient when '*' is the only variable-length wildcard.
+        int position = first.length;
+        int limit = end - last.length;
+        for (int s = 1; s < segments.length - 1; s++) {
+            char[] segment = segments[s];
+            int found = indexOf(name, segment, position, limit);
+            if (found < 0)
+                return false;
+            position = found + segment.length;
+        }
+        return true;
+    }
+
+    /**
+     * @param matchers matchers to try
+     * @param name name to check
+     * @return true if any of the matchers matches the name
+     */
+    public static boolean matchesAny(Collection<AntPatternMatcher> matchers, CharSequence name) {
+        for (AntPatternMatcher matcher : matchers) {
+            if (matcher.matches(name))
+                return true;
+        }
+        return false;
+    }
+
+    private static int indexOf(CharSequence name, char[] segment, int from, int limit) {
+        for (int i = from; i + segment.length <= limit; i++) {
+            if (regionMatches(name, i, segment))
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(CharSequence name, int offset, char[] segment) {
+        for (int i = 0; i < segment.length; i++) {
+            char p = segment[i];
+            if (p != '?' && p != normalize(name.charAt(offset + i)))
+                return false;
+        }
+        return true;
+    }
+
+    static boolean endsWithClassSuffix(CharSequence name) {
+        int offset = name.length() - CLASS_SUFFIX.length();
+        if (offset < 0)
+            return false;
+        for (int i = 0; i < CLASS_SUFFIX.length(); i++) {
+            if (name.charAt(offset + i) != CLASS_SUFFIX.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static char normalize(char c) {
+        return c == '.' || c == '/' || c == File.separatorChar ? '/' : c;
+    }
+}
@@ -0,0 +1,390 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+
+/**
+ * Lists resource names ('/' separated, as in jar entries) from the class path
+ * of a class loader. Only directories and jar entries that can start with a
+ * given literal prefix are visited, so a pattern like
+ * <code>com.acme.keywords.**</code> does not pay for the whole class path.
+ * <p></p>
+ * Class path entries are collected the same way Guava's <code>ClassPath</code>
+ * does: parent loaders first, <code>URLClassLoader</code> URLs,
+ * <code>java.class.path</code> for the system class loader and the
+ * <code>Class-Path</code> manifest attribute of jars.
+ * <p></p>
+ * Each directory or jar is scanned as its own fork/join task; the results are
+ * merged in class path order, so the outcome does not depend on scheduling.
+ * <p></p>
+ * Given a {@link HarvestIndex}, unchanged jars and directories are not read
+ * again, not even for their manifest; their names and manifest class path
+ * come from the index.
+ * <p></p>
+ * Jars are listed from their memory mapped central directory, see
+ * {@link ZipCentralDirectory}, falling back to <code>JarFile</code> for zip
+ * variants it does not understand.
+ */
+public class ClassPathScanner {
+
+    private final ClassLoader classLoader;
+
+    private final int parallelism;
+
+    private final HarvestIndex index;
+
+    public ClassPathScanner(ClassLoader loader) {
+        this(loader, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ClassPathScanner(ClassLoader loader, int parallelism) {
+        this(loader, parallelism, null);
+    }
+
+    /**
+     * @param loader class loader whose class path to scan
+     * @param parallelism number of class path entries scanned concurrently, 1
+     *            scans on the calling thread
+     * @param harvestIndex index of jar entries and directory listings from
+     *            earlier builds, may be <code>null</code>
+     */
+    public ClassPathScanner(ClassLoader loader, int parallelism, HarvestIndex harvestIndex) {
+        classLoader = loader;
+        this.parallelism = Math.max(1, parallelism);
+        index = harvestIndex;
+    }
+
+    /**
+     * Scans the class path.
+     *
+     * @param literalPrefix prefix all returned names must start with, may be empty
+     * @param filter filter for resource names starting with the prefix
+     * @return matching resource names in class path order
+     */
+    public Set<String> scan(String literalPrefix, Predicate<CharSequence> filter) {
+        return scan(Collections.singletonList(literalPrefix), filter);
+    }
+
+    /**
+     * Scans the class path once for several prefixes.
+     *
+     * @param literalPrefixes prefixes of which returned names must start with
+     *            at least one
+     * @param filter filter for resource names starting with one of the prefixes
+     * @return matching resource names in class path order
+     */
+    public Set<String> scan(Collection<String> literalPrefixes, Predicate<CharSequence> filter) {
+        List<RootScan> scans = new ArrayList<RootScan>();
+        for (File root : getClassPathRoots())
+            scans.add(new RootScan(root, literalPrefixes, filter));
+
+        if (parallelism > 1 && scans.size() > 1) {
+            ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, scans.size()));
+            try {
+                for (RootScan scan : scans)
+                    pool.execute(scan);
+                for (RootScan scan : scans)
+                    scan.join();
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            for (RootScan scan : scans)
+                scan.invoke();
+        }
+
+        LinkedHashSet<String> result = new LinkedHashSet<String>();
+        for (RootScan scan : scans)
+            result.addAll(scan.join());
+        return result;
+    }
+
+    /**
+     * @return existing class path directories and jars, in class path order
+     */
+    List<File> getClassPathRoots() {
+        Set<File> visited = new HashSet<File>();
+        List<File> roots = new ArrayList<File>();
+        for (File entry : getClassLoaderEntries(classLoader))
+            collectRoot(entry, visited, roots);
+        return roots;
+    }
+
+    private static List<File> getClassLoaderEntries(ClassLoader loader) {
+        List<File> entries = new ArrayList<File>();
+        if (loader == null)
+            return entries;
+        entries.addAll(getClassLoaderEntries(loader.getParent()));
+        if (loader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) loader).getURLs())
+                addFileUrl(url, entries);
+        }
+        if (loader == ClassLoader.getSystemClassLoader()) {
+            String classPath = System.getProperty("java.class.path", "");
+            for (String element : classPath.split(File.pathSeparator)) {
+                if (element.length() > 0)
+                    entries.add(new File(element).getAbsoluteFile());
+            }
+        }
+        return entries;
+    }
+
+    private static void addFileUrl(URL url, List<File> entries) {
+        if (!"file".equals(url.getProtocol()))
+            return;
+        try {
+            entries.add(new File(url.toURI()).getAbsoluteFile());
+        } catch (URISyntaxException e) {
+            entries.add(new File(url.getPath()).getAbsoluteFile());
+        } catch (IllegalArgumentException e) {
+            // Not a hierarchical file URL, skip it.
+        }
+    }
+
+    private void collectRoot(File entry, Set<File> visited, List<File> roots) {
+        if (!entry.exists() || !visited.add(entry))
+            return;
+        if (!entry.isDirectory()) {
+            // Jars referenced by the manifest come before the jar itself.
+            for (File referenced : getManifestClassPath(entry))
+                collectRoot(referenced, visited, roots);
+        }
+        roots.add(entry);
+    }
+
+    private List<File> getManifestClassPath(File jar) {
+        List<File> result = new ArrayList<File>();
+        List<String> classPath = index != null ? index.getManifestClassPath(jar) : null;
+        if (classPath == null) {
+            classPath = readManifestClassPath(jar);
+            if (index != null)
+                index.putManifestClassPath(jar, classPath);
+        }
+        if (classPath.isEmpty())
+            return result;
+        try {
+            URL base = jar.toURI().toURL();
+            for (String path : classPath) {
+                try {
+                    addFileUrl(new URL(base, path), result);
+                } catch (MalformedURLException e) {
+                    // Ignore invalid manifest entries, like the JVM does.
+                }
+            }
+        } catch (MalformedURLException e) {
+            // No base to resolve against, nothing to follow.
+        }
+        return result;
+    }
+
+    /**
+     * @return the space separated entries of the <code>Class-Path</code>
+     *         manifest attribute, empty if there is none
+     */
+    private static List<String> readManifestClassPath(File jar) {
+        List<String> result = new ArrayList<String>();
+        Manifest manifest = readManifest(jar);
+        if (manifest == null)
+            return result;
+        String classPath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH.toString());
+        if (classPath == null)
+            return result;
+        for (String path : classPath.split(" ")) {
+            if (path.length() > 0)
+                result.add(path);
+        }
+        return result;
+    }
+
+    private static Manifest readManifest(File jar) {
+        try {
+            ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(jar);
+            if (centralDirectory != null) {
+                try {
+                    byte[] manifest = centralDirectory.readManifest();
+                    return manifest == null ? null : new Manifest(new ByteArrayInputStream(manifest));
+                } finally {
+                    centralDirectory.close();
+                }
+            }
+        } catch (IOException e) {
+            // Let JarFile have a go, it knows more zip variants.
+        }
+        try {
+            JarFile jarFile = new JarFile(jar);
+            try {
+                return jarFile.getManifest();
+            } finally {
+                jarFile.close();
+            }
+        } catch (IOException e) {
+            // Not a jar, nothing to follow.
+            return null;
+        }
+    }
+
+    private class RootScan extends RecursiveTask<Set<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File root;
+
+        private final Collection<String> literalPrefixes;
+
+        private final Predicate<CharSequence> filter;
+
+        RootScan(File root, Collection<String> literalPrefixes, Predicate<CharSequence> filter) {
+            this.root = root;
+            this.literalPrefixes = literalPrefixes;
+            this.filter = filter;
+        }
+
+        @Override
+        protected Set<String> compute() {
+            LinkedHashSet<String> result = new LinkedHashSet<String>();
+            if (root.isDirectory())
+                scanDirectory(root, "", literalPrefixes, filter, result);
+            else
+                scanJar(root, literalPrefixes, filter, result);
+            return result;
+        }
+    }
+
+    private void scanDirectory(File directory, String relativePath, Collection<String> literalPrefixes,
+            Predicate<CharSequence> filter, Set<String> result) {
+        HarvestIndex.DirectoryListing listing = index != null ? index.listDirectory(directory)
+                : HarvestIndex.DirectoryListing.read(directory);
+        for (String child : listing.getFiles()) {
+            String name = relativePath + child;
+            if (startsWithAny(name, literalPrefixes) && filter.apply(name))
+                result.add(name);
+        }
+        for (String child : listing.getDirectories()) {
+            String childPath = relativePath + child + "/";
+            if (mayContainAny(childPath, literalPrefixes) && !listing.isLinkCycle(directory, child))
+                scanDirectory(new File(directory, child), childPath, literalPrefixes, filter, result);
+        }
+    }
+
+    private void scanJar(File jar, Collection<String> literalPrefixes, Predicate<CharSequence> filter,
+            Set<String> result) {
+        if (index == null) {
+            // Nothing to record, filter while reading.
+            readJarEntries(jar, literalPrefixes, filter, result);
+            return;
+        }
+        // Only names under the prefixes are recorded, each prefix on its own,
+        // and the jar is read once for the prefixes the index lacks.
+        Map<String, List<String>> namesByPrefix = new LinkedHashMap<String, List<String>>();
+        List<String> missing = new ArrayList<String>();
+        for (String literalPrefix : literalPrefixes) {
+            List<String> names = index.getJarEntries(jar, literalPrefix);
+            if (names == null)
+                missing.add(literalPrefix);
+            namesByPrefix.put(literalPrefix, names);
+        }
+        if (!missing.isEmpty()) {
+            List<String> read = new ArrayList<String>();
+            readJarEntries(jar, missing, Predicates.<CharSequence>alwaysTrue(), read);
+            for (String literalPrefix : missing) {
+                List<String> names = new ArrayList<String>();
+                for (String name : read) {
+                    if (HarvestUtils.startsWithLiteralPrefix(name, literalPrefix))
+                        names.add(name);
+                }
+                index.putJarEntries(jar, literalPrefix, names);
+                namesByPrefix.put(literalPrefix, names);
+            }
+        }
+        for (List<String> names : namesByPrefix.values()) {
+            for (String name : names) {
+                if (filter.apply(name))
+                    result.add(name);
+            }
+        }
+    }
+
+    private static void readJarEntries(File jar, final Collection<String> literalPrefixes,
+            final Predicate<CharSequence> filter, Collection<String> result) {
+        try {
+            ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(jar);
+            if (centralDirectory != null) {
+                final List<String> names = new ArrayList<String>();
+                try {
+                    // Names are matched in place; only hits become strings.
+                    centralDirectory.forEachName(new ZipCentralDirectory.NameVisitor() {
+                        public void visit(CharSequence name) {
+                            if (startsWithAny(name, literalPrefixes) && filter.apply(name))
+                                names.add(name.toString());
+                        }
+                    });
+                } finally {
+                    centralDirectory.close();
+                }
+                result.addAll(names);
+                return;
+            }
+        } catch (IOException e) {
+            // Let JarFile have a go, it knows more zip variants.
+        }
+
+        try {
+            JarFile jarFile = new JarFile(jar);
+            try {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    if (entry.isDirectory() || JarFile.MANIFEST_NAME.equals(name))
+                        continue;
+                    if (startsWithAny(name, literalPrefixes) && filter.apply(name))
+                        result.add(name);
+                }
+            } finally {
+                jarFile.close();
+            }
+        } catch (IOException e) {
+            // Not a readable jar, nothing to harvest.
+        }
+    }
+
+    private static boolean mayContainAny(String directoryPath, Collection<String> literalPrefixes) {
+        for (String literalPrefix : literalPrefixes) {
+            if (HarvestUtils.mayContainLiteralPrefix(directoryPath, literalPrefix))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean startsWithAny(CharSequence resourceName, Collection<String> literalPrefixes) {
+        for (String literalPrefix : literalPrefixes) {
+            if (HarvestUtils.startsWithLiteralPrefix(resourceName, literalPrefix))
+                return true;
+        }
+        return false;
+    }
+}
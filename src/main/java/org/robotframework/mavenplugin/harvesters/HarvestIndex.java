@@ -0,0 +1,526 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk index of the names seen by the harvesters, kept between builds.
+ * <p></p>
+ * Jar records are keyed by the jar path, size and modification time. They
+ * hold the <code>Class-Path</code> of the jar manifest and, for each literal
+ * prefix scanned for, only the entry names starting with it, so jars that do
+ * not hold a match take next to no space. Directory listings are keyed by the
+ * directory modification time, which changes whenever a child is added,
+ * removed or renamed; unchanged directories are therefore not listed again,
+ * only their subdirectories are checked.
+ * <p></p>
+ * Loading the index only reads the paths of the records; a record is decoded
+ * when its jar or directory is first looked up.
+ * <p></p>
+ * Entries recorded within {@link #RACY_INTERVAL_MILLIS} of their modification
+ * time are not trusted, as the file system may not have a finer timestamp
+ * resolution than that. Records not used during a build are kept as long as
+ * their jar or directory exists, so executions harvesting other paths into
+ * the same file do not drop each other's records, while the index does not
+ * grow with jars and directories that are gone.
+ */
+public class HarvestIndex {
+
+    static final long RACY_INTERVAL_MILLIS = 2000;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final File indexFile;
+
+    /** Contents of the loaded file, records are decoded from it on demand. */
+    private byte[] loaded = new byte[0];
+
+    private final Map<String, Integer> loadedJars = new ConcurrentHashMap<String, Integer>();
+
+    private final Map<String, Integer> loadedDirectories = new ConcurrentHashMap<String, Integer>();
+
+    private final Map<String, JarRecord> usedJars = new ConcurrentHashMap<String, JarRecord>();
+
+    private final Map<String, DirectoryRecord> usedDirectories = new ConcurrentHashMap<String, DirectoryRecord>();
+
+    private volatile boolean changed;
+
+    private HarvestIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Loads the index from the given file. A missing, unreadable or outdated
+     * file gives an empty index, which is written anew on {@link #save()}.
+     *
+     * @param indexFile file holding the index
+     * @return the loaded index
+     */
+    public static HarvestIndex load(File indexFile) {
+        HarvestIndex index = new HarvestIndex(indexFile);
+        if (!indexFile.isFile())
+            return index;
+        try {
+            index.readContents(Files.readAllBytes(indexFile.toPath()));
+        } catch (IOException e) {
+            // Corrupt or partial index, start over.
+            index.loaded = new byte[0];
+            index.loadedJars.clear();
+            index.loadedDirectories.clear();
+        }
+        return index;
+    }
+
+    /**
+     * The <code>Class-Path</code> manifest attribute of a jar, if the jar has
+     * not changed since it was recorded.
+     *
+     * @param jar jar file
+     * @return the space separated entries of the attribute, empty if the jar
+     *         has none, or <code>null</code> if the manifest must be read
+     *         again
+     */
+    public List<String> getManifestClassPath(File jar) {
+        JarRecord record = jarRecord(jar, false);
+        return record == null ? null : record.classPath;
+    }
+
+    /**
+     * Records the <code>Class-Path</code> manifest attribute of a jar.
+     *
+     * @param jar jar file
+     * @param classPath the space separated entries of the attribute, empty if
+     *            the jar has none
+     */
+    public void putManifestClassPath(File jar, List<String> classPath) {
+        jarRecord(jar, true).classPath = Collections.unmodifiableList(new ArrayList<String>(classPath));
+        changed = true;
+    }
+
+    /**
+     * Entry names of a jar starting with a literal prefix, if the jar has not
+     * changed since they were recorded for that prefix or a shorter one.
+     *
+     * @param jar jar file
+     * @param literalPrefix prefix the names start with, see
+     *            {@link HarvestUtils#startsWithLiteralPrefix(CharSequence, String)}
+     * @return recorded entry names, or <code>null</code> if the jar must be
+     *         read again
+     */
+    public List<String> getJarEntries(File jar, String literalPrefix) {
+        JarRecord record = jarRecord(jar, false);
+        return record == null ? null : record.getEntries(literalPrefix);
+    }
+
+    /**
+     * Records the entry names of a jar starting with a literal prefix.
+     *
+     * @param jar jar file
+     * @param literalPrefix prefix the names start with
+     * @param entries names of its entries starting with the prefix
+     */
+    public void putJarEntries(File jar, String literalPrefix, List<String> entries) {
+        jarRecord(jar, true).entries.put(literalPrefix,
+                Collections.unmodifiableList(new ArrayList<String>(entries)));
+        changed = true;
+    }
+
+    /**
+     * @param create whether to start a new record when there is no valid one
+     * @return the valid record of the jar, marked as used, or
+     *         <code>null</code>
+     */
+    private JarRecord jarRecord(File jar, boolean create) {
+        String key = jar.getAbsolutePath();
+        JarRecord record = usedJars.get(key);
+        if (record == null)
+            record = decodeJar(key);
+        if (record != null && !record.isValidFor(jar))
+            record = null;
+        if (record == null) {
+            if (!create)
+                return null;
+            record = new JarRecord(jar.length(), jar.lastModified(), System.currentTimeMillis(), null);
+            changed = true;
+        }
+        usedJars.put(key, record);
+        return record;
+    }
+
+    /**
+     * Lists a directory, reusing the recorded listing if the directory has not
+     * changed.
+     *
+     * @param directory directory to list
+     * @return names of files and subdirectories, each sorted
+     */
+    public DirectoryListing listDirectory(File directory) {
+        String key = directory.getAbsolutePath();
+        DirectoryRecord record = usedDirectories.get(key);
+        if (record == null)
+            record = decodeDirectory(key);
+        long lastModified = directory.lastModified();
+        if (record == null || !record.isValidFor(lastModified)) {
+            record = new DirectoryRecord(lastModified, System.currentTimeMillis(), DirectoryListing.read(directory));
+            changed = true;
+        }
+        usedDirectories.put(key, record);
+        return record.listing;
+    }
+
+    /**
+     * Writes the index, if anything was recorded or dropped since loading. The file is replaced atomically where the file system allows.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    public void save() throws IOException {
+        if (!changed)
+            return;
+        File parent = indexFile.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Harvest index directory cannot be created: " + parent.getAbsolutePath());
+        File temporary = new File(parent, indexFile.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+        Files.move(temporary.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        changed = false;
+    }
+
+    /**
+     * Reads the paths of the records and where each one starts; the records
+     * themselves are left for {@link #decodeJar(String)} and
+     * {@link #decodeDirectory(String)}.
+     */
+    private void readContents(byte[] contents) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+        if (in.readInt() != FORMAT_VERSION)
+            return;
+        readOffsets(in, loadedJars);
+        readOffsets(in, loadedDirectories);
+        int recordsLength = in.readInt();
+        if (recordsLength != in.available())
+            throw new IOException("Truncated harvest index.");
+        int recordsStart = contents.length - recordsLength;
+        for (Map.Entry<String, Integer> jar : loadedJars.entrySet())
+            jar.setValue(recordsStart + jar.getValue());
+        for (Map.Entry<String, Integer> directory : loadedDirectories.entrySet())
+            directory.setValue(recordsStart + directory.getValue());
+        loaded = contents;
+    }
+
+    private static void readOffsets(DataInputStream in, Map<String, Integer> offsets) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String path = in.readUTF();
+            offsets.put(path, in.readInt());
+        }
+    }
+
+    private JarRecord decodeJar(String path) {
+        Integer offset = loadedJars.get(path);
+        if (offset == null)
+            return null;
+        try {
+            DataInputStream in = recordAt(offset);
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            long recorded = in.readLong();
+            List<String> classPath = in.readBoolean() ? Collections.unmodifiableList(readNames(in)) : null;
+            JarRecord record = new JarRecord(size, lastModified, recorded, classPath);
+            int prefixes = in.readInt();
+            for (int i = 0; i < prefixes; i++) {
+                String prefix = in.readUTF();
+                record.entries.put(prefix, Collections.unmodifiableList(readNames(in)));
+            }
+            return record;
+        } catch (IOException e) {
+            // Corrupt record, read the jar again.
+            return null;
+        }
+    }
+
+    private DirectoryRecord decodeDirectory(String path) {
+        Integer offset = loadedDirectories.get(path);
+        if (offset == null)
+            return null;
+        try {
+            DataInputStream in = recordAt(offset);
+            long lastModified = in.readLong();
+            long recorded = in.readLong();
+            List<String> files = readNames(in);
+            List<String> subdirectories = readNames(in);
+            List<String> linkedDirectories = readNames(in);
+            return new DirectoryRecord(lastModified, recorded, new DirectoryListing(files, subdirectories,
+                    linkedDirectories));
+        } catch (IOException e) {
+            // Corrupt record, list the directory again.
+            return null;
+        }
+    }
+
+    private DataInputStream recordAt(int offset) throws IOException {
+        if (offset < 0 || offset > loaded.length)
+            throw new IOException("Invalid harvest index record offset " + offset + ".");
+        return new DataInputStream(new ByteArrayInputStream(loaded, offset, loaded.length - offset));
+    }
+
+    /**
+     * Writes the paths of the records with their offsets first, then the
+     * records, so that loading can skip the records.
+     */
+    private void write(DataOutputStream out) throws IOException {
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        TreeSet<Integer> recordStarts = new TreeSet<Integer>(loadedJars.values());
+        recordStarts.addAll(loadedDirectories.values());
+        // Sorted, so that unchanged indexes are written identically.
+        Map<String, Integer> jarOffsets = new TreeMap<String, Integer>();
+        TreeSet<String> jars = new TreeSet<String>(usedJars.keySet());
+        jars.addAll(loadedJars.keySet());
+        for (String jar : jars) {
+            JarRecord record = usedJars.get(jar);
+            if (record == null) {
+                if (new File(jar).isFile()) {
+                    jarOffsets.put(jar, records.size());
+                    copyRecord(records, loadedJars.get(jar), recordStarts);
+                }
+                continue;
+            }
+            jarOffsets.put(jar, records.size());
+            records.writeLong(record.size);
+            records.writeLong(record.lastModified);
+            records.writeLong(record.recorded);
+            List<String> classPath = record.classPath;
+            records.writeBoolean(classPath != null);
+            if (classPath != null)
+                writeNames(records, classPath);
+            Map<String, List<String>> entries = new TreeMap<String, List<String>>(record.entries);
+            records.writeInt(entries.size());
+            for (Map.Entry<String, List<String>> prefix : entries.entrySet()) {
+                records.writeUTF(prefix.getKey());
+                writeNames(records, prefix.getValue());
+            }
+        }
+        Map<String, Integer> directoryOffsets = new TreeMap<String, Integer>();
+        TreeSet<String> directories = new TreeSet<String>(usedDirectories.keySet());
+        directories.addAll(loadedDirectories.keySet());
+        for (String directory : directories) {
+            DirectoryRecord record = usedDirectories.get(directory);
+            if (record == null) {
+                if (new File(directory).isDirectory()) {
+                    directoryOffsets.put(directory, records.size());
+                    copyRecord(records, loadedDirectories.get(directory), recordStarts);
+                }
+                continue;
+            }
+            directoryOffsets.put(directory, records.size());
+            records.writeLong(record.lastModified);
+            records.writeLong(record.recorded);
+            writeNames(records, record.listing.getFiles());
+            writeNames(records, record.listing.getDirectories());
+            writeNames(records, record.listing.linkedDirectories);
+        }
+        records.flush();
+
+        out.writeInt(FORMAT_VERSION);
+        writeOffsets(out, jarOffsets);
+        writeOffsets(out, directoryOffsets);
+        out.writeInt(recordBytes.size());
+        recordBytes.writeTo(out);
+    }
+
+    /**
+     * Copies a loaded record as is; it ends where the next record starts.
+     */
+    private void copyRecord(DataOutputStream records, int offset, TreeSet<Integer> recordStarts) throws IOException {
+        Integer next = recordStarts.higher(offset);
+        int end = next != null ? next : loaded.length;
+        records.write(loaded, offset, end - offset);
+    }
+
+    private static void writeOffsets(DataOutputStream out, Map<String, Integer> offsets) throws IOException {
+        out.writeInt(offsets.size());
+        for (Map.Entry<String, Integer> offset : offsets.entrySet()) {
+            out.writeUTF(offset.getKey());
+            out.writeInt(offset.getValue());
+        }
+    }
+
+    private static List<String> readNames(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> names = new ArrayList<String>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++)
+            names.add(in.readUTF());
+        return names;
+    }
+
+    private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names)
+            out.writeUTF(name);
+    }
+
+    private static boolean isSettled(long lastModified, long recorded) {
+        return lastModified < recorded - RACY_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Names of the files and subdirectories of a directory.
+     */
+    public static final class DirectoryListing {
+
+        private final List<String> files;
+
+        private final List<String> directories;
+
+        private final List<String> linkedDirectories;
+
+        DirectoryListing(List<String> files, List<String> directories, List<String> linkedDirectories) {
+            this.files = Collections.unmodifiableList(files);
+            this.directories = Collections.unmodifiableList(directories);
+            this.linkedDirectories = Collections.unmodifiableList(linkedDirectories);
+        }
+
+        /**
+         * Lists a directory without any index.
+         *
+         * @param directory directory to list
+         * @return names of files and subdirectories, each sorted
+         */
+        public static DirectoryListing read(File directory) {
+            List<String> files = new ArrayList<String>();
+            List<String> directories = new ArrayList<String>();
+            List<String> linkedDirectories = new ArrayList<String>();
+            File[] children = directory.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isDirectory()) {
+                        directories.add(child.getName());
+                        if (Files.isSymbolicLink(child.toPath()))
+                            linkedDirectories.add(child.getName());
+                    } else {
+                        files.add(child.getName());
+                    }
+                }
+            }
+            Collections.sort(files);
+            Collections.sort(directories);
+            Collections.sort(linkedDirectories);
+            return new DirectoryListing(files, directories, linkedDirectories);
+        }
+
+        public List<String> getFiles() {
+            return files;
+        }
+
+        public List<String> getDirectories() {
+            return directories;
+        }
+
+        /**
+         * Whether entering the subdirectory would loop, that is, whether it is
+         * a symbolic link to the directory itself or one of its ancestors.
+         * Only linked subdirectories pay for resolving canonical paths.
+         *
+         * @param directory the listed directory
+         * @param name name of one of its subdirectories
+         * @return true if the subdirectory must not be entered
+         */
+        public boolean isLinkCycle(File directory, String name) {
+            if (Collections.binarySearch(linkedDirectories, name) < 0)
+                return false;
+            try {
+                String target = new File(directory, name).getCanonicalPath();
+                String parent = directory.getCanonicalPath();
+                return parent.equals(target) || parent.startsWith(target + File.separator);
+            } catch (IOException e) {
+                return true;
+            }
+        }
+    }
+
+    private static final class JarRecord {
+
+        final long size;
+
+        final long lastModified;
+
+        final long recorded;
+
+        volatile List<String> classPath;
+
+        /** Entry names by the literal prefix they were recorded for. */
+        final Map<String, List<String>> entries = new ConcurrentHashMap<String, List<String>>();
+
+        JarRecord(long size, long lastModified, long recorded, List<String> classPath) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.recorded = recorded;
+            this.classPath = classPath;
+        }
+
+        boolean isValidFor(File jar) {
+            return size == jar.length() && lastModified == jar.lastModified() && isSettled(lastModified, recorded);
+        }
+
+        /**
+         * @return names starting with the prefix, taken from the names of
+         *         the prefix or of a shorter one it starts with, or
+         *         <code>null</code> if neither was recorded
+         */
+        List<String> getEntries(String literalPrefix) {
+            List<String> names = entries.get(literalPrefix);
+            if (names != null)
+                return names;
+            for (Map.Entry<String, List<String>> recorded : entries.entrySet()) {
+                if (HarvestUtils.startsWithLiteralPrefix(literalPrefix, recorded.getKey())) {
+                    List<String> matching = new ArrayList<String>();
+                    for (String name : recorded.getValue()) {
+                        if (HarvestUtils.startsWithLiteralPrefix(name, literalPrefix))
+                            matching.add(name);
+                    }
+                    return matching;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class DirectoryRecord {
+
+        final long lastModified;
+
+        final long recorded;
+
+        final DirectoryListing listing;
+
+        DirectoryRecord(long lastModified, long recorded, DirectoryListing listing) {
+            this.lastModified = lastModified;
+            this.recorded = recorded;
+            this.listing = listing;
+        }
+
+        boolean isValidFor(long currentLastModified) {
+            return lastModified == currentLastModified && isSettled(lastModified, recorded);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package org.robotframework.mavenplugin.harvesters;
 
 import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Some utilities for processing harvested names.
@@ -60,6 +63,78 @@ public class HarvestUtils {
         return minPatternIndex;
     }
 
+    /**
+     * Extracts the literal part of an ant-like pattern that precedes the first
+     * pattern symbol, e.g. <code>com.acme.keywords.</code> from
+     * <code>com.acme.keywords.**</code>.
+     *
+     * @param antLikePattern pattern to get the prefix from
+     * @return literal prefix, or the whole pattern if it has no pattern symbols
+     */
+    public static String extractLiteralPrefix(String antLikePattern) {
+        int minPatternIndex = calculateMinimumPatternIndex(antLikePattern);
+        if (minPatternIndex < 0)
+            return antLikePattern;
+        return antLikePattern.substring(0, minPatternIndex);
+    }
+
+    /**
+     * Whether the given resource name starts with the literal prefix. '.', '/'
+     * and '\' are considered equal, as the harvesters do for class and
+     * resource names.
+     *
+     * @param resourceName name of the resource, such as <code>com/acme/Lib.class</code>
+     * @param literalPrefix prefix from {@link #extractLiteralPrefix(String)}
+     * @return true if the resource name starts with the prefix
+     */
+    public static boolean startsWithLiteralPrefix(CharSequence resourceName, String literalPrefix) {
+        return resourceName.length() >= literalPrefix.length()
+                && regionMatchesLiteralPrefix(resourceName, literalPrefix);
+    }
+
+    /**
+     * Whether a directory may hold resources starting with the literal prefix,
+     * that is, whether its path and the prefix agree as far as both go.
+     *
+     * @param directoryPath relative path of the directory, ending with '/'
+     * @param literalPrefix prefix from {@link #extractLiteralPrefix(String)}
+     * @return true if the directory needs to be visited
+     */
+    public static boolean mayContainLiteralPrefix(String directoryPath, String literalPrefix) {
+        return regionMatchesLiteralPrefix(directoryPath, literalPrefix);
+    }
+
+    private static boolean regionMatchesLiteralPrefix(CharSequence name, String literalPrefix) {
+        int length = Math.min(name.length(), literalPrefix.length());
+        for (int i = 0; i < length; i++) {
+            char n = name.charAt(i);
+            char p = literalPrefix.charAt(i);
+            if (n != p && !(isNameSeparator(n) && isNameSeparator(p)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records a harvested name together with the pattern that matched it.
+     *
+     * @param hits harvested names mapped to their patterns
+     * @param name harvested name
+     * @param pattern pattern that matched the name
+     */
+    public static void addHit(Map<String, Set<String>> hits, String name, String pattern) {
+        Set<String> patterns = hits.get(name);
+        if (patterns == null) {
+            patterns = new LinkedHashSet<String>();
+            hits.put(name, patterns);
+        }
+        patterns.add(pattern);
+    }
+
+    static boolean isNameSeparator(char c) {
+        return c == '.' || c == '/' || c == '\\';
+    }
+
     /**
      * Prepares an id name from a full path or fully qualified file, by
      * replacing various chars with '_'.
@@ -1,7 +1,17 @@
 package org.robotframework.mavenplugin.harvesters;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 public interface NameHarvester {
     public Set<String> harvest(String pattern);
+
+    /**
+     * Harvests several patterns in one pass.
+     *
+     * @param patterns patterns to harvest
+     * @return harvested names, each mapped to the patterns it matched
+     */
+    public Map<String, Set<String>> harvestAll(Collection<String> patterns);
 }
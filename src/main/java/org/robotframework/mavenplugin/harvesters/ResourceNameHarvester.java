@@ -1,10 +1,15 @@
 package org.robotframework.mavenplugin.harvesters;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import com.google.common.reflect.ClassPath;
+import com.google.common.base.Predicate;
 
 /**
  * Harvests resource (not class) names from the class path given an ant-like
@@ -12,25 +17,56 @@ import com.google.common.reflect.ClassPath;
  */
 public class ResourceNameHarvester implements NameHarvester {
 
+    private final HarvestIndex index;
+
+    public ResourceNameHarvester() {
+        this(null);
+    }
+
+    /**
+     * @param harvestIndex index of the class path from earlier builds, may be
+     *            <code>null</code>
+     */
+    public ResourceNameHarvester(HarvestIndex harvestIndex) {
+        index = harvestIndex;
+    }
+
     public Set<String> harvest(String antLikePattern) {
-        int minPatternIndex = HarvestUtils.calculateMinimumPatternIndex(antLikePattern);
-
-        LinkedHashSet<String> result = new LinkedHashSet<String>();
-        if (minPatternIndex >= 0) {
-            try {
-                AntPatternClassPredicate ap = new AntPatternClassPredicate(antLikePattern);
-                ClassPath cp = ClassPath.from(this.getClass().getClassLoader());
-                for (ClassPath.ResourceInfo ri : cp.getResources()) {
-                    String t = ri.getResourceName();
-                    if (ap.apply(t)) 
-                        result.add(t);
-                }
-            } catch (IOException e) {
-                // Could not find any, so silence the exception!
+        return new LinkedHashSet<String>(harvestAll(Collections.singletonList(antLikePattern)).keySet());
+    }
+
+    public Map<String, Set<String>> harvestAll(Collection<String> antLikePatterns) {
+        Map<String, Set<String>> result = new LinkedHashMap<String, Set<String>>();
+        final List<AntPatternMatcher> matchers = new ArrayList<AntPatternMatcher>();
+        List<String> literalPrefixes = new ArrayList<String>();
+        for (String antLikePattern : antLikePatterns) {
+            if (HarvestUtils.calculateMinimumPatternIndex(antLikePattern) >= 0) {
+                AntPatternMatcher matcher = new AntPatternMatcher(antLikePattern);
+                matchers.add(matcher);
+                literalPrefixes.add(matcher.getLiteralPrefix());
+            } else {
+                // No pattern, add as direct resource to deal with later.
+                HarvestUtils.addHit(result, antLikePattern, antLikePattern);
+            }
+        }
+        if (matchers.isEmpty())
+            return result;
+
+        ClassPathScanner scanner = new ClassPathScanner(this.getClass().getClassLoader(),
+                Runtime.getRuntime().availableProcessors(), index);
+        // Only directories and jar entries below the literal prefixes are
+        // visited, once for all patterns.
+        Set<String> resources = scanner.scan(literalPrefixes, new Predicate<CharSequence>() {
+            public boolean apply(CharSequence resourceName) {
+                return AntPatternMatcher.matchesAny(matchers, resourceName);
+            }
+        });
+        for (String resource : resources) {
+            for (AntPatternMatcher matcher : matchers) {
+                if (matcher.matches(resource))
+                    HarvestUtils.addHit(result, resource, matcher.getPattern());
             }
-        } else 
-            // No pattern, add as direct resource to deal with later.
-            result.add(antLikePattern);
+        }
         return result;
     }
 }
@@ -1,24 +1,225 @@
 package org.robotframework.mavenplugin.harvesters;
 
-import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.MatchPattern;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Harvests file names, supports ant-like patterns, the same understood by Maven
  * 'includes'.
+ * <p></p>
+ * Subtrees that cannot hold a match, or that match one of the exclude
+ * patterns, are not entered at all. Each directory is listed as its own
+ * fork/join task; hits are returned in the same order whatever the file
+ * system lists first and however the tasks are scheduled. Given a
+ * {@link HarvestIndex}, directories that have not changed since an earlier
+ * build are not listed again.
  */
 public class SourceFileNameHarvester implements NameHarvester {
 
     private final File baseDir;
 
+    private final List<MatchPattern> excludes = new ArrayList<MatchPattern>();
+
+    private final HarvestIndex index;
+
     public SourceFileNameHarvester(File bDir) {
+        this(bDir, null);
+    }
+
+    public SourceFileNameHarvester(File bDir, List<String> excludePatterns) {
+        this(bDir, excludePatterns, null);
+    }
+
+    /**
+     * @param bDir project base directory, relative patterns are resolved
+     *            against it
+     * @param excludePatterns ant-like patterns of files and directories to skip,
+     *            relative to the project base directory, e.g.
+     *            <code>**{@literal /}target/**</code>
+     * @param harvestIndex index of directory listings from earlier builds, may
+     *            be <code>null</code>
+     */
+    public SourceFileNameHarvester(File bDir, List<String> excludePatterns, HarvestIndex harvestIndex) {
         baseDir = bDir;
+        index = harvestIndex;
+        if (excludePatterns != null) {
+            for (String excludePattern : excludePatterns)
+                excludes.add(MatchPattern.fromString(normalizePattern(excludePattern)));
+        }
     }
 
     public Set<String> harvest(String antLikePattern) {
+        return new LinkedHashSet<String>(harvestAll(Collections.singletonList(antLikePattern)).keySet());
+    }
+
+    public Map<String, Set<String>> harvestAll(Collection<String> antLikePatterns) {
+        // Patterns sharing a base directory are walked together. Each pattern
+        // within the base directory remembers the pattern(s) it came from.
+        Map<String, Map<String, Set<String>>> patternsByBaseDirectory = new LinkedHashMap<String, Map<String, Set<String>>>();
+        for (String antLikePattern : antLikePatterns) {
+            String[] split = splitPattern(antLikePattern);
+            Map<String, Set<String>> patterns = patternsByBaseDirectory.get(split[0]);
+            if (patterns == null) {
+                patterns = new LinkedHashMap<String, Set<String>>();
+                patternsByBaseDirectory.put(split[0], patterns);
+            }
+            HarvestUtils.addHit(patterns, normalizePattern(split[1]), antLikePattern);
+        }
+
+        LinkedHashMap<String, Set<String>> result = new LinkedHashMap<String, Set<String>>();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (Map.Entry<String, Map<String, Set<String>>> group : patternsByBaseDirectory.entrySet()) {
+                Map<String, Set<String>> hits = walkBaseDirectory(pool, new File(group.getKey()), group.getValue());
+                for (Map.Entry<String, Set<String>> hit : hits.entrySet()) {
+                    for (String antLikePattern : hit.getValue())
+                        HarvestUtils.addHit(result, hit.getKey(), antLikePattern);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    private Map<String, Set<String>> walkBaseDirectory(ForkJoinPool pool, File base, Map<String, Set<String>> patterns) {
+        Path root = base.toPath();
+        if (!Files.isDirectory(root))
+            return new LinkedHashMap<String, Set<String>>();
+        return pool.invoke(new DirectoryWalk(new Walk(base, root, patterns), root));
+    }
+
+    /**
+     * Lists a directory, forking a walk for each subdirectory to enter. Files
+     * come first, then the subdirectories, each in sorted order, so the hits
+     * do not depend on the file system or on scheduling.
+     */
+    private class DirectoryWalk extends RecursiveTask<Map<String, Set<String>>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Walk walk;
+
+        private final Path directory;
+
+        DirectoryWalk(Walk walk, Path directory) {
+            this.walk = walk;
+            this.directory = directory;
+        }
+
+        @Override
+        protected Map<String, Set<String>> compute() {
+            Map<String, Set<String>> hits = new LinkedHashMap<String, Set<String>>();
+            File directoryFile = directory.toFile();
+            HarvestIndex.DirectoryListing listing = index != null ? index.listDirectory(directoryFile)
+                    : HarvestIndex.DirectoryListing.read(directoryFile);
+            for (String file : listing.getFiles())
+                walk.visit(directory.resolve(file), hits);
+
+            List<DirectoryWalk> subtrees = new ArrayList<DirectoryWalk>();
+            for (String child : listing.getDirectories()) {
+                Path childPath = directory.resolve(child);
+                if (!listing.isLinkCycle(directoryFile, child) && walk.shouldEnter(childPath))
+                    subtrees.add(new DirectoryWalk(walk, childPath));
+            }
+            if (subtrees.size() == 1)
+                merge(hits, subtrees.get(0).compute());
+            else if (!subtrees.isEmpty()) {
+                invokeAll(subtrees);
+                for (DirectoryWalk subtree : subtrees)
+                    merge(hits, subtree.join());
+            }
+            return hits;
+        }
+
+        private void merge(Map<String, Set<String>> hits, Map<String, Set<String>> subtreeHits) {
+            for (Map.Entry<String, Set<String>> hit : subtreeHits.entrySet()) {
+                for (String pattern : hit.getValue())
+                    HarvestUtils.addHit(hits, hit.getKey(), pattern);
+            }
+        }
+    }
+
+    /**
+     * Matching state of a base directory, shared by the subtree walks below it.
+     */
+    private class Walk {
+
+        private final File base;
+
+        private final Path root;
+
+        private final Path projectRoot;
+
+        private final Map<MatchPattern, Set<String>> includes = new LinkedHashMap<MatchPattern, Set<String>>();
+
+        Walk(File base, Path root, Map<String, Set<String>> patterns) {
+            this.base = base;
+            this.root = root;
+            this.projectRoot = baseDir.getAbsoluteFile().toPath().normalize();
+            for (Map.Entry<String, Set<String>> pattern : patterns.entrySet())
+                includes.put(MatchPattern.fromString(pattern.getKey()), pattern.getValue());
+        }
+
+        boolean shouldEnter(Path directory) {
+            if (isExcluded(directory))
+                return false;
+            String relativePath = root.relativize(directory).toString();
+            for (MatchPattern include : includes.keySet()) {
+                if (include.matchPatternStart(relativePath, true))
+                    return true;
+            }
+            return false;
+        }
+
+        void visit(Path file, Map<String, Set<String>> hits) {
+            String relativePath = root.relativize(file).toString();
+            String path = null;
+            for (Map.Entry<MatchPattern, Set<String>> include : includes.entrySet()) {
+                if (include.getKey().matchPath(relativePath, true)) {
+                    if (path == null) {
+                        if (isExcluded(file))
+                            return;
+                        path = new File(base, relativePath).getAbsolutePath();
+                    }
+                    for (String pattern : include.getValue())
+                        HarvestUtils.addHit(hits, path, pattern);
+                }
+            }
+        }
+
+        private boolean isExcluded(Path path) {
+            if (excludes.isEmpty())
+                return false;
+            Path absolute = path.toAbsolutePath().normalize();
+            String relativePath = absolute.startsWith(projectRoot) ? projectRoot.relativize(absolute).toString()
+                    : root.relativize(path).toString();
+            for (MatchPattern exclude : excludes) {
+                if (exclude.matchPath(relativePath, true))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Splits the pattern into the directory to scan and the pattern to apply
+     * within it.
+     */
+    private String[] splitPattern(String antLikePattern) {
         int minPatternIndex = HarvestUtils.calculateMinimumPatternIndex(antLikePattern);
 
         int lastSlashBeforePatternSymbol = antLikePattern.lastIndexOf('/', minPatternIndex);
@@ -37,24 +238,19 @@ public class SourceFileNameHarvester implements NameHarvester {
             baseDirectory += antLikePattern.substring(0, maxSlashIndex + 1);
             if (maxSlashIndex + 1 < antLikePattern.length())
                 patternString = antLikePattern.substring(maxSlashIndex + 1);
-        } else 
+        } else
             patternString = antLikePattern;
+        return new String[] { baseDirectory, patternString };
+    }
 
-        // pattern that we need to expand.
-        DirectoryScanner scanner = new DirectoryScanner();
-        scanner.setBasedir(baseDirectory);
-        scanner.setCaseSensitive(true);
-        scanner.setIncludes(new String[] { patternString });
-
-        scanner.scan();
-
-        String[] includedFiles = scanner.getIncludedFiles();
-        LinkedHashSet<String> result = new LinkedHashSet<String>();
-        File bDir = scanner.getBasedir();
-        for (String iF : includedFiles) {
-            File tmp = new File(bDir, iF);
-            result.add(tmp.getAbsolutePath());
-        }
-        return result;
+    /**
+     * Normalizes separators the same way DirectoryScanner does for its
+     * includes, a trailing separator meaning everything below.
+     */
+    private static String normalizePattern(String pattern) {
+        String normalized = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (normalized.endsWith(File.separator))
+            normalized += "**";
+        return normalized;
     }
 }
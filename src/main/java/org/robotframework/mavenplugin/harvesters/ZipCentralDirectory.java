@@ -0,0 +1,333 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.JarFile;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads entry names straight from the central directory of a zip or jar file.
+ * <p></p>
+ * Only the central directory is memory mapped; no entry is inflated and no
+ * object is created per entry. Names are handed out as a reused
+ * {@link CharSequence} view over the mapped bytes, so that they can be matched
+ * before deciding to turn them into strings. The mapping is released by the
+ * garbage collector, never eagerly, as unmapping memory that a name still
+ * points into would crash the JVM.
+ */
+final class ZipCentralDirectory implements Closeable {
+
+    /**
+     * Receives the entry names. The name is only valid during the call.
+     */
+    interface NameVisitor {
+        void visit(CharSequence name);
+    }
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+
+    private static final int EOCD_SIZE = 22;
+
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+    private static final byte[] MANIFEST_NAME = JarFile.MANIFEST_NAME.getBytes(StandardCharsets.US_ASCII);
+
+    private final RandomAccessFile file;
+
+    private final MappedByteBuffer centralDirectory;
+
+    private volatile boolean closed;
+
+    private ZipCentralDirectory(RandomAccessFile file, MappedByteBuffer centralDirectory) {
+        this.file = file;
+        this.centralDirectory = centralDirectory;
+    }
+
+    /**
+     * Maps the central directory of a zip file.
+     *
+     * @param zip file to read
+     * @return the central directory, or <code>null</code> if the file is not
+     *         a zip file this reader understands
+     * @throws IOException if the file cannot be read
+     */
+    static ZipCentralDirectory open(File zip) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(zip, "r");
+        boolean opened = false;
+        try {
+            FileChannel channel = file.getChannel();
+            long length = channel.size();
+            if (length < EOCD_SIZE)
+                return null;
+
+            // Nearly all jars have no comment, so the end record is the last
+            // bytes; only otherwise read as far back as a comment can reach.
+            int tailLength = EOCD_SIZE;
+            ByteBuffer tail = read(channel, length - tailLength, tailLength);
+            int eocd = findEndOfCentralDirectory(tail);
+            if (eocd < 0) {
+                tailLength = (int) Math.min(length, EOCD_SIZE + MAX_COMMENT_LENGTH);
+                tail = read(channel, length - tailLength, tailLength);
+                eocd = findEndOfCentralDirectory(tail);
+                if (eocd < 0)
+                    return null;
+            }
+
+            long entries = tail.getShort(eocd + 10) & 0xFFFF;
+            long size = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+            long offset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+            if (entries == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+                // Zip64, the real values are in the zip64 end record.
+                long locator = length - tailLength + eocd - ZIP64_LOCATOR_SIZE;
+                if (locator < 0)
+                    return null;
+                ByteBuffer buffer = read(channel, locator, ZIP64_LOCATOR_SIZE);
+                if (buffer.getInt(0) != ZIP64_LOCATOR_SIGNATURE)
+                    return null;
+                long zip64Eocd = buffer.getLong(8);
+                buffer = read(channel, zip64Eocd, 56);
+                if (buffer.getInt(0) != ZIP64_EOCD_SIGNATURE)
+                    return null;
+                size = buffer.getLong(40);
+                offset = buffer.getLong(48);
+            }
+            if (offset < 0 || size < 0 || size > Integer.MAX_VALUE || offset + size > length)
+                return null;
+
+            MappedByteBuffer centralDirectory = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            centralDirectory.order(ByteOrder.LITTLE_ENDIAN);
+            if (size > 0 && centralDirectory.getInt(0) != CENTRAL_HEADER_SIGNATURE)
+                return null;
+            opened = true;
+            return new ZipCentralDirectory(file, centralDirectory);
+        } finally {
+            if (!opened)
+                file.close();
+        }
+    }
+
+    /**
+     * Visits the names of all file entries, skipping directories and the jar
+     * manifest.
+     *
+     * @param visitor visitor to call for each name
+     * @throws IOException if the central directory is malformed
+     */
+    void forEachName(NameVisitor visitor) throws IOException {
+        checkOpen();
+        EntryName name = new EntryName(centralDirectory);
+        int position = 0;
+        int limit = centralDirectory.limit();
+        while (position + CENTRAL_HEADER_SIZE <= limit) {
+            if (centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE)
+                throw new IOException("Invalid central directory header at " + position);
+            int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+            int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+            int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+            int nameOffset = position + CENTRAL_HEADER_SIZE;
+            if (nameOffset + nameLength > limit)
+                throw new IOException("Truncated central directory");
+
+            boolean directory = nameLength > 0 && centralDirectory.get(nameOffset + nameLength - 1) == '/';
+            if (!directory && !isManifest(nameOffset, nameLength)) {
+                name.reset(nameOffset, nameLength);
+                visitor.visit(name);
+            }
+            position = nameOffset + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * Reads the jar manifest. This is the only entry ever inflated.
+     *
+     * @return manifest bytes, or <code>null</code> if there is no manifest
+     * @throws IOException if the manifest cannot be read
+     */
+    byte[] readManifest() throws IOException {
+        checkOpen();
+        int position = 0;
+        int limit = centralDirectory.limit();
+        while (position + CENTRAL_HEADER_SIZE <= limit) {
+            if (centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE)
+                throw new IOException("Invalid central directory header at " + position);
+            int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+            int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+            int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+            if (isManifest(position + CENTRAL_HEADER_SIZE, nameLength)) {
+                int method = centralDirectory.getShort(position + 10) & 0xFFFF;
+                long compressedSize = centralDirectory.getInt(position + 20) & 0xFFFFFFFFL;
+                long uncompressedSize = centralDirectory.getInt(position + 24) & 0xFFFFFFFFL;
+                long localHeader = centralDirectory.getInt(position + 42) & 0xFFFFFFFFL;
+                if (compressedSize == 0xFFFFFFFFL || uncompressedSize == 0xFFFFFFFFL || localHeader == 0xFFFFFFFFL)
+                    throw new IOException("Zip64 manifest entries are not supported");
+                return readEntry(localHeader, method, (int) compressedSize, (int) uncompressedSize);
+            }
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return null;
+    }
+
+    /**
+     * Closes the file. The mapping is left to the garbage collector, so that a
+     * name still referenced can never touch unmapped memory; the central
+     * directory itself can no longer be read.
+     */
+    public void close() throws IOException {
+        closed = true;
+        file.close();
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed)
+            throw new IOException("Central directory is closed");
+    }
+
+    private byte[] readEntry(long localHeader, int method, int compressedSize, int uncompressedSize)
+            throws IOException {
+        FileChannel channel = file.getChannel();
+        ByteBuffer header = read(channel, localHeader, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE)
+            throw new IOException("Invalid local header at " + localHeader);
+        long dataOffset = localHeader + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF)
+                + (header.getShort(28) & 0xFFFF);
+        byte[] data = new byte[compressedSize];
+        read(channel, dataOffset, compressedSize).get(data);
+        if (method == 0)
+            return data;
+        if (method != 8)
+            throw new IOException("Unsupported compression method " + method);
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(uncompressedSize, 64));
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt manifest: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private boolean isManifest(int nameOffset, int nameLength) {
+        if (nameLength != MANIFEST_NAME.length)
+            return false;
+        for (int i = 0; i < nameLength; i++) {
+            byte b = centralDirectory.get(nameOffset + i);
+            byte m = MANIFEST_NAME[i];
+            // Jar files match the manifest name ignoring case.
+            if (b != m && Character.toUpperCase((char) b) != m)
+                return false;
+        }
+        return true;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        for (int position = tail.limit() - EOCD_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == EOCD_SIGNATURE
+                    && position + EOCD_SIZE + (tail.getShort(position + 20) & 0xFFFF) == tail.limit())
+                return position;
+        }
+        return -1;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * View of an entry name in the mapped central directory. Names are UTF-8;
+     * ASCII names, which is nearly all class path entries, are read in place,
+     * others are decoded once.
+     */
+    private static final class EntryName implements CharSequence {
+
+        private final ByteBuffer buffer;
+
+        private int offset;
+
+        private int length;
+
+        private String decoded;
+
+        EntryName(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void reset(int nameOffset, int nameLength) {
+            offset = nameOffset;
+            length = nameLength;
+            decoded = null;
+            for (int i = 0; i < nameLength; i++) {
+                if (buffer.get(nameOffset + i) < 0) {
+                    decoded = decode();
+                    break;
+                }
+            }
+        }
+
+        public int length() {
+            return decoded != null ? decoded.length() : length;
+        }
+
+        public char charAt(int index) {
+            if (decoded != null)
+                return decoded.charAt(index);
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            return (char) buffer.get(offset + index);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return decoded != null ? decoded : decode();
+        }
+
+        private String decode() {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = buffer.get(offset + i);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
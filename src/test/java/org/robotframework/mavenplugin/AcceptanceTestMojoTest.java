@@ -5,11 +5,13 @@ import static org.hamcrest.Matchers.hasXPath;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -37,6 +39,58 @@ public class AcceptanceTestMojoTest
         assertThat(xunit, hasXPath("/testsuite[@tests='2']"));
     }
 
+    public void testShouldCompressOutput()
+            throws Exception {
+        File outputDirectory = getTestFile("target/robotframework-reports/compressed");
+        FileUtils.deleteDirectory(outputDirectory);
+        File pom = getTestFile("src/test/resources/pom-success-compressed.xml");
+        AcceptanceTestMojo mojo = (AcceptanceTestMojo) lookupMojo("acceptance-test", pom);
+        mojo.execute();
+
+        assertFalse(new File(outputDirectory, "output.xml").exists());
+        File compressed = new File(outputDirectory, "output.xml.gz");
+        assertTrue("missing compressed output " + compressed, compressed.exists());
+        InputStream in = CompressedOutputs.open(compressed);
+        try {
+            Document output = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+            assertThat(output, hasXPath("/robot/statistics/total/stat[2][@pass='2']"));
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testShouldExcludeQuarantinedTests()
+            throws Exception {
+        File outputDirectory = getTestFile("target/robotframework-reports/quarantine");
+        FileUtils.deleteDirectory(outputDirectory);
+        File quarantine = getTestFile("target/robotframework/quarantine-test.txt");
+        FileUtils.writeStringToFile(quarantine, "# changed status 3 times in 10 runs\n"
+                + "Renamed.successfulTest.Successful Test\n", "UTF-8");
+        File pom = getTestFile("src/test/resources/pom-success-quarantine.xml");
+        AcceptanceTestMojo mojo = (AcceptanceTestMojo) lookupMojo("acceptance-test", pom);
+        mojo.execute();
+
+        Document xunit = parseDocument(new File(outputDirectory, "TEST-robot-success.xml"));
+        assertThat(xunit, hasXPath("/testsuite[@tests='1']"));
+        assertThat(xunit, hasXPath("/testsuite/testcase[@name='Successful Test Negatives']"));
+    }
+
+    public void testShouldRunOnlyQuarantinedTestsMatchingIncludes()
+            throws Exception {
+        File outputDirectory = getTestFile("target/robotframework-reports/quarantine-only");
+        FileUtils.deleteDirectory(outputDirectory);
+        File quarantine = getTestFile("target/robotframework/quarantine-only-test.txt");
+        FileUtils.writeStringToFile(quarantine, "Renamed.successfulTest.Successful Test\n", "UTF-8");
+        File pom = getTestFile("src/test/resources/pom-success-quarantine-only.xml");
+        AcceptanceTestMojo mojo = (AcceptanceTestMojo) lookupMojo("acceptance-test", pom);
+        mojo.execute();
+
+        // Both tests are tagged success, only one is quarantined.
+        Document xunit = parseDocument(new File(outputDirectory, "TEST-robot-success.xml"));
+        assertThat(xunit, hasXPath("/testsuite[@tests='1']"));
+        assertThat(xunit, hasXPath("/testsuite/testcase[@name='Successful Test']"));
+    }
+
     public void testShouldFail()
             throws Exception {
         File pom = getTestFile("src/test/resources/pom-fail.xml");
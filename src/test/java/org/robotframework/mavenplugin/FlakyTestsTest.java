@@ -0,0 +1,119 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+
+public class FlakyTestsTest
+        extends TestCase {
+
+    private static final String MERGED = "*HTML* <span class=\"merge\">Test has been re-executed and results "
+            + "merged.</span><hr><span class=\"new-status\">New status:</span> <span class=\"pass\">PASS</span><hr>"
+            + "<span class=\"old-status\">Old status:</span> <span class=\"fail\">FAIL</span><br>"
+            + "<span class=\"old-message\">Old message:</span> 1 != 2";
+
+    private final File workingDirectory = new File("target/robotframework/flaky-tests-test");
+
+    protected void setUp()
+            throws Exception {
+        FileUtils.deleteDirectory(workingDirectory);
+        assertTrue(workingDirectory.mkdirs());
+    }
+
+    private File output(String name, String generated, String... statuses)
+            throws Exception {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<robot generator=\"Robot 3.2.2 (Jython 2.7.2 on java1.8.0)\" generated=\"" + generated
+                + "\" rpa=\"false\">\n<suite id=\"s1\" name=\"Root\">\n<suite id=\"s1-s1\" name=\"Sub\">\n");
+        for (int i = 0; i < statuses.length; i++) {
+            String status = statuses[i];
+            String message = "";
+            if (status.equals("MERGED")) {
+                status = "PASS";
+                message = MERGED.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                        .replace("\"", "&quot;");
+            }
+            xml.append("<test id=\"s1-s1-t" + (i + 1) + "\" name=\"Test " + (i + 1) + "\">\n");
+            xml.append("<kw name=\"Log\">\n<status status=\"FAIL\"></status>\n</kw>\n");
+            xml.append("<status status=\"" + status + "\" critical=\"yes\">" + message + "</status>\n</test>\n");
+        }
+        xml.append("<status status=\"PASS\"></status>\n</suite>\n<status status=\"PASS\"></status>\n</suite>\n");
+        xml.append("<statistics>\n<suite>\n<stat pass=\"1\" fail=\"0\" id=\"s1\" name=\"Root\">Root</stat>\n"
+                + "</suite>\n</statistics>\n<errors>\n</errors>\n</robot>\n");
+        File output = new File(workingDirectory, name);
+        FileUtils.writeStringToFile(output, xml.toString(), "UTF-8");
+        return output;
+    }
+
+    public void testTestsChangingStatusBackAndForthAreFlaky()
+            throws Exception {
+        // Test 1 flips three times, test 2 breaks once, test 3 is fixed once.
+        List<File> outputs = Arrays.asList(
+                output("output-c.xml", "20201010 10:00:02.000", "PASS", "FAIL", "FAIL"),
+                output("output-a.xml", "20201010 10:00:00.000", "PASS", "PASS", "FAIL"),
+                output("output-d.xml", "20201010 10:00:03.000", "FAIL", "FAIL", "PASS"),
+                output("output-b.xml", "20201010 10:00:01.000", "FAIL", "PASS", "FAIL"));
+        FlakyTests tests = new FlakyTests(2);
+        List<File> read = tests.read(outputs, 0);
+
+        assertEquals(Arrays.asList(outputs.get(1), outputs.get(3), outputs.get(0), outputs.get(2)), read);
+        Map<String, String> flaky = tests.flaky();
+        assertEquals(1, flaky.size());
+        assertEquals("changed status 3 times in 4 runs", flaky.get("Root.Sub.Test 1"));
+        assertEquals(3, tests.tests());
+    }
+
+    public void testOnlyTheLatestRunsAreRead()
+            throws Exception {
+        List<File> outputs = Arrays.asList(
+                output("output-a.xml", "20201010 10:00:00.000", "FAIL"),
+                output("output-b.xml", "20201010 10:00:01.000", "PASS"),
+                output("output-c.xml", "20201010 10:00:02.000", "FAIL"),
+                output("output-d.xml", "20201010 10:00:03.000", "FAIL"));
+        FlakyTests tests = new FlakyTests(2);
+        tests.read(outputs, 2);
+
+        assertEquals(2, tests.runs());
+        assertTrue(tests.flaky().isEmpty());
+    }
+
+    public void testTestsPassingOnRerunAreFlaky()
+            throws Exception {
+        File output = output("output.xml", "20201010 10:00:00.000", "PASS", "MERGED");
+        File compressed = CompressedOutputs.compress(output);
+        FlakyTests tests = new FlakyTests(0);
+        tests.read(Arrays.asList(compressed), 10);
+
+        assertEquals("passed on rerun 1 of 1 runs", tests.flaky().get("Root.Sub.Test 2"));
+        assertEquals(1, tests.flaky().size());
+    }
+
+    public void testQuarantineIsWrittenAndRead()
+            throws Exception {
+        File file = new File(workingDirectory, "quarantine.txt");
+        FlakyTests tests = new FlakyTests(1);
+        tests.read(Arrays.asList(output("output-a.xml", "20201010 10:00:00.000", "PASS"),
+                output("output-b.xml", "20201010 10:00:01.000", "FAIL")), 0);
+        Quarantine.write(file, tests.flaky());
+
+        assertEquals(Arrays.asList("Root.Sub.Test 1"), Quarantine.read(file));
+        assertTrue(Quarantine.read(new File(workingDirectory, "missing.txt")).isEmpty());
+    }
+
+    public void testOnlyQuarantinedIsCombinedWithIncludes() {
+        assertEquals(Arrays.asList("quarantined"), Quarantine.onlyQuarantined(null));
+        assertEquals(Arrays.asList("quarantinedANDsmoke", "quarantinedANDaORquarantinedANDbNOTc", "quarantinedNOTslow"),
+                Quarantine.onlyQuarantined(Arrays.asList("smoke", "aORbNOTc", "NOTslow")));
+    }
+
+        public void testModifierNamesArePythonLiterals() {
+        assertEquals("u'Suite.It\\'s a \\\\ test \\u00e4'", Quarantine.literal("Suite.It's a \\ test ä"));
+    }
+}
@@ -0,0 +1,66 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.hsqldb.jdbc.JDBCDriver;
+
+public class IndexResultsMojoTest
+        extends AbstractMojoTestCase {
+
+    private final File outputDirectory = getTestFile("target/robotframework-reports/index-results");
+
+    private final File database = getTestFile("target/robotframework-results/results");
+
+    protected void setUp()
+            throws Exception {
+        super.setUp();
+        FileUtils.deleteDirectory(outputDirectory);
+        FileUtils.deleteDirectory(database.getParentFile());
+        FileUtils.copyDirectory(getTestFile("src/test/resources/output-for-rebot"), outputDirectory);
+    }
+
+    public void testOutputsAreIndexedOnce()
+            throws Exception {
+        File pom = getTestFile("src/test/resources/pom-index-results.xml");
+        lookupMojo("index-results", pom).execute();
+        // A compressed output added later.
+        File compressed = new File(outputDirectory, "output-rebot-20181115-081429.xml");
+        FileUtils.copyFile(new File(outputDirectory, "output-rebot-20181115-081428.xml"), compressed);
+        CompressedOutputs.compress(compressed);
+        lookupMojo("index-results", pom).execute();
+
+        assertEquals(3, count("SELECT COUNT(*) FROM runs"));
+        assertEquals(6, count("SELECT COUNT(*) FROM tests WHERE status = 'PASS'"));
+        assertEquals(6, count("SELECT COUNT(*) FROM test_tags WHERE tag = 'success'"));
+        assertEquals(3, count("SELECT COUNT(*) FROM tests WHERE longname = "
+                + "'Robot-Success.successfulTest.Successful Test'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM tests WHERE elapsed IS NULL OR elapsed < 0"));
+        assertTrue(count("SELECT COUNT(*) FROM keywords WHERE test_id IS NOT NULL") > 0);
+        assertEquals(0, count("SELECT COUNT(*) FROM keywords k WHERE parent_id IS NOT NULL AND NOT EXISTS "
+                + "(SELECT 1 FROM keywords p WHERE p.run_id = k.run_id AND p.id = k.parent_id)"));
+    }
+
+    private long count(String sql)
+            throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", "SA");
+        properties.setProperty("password", "");
+        Connection connection = new JDBCDriver().connect(
+                "jdbc:hsqldb:file:" + database.getAbsolutePath() + ";shutdown=true", properties);
+        try {
+            Statement statement = connection.createStatement();
+            ResultSet result = statement.executeQuery(sql);
+            result.next();
+            return result.getLong(1);
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.w3c.dom.Document;
+
+
+public class JavaLibrarySpecTest
+        extends TestCase {
+
+    private final File output = new File("target/robotframework/java-library-spec/spec.xml");
+
+    protected void setUp()
+            throws Exception {
+        FileUtils.deleteDirectory(output.getParentFile());
+        assertTrue(output.getParentFile().mkdirs());
+    }
+
+    public void testKeywordNamesFollowRobotFramework() {
+        assertEquals("My Keyword", JavaLibrarySpec.printableName("myKeyword"));
+        assertEquals("Get HTTP Status 2", JavaLibrarySpec.printableName("getHTTPStatus2"));
+        assertEquals("My Keyword", JavaLibrarySpec.printableName("my_keyword"));
+        assertEquals("Keyword", JavaLibrarySpec.printableName("keyword"));
+    }
+
+    public void testDocumentationFromJavadoc()
+            throws Exception {
+        JavaLibrarySpec spec = JavaLibrarySpec.reflect(ExampleLib.class,
+                JavadocComments.find(Collections.singletonList(new File("src/test/java")), ExampleLib.class));
+        String xml = write(spec);
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<keywordspec format=\"ROBOT\" type=\"LIBRARY\" generated=\"\" scope=\"TEST\""
+                + " name=\"org.robotframework.mavenplugin.ExampleLib\" specversion=\"2\" namedargs=\"true\">\n"
+                + "<version></version>\n"
+                + "<scope>test case</scope>\n"
+                + "<namedargs>yes</namedargs>\n"
+                + "<doc>Library for demo purposes. This library is only used in an example and it does't do anything"
+                + " useful.</doc>\n"
+                + "<kw name=\"My Keyword\">\n<arguments>\n</arguments>\n<doc>Does nothing</doc>\n</kw>\n"
+                + "<kw name=\"Your Keyword\">\n<arguments>\n<arg>arg</arg>\n</arguments>\n"
+                + "<doc>Takes one argument and *does nothing* with it. Example: | Your Keyword | xxx | |"
+                + " Your Keyword | yyy |</doc>\n</kw>\n"
+                + "</keywordspec>\n", xml);
+    }
+
+    public void testArgumentsAndSettingsFollowRobotFramework()
+            throws Exception {
+        String xml = write(JavaLibrarySpec.reflect(FancyLib.class, null));
+        assertTrue(xml, xml.contains(" scope=\"GLOBAL\" "));
+        assertTrue(xml, xml.contains("<version>1.2</version>\n<scope>global</scope>"));
+        assertTrue(xml, xml.contains("<init>\n<arguments>\n<arg>arg1=</arg>\n<arg>arg2=</arg>\n</arguments>"));
+        assertTrue(xml, xml.contains("<kw name=\"Join All\">\n<arguments>\n<arg>arg1</arg>\n<arg>*varargs</arg>"));
+        assertTrue(xml, xml.contains("<kw name=\"List Arg\">\n<arguments>\n<arg>*varargs</arg>"));
+        assertTrue(xml, xml.contains("<arg>arg1</arg>\n<arg>*varargs</arg>\n<arg>**kwargs</arg>"));
+        assertTrue(xml, xml.contains("<kw name=\"Overloaded\">\n<arguments>\n<arg>arg1</arg>\n<arg>arg2=</arg>"));
+        assertTrue(xml, xml.contains("<kw name=\"Base Keyword\">"));
+        assertFalse(xml, xml.contains("To String"));
+        assertTrue(xml, xml.indexOf("Base Keyword") < xml.indexOf("Join All"));
+    }
+
+    public void testTagsAreSplitFromDocumentation() {
+        JavadocComments comments = JavadocComments.parse("/** Lib. */ public class TaggedLib {\n"
+                + "    /**\n     * Does it.\n     *\n     * Tags: smoke, Fast , smoke\n     */\n"
+                + "    public void doIt(final String... values) {}\n}", "TaggedLib");
+        JavadocComments.Declaration declaration = comments.find("doIt", new Class<?>[] { String[].class });
+        assertEquals(Collections.singletonList("values"), declaration.getParameterNames());
+        assertEquals("Does it.\n\nTags: smoke, Fast , smoke", declaration.getDoc());
+        assertEquals("Lib.", comments.getClassDoc());
+    }
+
+    public void testDynamicLibrariesAreLeftForLibdoc() {
+        assertNull(JavaLibrarySpec.reflect(DynamicLib.class, null));
+    }
+
+    public void testInvalidXmlCharactersAreReplaced()
+            throws Exception {
+        JavaLibrarySpec spec = JavaLibrarySpec.reflect(FancyLib.class, null);
+        spec.setName("Fancy\u0001<Lib> & \"\uD83D\uDE00\"");
+        spec.setVersion("1\u0000.2\uDC00");
+        String xml = write(spec);
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(output);
+        assertEquals("Fancy\uFFFD<Lib> & \"\uD83D\uDE00\"", document.getDocumentElement().getAttribute("name"));
+        assertTrue(xml, xml.contains("<version>1\uFFFD.2\uFFFD</version>"));
+    }
+
+    private String write(JavaLibrarySpec spec)
+            throws IOException {
+        assertNotNull(spec);
+        spec.write(output);
+        return FileUtils.readFileToString(output, StandardCharsets.UTF_8).replaceFirst("generated=\"[^\"]*\"",
+                "generated=\"\"");
+    }
+
+    public static class BaseLib {
+        public void baseKeyword() {
+        }
+    }
+
+    public static class FancyLib
+            extends BaseLib {
+        public static final String ROBOT_LIBRARY_SCOPE = "GLOBAL";
+        public static final String ROBOT_LIBRARY_VERSION = "1.2";
+
+        public FancyLib() {
+        }
+
+        public FancyLib(String host, int port) {
+        }
+
+        public String joinAll(String separator, String... parts) {
+            return "";
+        }
+
+        public void listArg(List<String> values) {
+        }
+
+        public void withBoth(String a, String[] rest, Map<String, Object> kwargs) {
+        }
+
+        public void overloaded(String a) {
+        }
+
+        public void overloaded(String a, String b) {
+        }
+
+        @Override
+        public String toString() {
+            return "";
+        }
+    }
+
+    public static class DynamicLib {
+        public String[] getKeywordNames() {
+            return new String[0];
+        }
+
+        public Object runKeyword(String name, Object[] arguments) {
+            return null;
+        }
+    }
+}
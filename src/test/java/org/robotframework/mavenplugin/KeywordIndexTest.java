@@ -0,0 +1,88 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+
+public class KeywordIndexTest
+        extends TestCase {
+
+    private static final String HTML = "<html><script type=\"text/javascript\">\n"
+            + "libdoc = {\"doc\":\"<p>Lib\\x3c/p>\",\"keywords\":[{\"args\":[\"arg\",\"*rest\"],"
+            + "\"doc\":\"<p>Does <b>it\\x3c/b>\\x3c/p>\",\"name\":\"Do It\",\"shortdoc\":\"Does it\",\"tags\":[]}],"
+            + "\"name\":\"HtmlLib\",\"named_args\":true,\"version\":\"1.0\"};\n</script></html>";
+
+    private static final String SPEC = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<keywordspec format=\"ROBOT\" type=\"LIBRARY\" name=\"SpecLib\" specversion=\"2\">\n"
+            + "<doc>Library</doc>\n<init>\n<arguments>\n<arg>host</arg>\n</arguments>\n<doc>Init</doc>\n</init>\n"
+            + "<kw name=\"First\">\n<arguments>\n<arg>a</arg>\n<arg>b=1</arg>\n</arguments>\n"
+            + "<doc>First line.\nSecond &lt;line&gt;.</doc>\n</kw>\n"
+            + "<kw name=\"Second\">\n<arguments>\n</arguments>\n<doc></doc>\n</kw>\n</keywordspec>\n";
+
+    private final File outputDirectory = new File("target/robotframework/keyword-index-test");
+
+    private final File keywordsFile = new File(outputDirectory, "keyword-index/keywords.js");
+
+    protected void setUp()
+            throws Exception {
+        FileUtils.deleteDirectory(outputDirectory);
+        assertTrue(outputDirectory.mkdirs());
+        FileUtils.writeStringToFile(new File(outputDirectory, "HtmlLib.html"), HTML, "UTF-8");
+        FileUtils.writeStringToFile(new File(outputDirectory, "SpecLib.xml"), SPEC, "UTF-8");
+        FileUtils.writeStringToFile(new File(outputDirectory, "notes.html"), "<html></html>", "UTF-8");
+    }
+
+    public void testIndexHoldsShortDocsAndLoadsFullDocsLazily()
+            throws Exception {
+        KeywordIndex index = new KeywordIndex(outputDirectory);
+        assertTrue(index.update().isFile());
+        assertEquals(2, index.getLibraries());
+        assertEquals(3, index.getKeywords());
+
+        String keywords = FileUtils.readFileToString(keywordsFile, "UTF-8");
+        assertTrue(keywords, keywords.contains("[\"Do It\",\"arg, *rest\",\"Does it\"]"));
+        assertTrue(keywords, keywords.contains("[\"First\",\"a, b=1\",\"First line.\"]"));
+        assertFalse(keywords, keywords.contains("Second \\u003cline"));
+        assertFalse(keywords, keywords.contains("host"));
+
+        String docs = FileUtils.readFileToString(new File(outputDirectory, "keyword-index/docs/SpecLib.xml.js"),
+                "UTF-8");
+        assertTrue(docs, docs.contains("[\"ROBOT\",\"First line.\\u000aSecond \\u003cline\\u003e.\"]"));
+    }
+
+    public void testOnlyChangedOutputsAreReadAgain()
+            throws Exception {
+        new KeywordIndex(outputDirectory).update();
+        File part = new File(outputDirectory, "keyword-index/parts/HtmlLib.html.js");
+        long settled = System.currentTimeMillis() - 60000;
+        assertTrue(part.setLastModified(settled));
+
+        FileUtils.writeStringToFile(new File(outputDirectory, "SpecLib.xml"), SPEC.replace("Second", "Third"),
+                "UTF-8");
+        KeywordIndex index = new KeywordIndex(outputDirectory);
+        index.update();
+        assertEquals(settled, part.lastModified());
+        assertTrue(FileUtils.readFileToString(keywordsFile, "UTF-8").contains("\"Third\""));
+
+        assertTrue(new File(outputDirectory, "HtmlLib.html").delete());
+        index = new KeywordIndex(outputDirectory);
+        index.update();
+        assertEquals(1, index.getLibraries());
+        assertFalse(part.exists());
+    }
+
+    public void testJsonWithJavaScriptEscapes()
+            throws Exception {
+        String text = "x = {\"a\":[1,2.5,true,null,\"\\x3c/b>\\u00e4\\n\"],\"b\":{}};";
+        Map<?, ?> value = (Map<?, ?>) JsonReader.read(text, 4);
+        List<Object> expected = Arrays.<Object>asList(1L, 2.5, true, null, "</b>\u00e4\n");
+        assertEquals(expected, value.get("a"));
+        assertTrue(((Map<?, ?>) value.get("b")).isEmpty());
+    }
+}
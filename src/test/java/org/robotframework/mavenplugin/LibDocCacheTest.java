@@ -0,0 +1,99 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+
+public class LibDocCacheTest
+        extends TestCase {
+
+    private final File workingDirectory = new File("target/robotframework/libdoc-cache-test");
+
+    private final File repository = new File(workingDirectory, "repository");
+
+    private final File cacheDirectory = new File(workingDirectory, "cache");
+
+    private final File jar = new File(repository, "com/acme/keywords/1.0/keywords-1.0.jar");
+
+    protected void setUp()
+            throws Exception {
+        FileUtils.deleteDirectory(workingDirectory);
+        assertTrue(jar.getParentFile().mkdirs());
+        writeJar("first");
+    }
+
+    public void testEntryIsSharedBetweenProjects()
+            throws Exception {
+        LibDocCache cache = new LibDocCache(cacheDirectory, repository, "imported");
+        File entry = cache.entry(arguments("project-a", "a/target/libdoc/Lib.html"), inputs());
+        File sameEntry = cache.entry(arguments("project-b", "b/target/libdoc/Lib.html"), inputs());
+        assertNotNull(entry);
+        assertEquals(entry, sameEntry);
+        assertEquals(new File(cacheDirectory, "com/acme/keywords/1.0").getAbsolutePath(),
+                entry.getParentFile().getAbsolutePath());
+        assertTrue(entry.getName().endsWith(".html"));
+
+        File generated = new File(workingDirectory, "generated.html");
+        FileUtils.writeStringToFile(generated, "documentation", "UTF-8");
+        File restored = new File(workingDirectory, "restored.html");
+        assertFalse(cache.restore(entry, restored));
+        cache.store(entry, generated);
+        assertTrue(cache.restore(sameEntry, restored));
+        assertEquals("documentation", FileUtils.readFileToString(restored, "UTF-8"));
+    }
+
+    public void testEntryChangesWithJarAndOptions()
+            throws Exception {
+        File entry = new LibDocCache(cacheDirectory, repository, "imported").entry(
+                arguments("project", "Lib.html"), inputs());
+        assertFalse(entry.equals(new LibDocCache(cacheDirectory, repository, "reflected").entry(
+                arguments("project", "Lib.html"), inputs())));
+        assertFalse(entry.equals(new LibDocCache(cacheDirectory, repository, "imported").entry(
+                new String[] { "libdoc", "--version", "2", "com.acme.Lib", "Lib.html" }, inputs())));
+        writeJar("second");
+        assertFalse(entry.equals(new LibDocCache(cacheDirectory, repository, "imported").entry(
+                arguments("project", "Lib.html"), inputs())));
+    }
+
+    public void testProjectLibrariesAreNotCached()
+            throws Exception {
+        LibDocCache cache = new LibDocCache(cacheDirectory, new File(workingDirectory, "elsewhere"), "imported");
+        assertNull(cache.entry(arguments("project", "Lib.html"), inputs()));
+        File source = new File(workingDirectory, "Lib.java");
+        assertTrue(source.createNewFile());
+        assertNull(cache.entry(arguments("project", "Lib.html"),
+                Collections.singletonList(source.toURI().toURL())));
+    }
+
+    private static String[] arguments(String project, String output) {
+        return new String[] { "libdoc", "--pythonpath", project + "/src/test/resources/robotframework/libraries",
+                "com.acme.Lib", output };
+    }
+
+    private List<URL> inputs()
+            throws IOException {
+        return Collections.singletonList(new URL("jar:" + jar.toURI().toURL() + "!/com/acme/Lib.class"));
+    }
+
+    private void writeJar(String content)
+            throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new JarEntry("com/acme/Lib.class"));
+            out.write(content.getBytes("UTF-8"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+    }
+}
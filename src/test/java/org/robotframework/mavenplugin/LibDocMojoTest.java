@@ -1,6 +1,10 @@
 package org.robotframework.mavenplugin;
 
 import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
 
 
 public class LibDocMojoTest
@@ -57,4 +61,103 @@ public class LibDocMojoTest
         assertTrue(javalibLibDoc + " not found", new File(javalibLibDoc).exists());
 
     }
+
+    public void testLibDocForMultiplePatterns()
+            throws Exception {
+        File multipleOutputDirectory = new File("target/robotframework/libdoc-multiple");
+        FileUtils.deleteDirectory(multipleOutputDirectory);
+        executeLibdocWithPom("libdoc", "src/test/resources/pom-libdoc-multiple.xml");
+        String[] outputs = multipleOutputDirectory.list();
+        assertNotNull(multipleOutputDirectory + " not found", outputs);
+        assertEquals(2, outputs.length);
+    }
+
+    public void testLibDocInParallel()
+            throws Exception {
+        File parallelOutputDirectory = new File("target/robotframework/libdoc-parallel");
+        FileUtils.deleteDirectory(parallelOutputDirectory);
+        executeLibdocWithPom("libdoc", "src/test/resources/pom-libdoc-parallel.xml");
+        String[] outputs = parallelOutputDirectory.list();
+        assertNotNull(parallelOutputDirectory + " not found", outputs);
+        assertEquals(2, outputs.length);
+    }
+
+    public void testLibDocInBatch()
+            throws Exception {
+        assertSameOutputsAsParallel("libdoc-batch");
+    }
+
+    public void testLibDocInParallelBatches()
+            throws Exception {
+        assertSameOutputsAsParallel("libdoc-batch-parallel");
+    }
+
+    private void assertSameOutputsAsParallel(String name)
+            throws Exception {
+        File batchOutputDirectory = new File("target/robotframework/" + name);
+        FileUtils.deleteDirectory(batchOutputDirectory);
+        executeLibdocWithPom("libdoc", "src/test/resources/pom-" + name + ".xml");
+        String[] outputs = batchOutputDirectory.list();
+        assertNotNull(batchOutputDirectory + " not found", outputs);
+        Arrays.sort(outputs);
+        File parallelOutputDirectory = new File("target/robotframework/libdoc-parallel");
+        if (!parallelOutputDirectory.isDirectory())
+            executeLibdocWithPom("libdoc", "src/test/resources/pom-libdoc-parallel.xml");
+        String[] expected = parallelOutputDirectory.list();
+        Arrays.sort(expected);
+        assertEquals(Arrays.asList(expected), Arrays.asList(outputs));
+    }
+
+    public void testJavaLibrariesDocumentedByReflection()
+            throws Exception {
+        File reflectedOutputDirectory = new File("target/robotframework/libdoc-reflected");
+        FileUtils.deleteDirectory(reflectedOutputDirectory);
+        executeLibdocWithPom("libdoc", "src/test/resources/pom-libdoc-reflected.xml");
+        String[] outputs = reflectedOutputDirectory.list();
+        assertNotNull(reflectedOutputDirectory + " not found", outputs);
+        Arrays.sort(outputs);
+        assertEquals(Arrays.asList("keyword-index", "org_robotframework_mavenplugin_ExampleLib.html",
+                "src_test_resources_robot-libdoc-folder-only_html_resource_robot.html"), Arrays.asList(outputs));
+        // Rendered from the spec, with the documentation from the source.
+        String html = FileUtils.readFileToString(new File(reflectedOutputDirectory, outputs[1]), "UTF-8");
+        assertTrue(html.contains("Library for demo purposes."));
+        String keywords = FileUtils.readFileToString(
+                new File(reflectedOutputDirectory, "keyword-index/keywords.js"), "UTF-8");
+        assertTrue(keywords, keywords.contains("\"Your Keyword\""));
+    }
+
+    public void testLibDocReportsFailuresAfterAllLibraries()
+            throws Exception {
+        File failingOutputDirectory = new File("target/robotframework/libdoc-failing");
+        FileUtils.deleteDirectory(failingOutputDirectory);
+        try {
+            executeLibdocWithPom("libdoc", "src/test/resources/pom-libdoc-failing.xml");
+            fail("Expected the missing library to fail the build");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("NoSuchLibrary"));
+        }
+        assertTrue(new File(failingOutputDirectory,
+                "src_test_java_org_robotframework_mavenplugin_ExampleLib_java.html").exists());
+    }
+
+    public void testIncrementalLibDocSkipsUpToDateLibraries()
+            throws Exception {
+        File incrementalOutputDirectory = new File("target/robotframework/libdoc-incremental");
+        FileUtils.deleteDirectory(incrementalOutputDirectory);
+        File javaLibDoc = new File(incrementalOutputDirectory,
+                "src_test_java_org_robotframework_mavenplugin_ExampleLib_java.html");
+        File resourceDoc = new File(incrementalOutputDirectory,
+                "src_test_resources_robot-libdoc-folder-only_html_resource_robot.html");
+
+        executeLibdocWithPom("libdoc", "src/test/resources/pom-libdoc-incremental.xml");
+        assertTrue(javaLibDoc.exists());
+        assertTrue(resourceDoc.exists());
+        long generated = System.currentTimeMillis() - 60000;
+        assertTrue(javaLibDoc.setLastModified(generated));
+        assertTrue(resourceDoc.delete());
+
+        executeLibdocWithPom("libdoc", "src/test/resources/pom-libdoc-incremental.xml");
+        assertEquals(generated, javaLibDoc.lastModified());
+        assertTrue(resourceDoc.exists());
+    }
 }
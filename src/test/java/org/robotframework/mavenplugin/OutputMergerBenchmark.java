@@ -0,0 +1,201 @@
+package org.robotframework.mavenplugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.robotframework.RobotFramework;
+
+/**
+ * Compares combining generated shard outputs with {@link OutputMerger}, on one
+ * thread and on all processors, and with <code>rebot</code>, all writing only
+ * the combined output. <code>incrementalMerge</code> folds the last shard
+ * into the others combined beforehand. Each shard
+ * has <code>suites</code> suites of <code>tests</code> tests with three logged
+ * keywords each; the defaults give about 12 MB per shard. Run with
+ * <code>-prof gc</code> and a small <code>-jvmArgs -Xmx</code> to compare memory
+ * use as well. Not run by the unit tests, see BUILD.md for how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class OutputMergerBenchmark {
+
+    @Param({ "16" })
+    public int shards;
+
+    @Param({ "50" })
+    public int suites;
+
+    @Param({ "200" })
+    public int tests;
+
+    private File directory;
+
+    private List<File> outputs;
+
+    private File target;
+
+    /** All shards but the last, combined. */
+    private File base;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("output-merge").toFile();
+        outputs = new ArrayList<File>();
+        for (int i = 1; i <= shards; i++) {
+            File output = new File(directory, "output-" + i + ".xml");
+            writeOutput(output, "Shard " + i, suites, tests);
+            outputs.add(output);
+        }
+        target = new File(directory, "merged.xml");
+        base = new File(directory, "base.xml");
+        new OutputMerger(outputs.subList(0, shards - 1)).merge(base);
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public long streamingMerge() throws IOException {
+        new OutputMerger(outputs).merge(target);
+        return target.length();
+    }
+
+    @Benchmark
+    public long parallelStreamingMerge() throws IOException {
+        new OutputMerger(outputs).merge(target, Runtime.getRuntime().availableProcessors());
+        return target.length();
+    }
+
+    @Benchmark
+    public long incrementalMerge() throws IOException {
+        new OutputMerger(base, shards - 1, outputs.subList(shards - 1, shards)).merge(target);
+        return target.length();
+    }
+
+    @Benchmark
+    public long rebot() {
+        List<String> args = new ArrayList<String>();
+        args.add("rebot");
+        args.add("--output");
+        args.add(target.getPath());
+        args.add("--log");
+        args.add("NONE");
+        args.add("--report");
+        args.add("NONE");
+        for (File output : outputs)
+            args.add(output.getPath());
+        RobotFramework.run(args.toArray(new String[args.size()]));
+        return target.length();
+    }
+
+    /**
+     * Writes a Robot Framework 3.2 output with the statistics Robot Framework
+     * would write for it. Every seventh test fails, every fifth test is not
+     * critical and the tests have one of three tags.
+     */
+    static void writeOutput(File file, String name, int suites, int tests) throws IOException {
+        String time = "20201010 10:00:00.000";
+        String status = " starttime=\"" + time + "\" endtime=\"20201010 10:00:01.000\"";
+        Map<String, long[]> tagStats = new TreeMap<String, long[]>();
+        long[] critical = new long[2];
+        long[] all = new long[2];
+        StringBuilder suiteStats = new StringBuilder();
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<robot generator=\"Robot 3.2.2 (Jython 2.7.2 on java1.8.0)\" generated=\"" + time
+                    + "\" rpa=\"false\">\n");
+            out.write("<suite id=\"s1\" name=\"" + name + "\" source=\"/tmp/" + name + "\">\n");
+            for (int s = 1; s <= suites; s++) {
+                String suiteId = "s1-s" + s;
+                long[] suite = new long[2];
+                out.write("<suite id=\"" + suiteId + "\" name=\"Suite " + s + "\" source=\"/tmp/" + name + "/suite_"
+                        + s + ".robot\">\n");
+                for (int t = 1; t <= tests; t++) {
+                    int index = (s - 1) * tests + t;
+                    boolean passed = index % 7 != 0;
+                    boolean isCritical = index % 5 != 0;
+                    String tag = "tag-" + index % 3;
+                    out.write("<test id=\"" + suiteId + "-t" + t + "\" name=\"Test " + t + "\">\n");
+                    for (int k = 1; k <= 3; k++) {
+                        out.write("<kw name=\"Log\" library=\"BuiltIn\">\n<doc>Logs the given message with the "
+                                + "given level.</doc>\n<arguments>\n<arg>Message " + k + " of test " + t
+                                + " &amp; more</arg>\n</arguments>\n<msg timestamp=\"" + time
+                                + "\" level=\"INFO\">Message " + k + " of test " + t + " &amp; more</msg>\n"
+                                + "<status status=\"PASS\"" + status + "></status>\n</kw>\n");
+                    }
+                    out.write("<tags>\n<tag>" + tag + "</tag>\n</tags>\n");
+                    out.write("<status status=\"" + (passed ? "PASS" : "FAIL") + "\"" + status + " critical=\""
+                            + (isCritical ? "yes" : "no") + "\">" + (passed ? "" : "Failure &lt;" + t + "&gt;")
+                            + "</status>\n</test>\n");
+                    int result = passed ? 0 : 1;
+                    suite[result]++;
+                    all[result]++;
+                    if (isCritical)
+                        critical[result]++;
+                    if (!tagStats.containsKey(tag))
+                        tagStats.put(tag, new long[2]);
+                    tagStats.get(tag)[result]++;
+                }
+                out.write("<status status=\"" + (suite[1] > 0 ? "FAIL" : "PASS") + "\"" + status + "></status>\n");
+                out.write("</suite>\n");
+                suiteStats.append("<stat pass=\"" + suite[0] + "\" fail=\"" + suite[1] + "\" id=\"" + suiteId
+                        + "\" name=\"Suite " + s + "\">" + name + ".Suite " + s + "</stat>\n");
+            }
+            out.write("<status status=\"" + (critical[1] > 0 ? "FAIL" : "PASS") + "\"" + status + "></status>\n");
+            out.write("</suite>\n<statistics>\n<total>\n");
+            out.write("<stat pass=\"" + critical[0] + "\" fail=\"" + critical[1] + "\">Critical Tests</stat>\n");
+            out.write("<stat pass=\"" + all[0] + "\" fail=\"" + all[1] + "\">All Tests</stat>\n");
+            out.write("</total>\n<tag>\n");
+            for (Map.Entry<String, long[]> tag : tagStats.entrySet())
+                out.write("<stat pass=\"" + tag.getValue()[0] + "\" fail=\"" + tag.getValue()[1] + "\">"
+                        + tag.getKey() + "</stat>\n");
+            out.write("</tag>\n<suite>\n");
+            out.write("<stat pass=\"" + all[0] + "\" fail=\"" + all[1] + "\" id=\"s1\" name=\"" + name + "\">" + name
+                    + "</stat>\n");
+            out.write(suiteStats.toString());
+            out.write("</suite>\n</statistics>\n<errors>\n");
+            out.write("<msg timestamp=\"" + time + "\" level=\"WARN\">Warning from " + name + "</msg>\n");
+            out.write("</errors>\n</robot>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OutputMergerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,164 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.robotframework.RobotFramework;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+
+public class OutputMergerTest
+        extends TestCase {
+
+    private final File workingDirectory = new File("target/robotframework/output-merger-test");
+
+    private final File merged = new File(workingDirectory, "merged.xml");
+
+    private final XPath xpath = XPathFactory.newInstance().newXPath();
+
+    protected void setUp()
+            throws Exception {
+        FileUtils.deleteDirectory(workingDirectory);
+        assertTrue(workingDirectory.mkdirs());
+    }
+
+    public void testSuitesAreCombinedUnderNewTopLevelSuite()
+            throws Exception {
+        File[] outputs = new File("src/test/resources/output-for-rebot").listFiles();
+        Arrays.sort(outputs);
+        new OutputMerger(Arrays.asList(outputs)).merge(merged);
+
+        Document document = parse(merged);
+        assertEquals("Robot-Success & Robot-Success", xpath.evaluate("/robot/suite/@name", document));
+        assertEquals("s1", xpath.evaluate("/robot/suite/@id", document));
+        assertEquals("s1-s2-s2-t1", xpath.evaluate("/robot/suite/suite[2]/suite[2]/test/@id", document));
+        assertEquals("PASS", xpath.evaluate("/robot/suite/status/@status", document));
+        assertEquals("507", xpath.evaluate("/robot/suite/status/@elapsedtime", document));
+        assertEquals("4", xpath.evaluate("/robot/statistics/total/stat[2]/@pass", document));
+        assertEquals("4", xpath.evaluate("/robot/statistics/tag/stat[.='success']/@pass", document));
+        assertEquals("Robot-Success & Robot-Success.Robot-Success.successfulTest",
+                xpath.evaluate("/robot/statistics/suite/stat[@id='s1-s2-s2']", document));
+    }
+
+    public void testResultMatchesRebot()
+            throws Exception {
+        List<File> outputs = new ArrayList<File>();
+        for (int i = 1; i <= 3; i++) {
+            File output = new File(workingDirectory, "output-" + i + ".xml");
+            OutputMergerBenchmark.writeOutput(output, "Shard " + i, 2, 8);
+            outputs.add(output);
+        }
+        new OutputMerger(outputs).merge(merged);
+        File rebotted = new File(workingDirectory, "rebot.xml");
+        List<String> args = new ArrayList<String>(Arrays.asList("rebot", "--output", rebotted.getPath(), "--log",
+                "NONE", "--report", "NONE"));
+        for (File output : outputs)
+            args.add(output.getPath());
+        RobotFramework.run(args.toArray(new String[args.size()]));
+
+        Document expected = parse(rebotted);
+        Document actual = parse(merged);
+        assertEquals(describe(expected, "/robot/statistics//stat"), describe(actual, "/robot/statistics//stat"));
+        assertEquals(describe(expected, "//suite | //test"), describe(actual, "//suite | //test"));
+        assertEquals(describe(expected, "/robot/suite/status"), describe(actual, "/robot/suite/status"));
+        assertEquals(describe(expected, "/robot/errors/msg"), describe(actual, "/robot/errors/msg"));
+        assertEquals(xpath.evaluate("count(//kw)", expected), xpath.evaluate("count(//kw)", actual));
+    }
+
+    public void testParallelMergeMatchesSequentialMerge()
+            throws Exception {
+        List<File> outputs = new ArrayList<File>();
+        for (int i = 1; i <= 7; i++) {
+            File output = new File(workingDirectory, "output-" + i + ".xml");
+            OutputMergerBenchmark.writeOutput(output, "Shard " + i, i, 5);
+            outputs.add(output);
+        }
+        new OutputMerger(outputs).merge(merged);
+        File parallel = new File(workingDirectory, "parallel.xml");
+        new OutputMerger(outputs).merge(parallel, 3);
+
+        assertEquals(withoutTimestamp(merged), withoutTimestamp(parallel));
+        // Temporary files are gone.
+        assertEquals(outputs.size() + 2, workingDirectory.list().length);
+    }
+
+    public void testFoldingIntoBaseMatchesMergingAll()
+            throws Exception {
+        List<File> outputs = new ArrayList<File>();
+        for (int i = 1; i <= 5; i++) {
+            File output = new File(workingDirectory, "output-" + i + ".xml");
+            OutputMergerBenchmark.writeOutput(output, "Shard " + i, i, 4);
+            outputs.add(output);
+        }
+        new OutputMerger(outputs).merge(merged);
+        File base = new File(workingDirectory, "base.xml");
+        new OutputMerger(outputs.subList(0, 3)).merge(base);
+        File folded = new File(workingDirectory, "folded.xml");
+        new OutputMerger(base, 3, outputs.subList(3, 5)).merge(folded);
+        File foldedInParallel = new File(workingDirectory, "folded-parallel.xml");
+        new OutputMerger(base, 3, outputs.subList(3, 5)).merge(foldedInParallel, 2);
+
+        assertEquals(withoutTimestamp(merged), withoutTimestamp(folded));
+        assertEquals(withoutTimestamp(merged), withoutTimestamp(foldedInParallel));
+    }
+
+    public void testCompressedOutputsAreDecompressedWhileRead()
+            throws Exception {
+        List<File> outputs = new ArrayList<File>();
+        List<File> compressed = new ArrayList<File>();
+        for (int i = 1; i <= 2; i++) {
+            File output = new File(workingDirectory, "output-" + i + ".xml");
+            OutputMergerBenchmark.writeOutput(output, "Shard " + i, 2, 3);
+            outputs.add(output);
+            File copy = new File(workingDirectory, "copy-" + i + ".xml");
+            FileUtils.copyFile(output, copy);
+            compressed.add(CompressedOutputs.compress(copy));
+        }
+        new OutputMerger(outputs).merge(merged);
+        File fromCompressed = new File(workingDirectory, "from-compressed.xml");
+        new OutputMerger(compressed).merge(fromCompressed);
+
+        assertEquals(withoutTimestamp(merged), withoutTimestamp(fromCompressed));
+    }
+
+    private static String withoutTimestamp(File output)
+            throws Exception {
+        return FileUtils.readFileToString(output, "UTF-8").replaceFirst(" generated=\"[^\"]*\"", "");
+    }
+
+    private static Document parse(File file)
+            throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+    }
+
+    /**
+     * @return names, ids, counts, statuses and texts of the matching elements
+     */
+    private String describe(Document document, String expression)
+            throws Exception {
+        StringBuilder result = new StringBuilder();
+        NodeList nodes = (NodeList) xpath.evaluate(expression, document, XPathConstants.NODESET);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element element = (Element) nodes.item(i);
+            result.append(element.getTagName());
+            for (String attribute : new String[] { "name", "id", "pass", "fail", "status", "elapsedtime", "level" })
+                result.append(' ').append(element.getAttribute(attribute));
+            if (!element.getTagName().equals("suite") && !element.getTagName().equals("test"))
+                result.append(' ').append(element.getTextContent());
+            result.append('\n');
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.w3c.dom.Document;
+
+
+public class OutputPrunerTest
+        extends TestCase {
+
+    private static final String PASS = "<status status=\"PASS\" starttime=\"20201010 10:00:00.000\" "
+            + "endtime=\"20201010 10:00:00.001\"></status>\n";
+
+    private static final String FAIL = "<status status=\"FAIL\" starttime=\"20201010 10:00:00.000\" "
+            + "endtime=\"20201010 10:00:00.001\"></status>\n";
+
+    private final File workingDirectory = new File("target/robotframework/output-pruner-test");
+
+    private final File output = new File(workingDirectory, "output.xml");
+
+    private final File pruned = new File(workingDirectory, "pruned.xml");
+
+    private final XPath xpath = XPathFactory.newInstance().newXPath();
+
+    protected void setUp()
+            throws Exception {
+        FileUtils.deleteDirectory(workingDirectory);
+        assertTrue(workingDirectory.mkdirs());
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<robot generator=\"Robot 3.2.2 (Jython 2.7.2 on java1.8.0)\" rpa=\"false\">\n");
+        xml.append("<suite id=\"s1\" name=\"Suite\">\n<test id=\"s1-t1\" name=\"Test\">\n");
+        xml.append("<kw name=\"Passing\">\n<doc>Passes.</doc>\n<arguments>\n<arg>value</arg>\n</arguments>\n");
+        xml.append(keyword("Inner", "inner message", PASS));
+        xml.append("<msg timestamp=\"20201010 10:00:00.000\" level=\"INFO\">outer message</msg>\n");
+        xml.append(PASS).append("</kw>\n");
+        xml.append("<kw name=\"Failing\">\n");
+        xml.append(keyword("Ok", "ok message", PASS));
+        xml.append(keyword("Bad", "boom", FAIL));
+        xml.append(FAIL).append("</kw>\n");
+        xml.append("<kw type=\"for\" name=\"${i} IN RANGE [ 3 ]\">\n");
+        for (int i = 0; i < 3; i++) {
+            xml.append("<kw type=\"foritem\" name=\"${i} = " + i + "\">\n");
+            xml.append(keyword("Log", "iteration " + i, i == 1 ? FAIL : PASS));
+            xml.append(i == 1 ? FAIL : PASS).append("</kw>\n");
+        }
+        xml.append(FAIL).append("</kw>\n");
+        xml.append(keyword("Long", "0123456789 &amp; more than ten characters", FAIL));
+        xml.append(FAIL).append("</test>\n").append(FAIL).append("</suite>\n");
+        xml.append("<statistics>\n<total>\n<stat pass=\"0\" fail=\"1\">Critical Tests</stat>\n"
+                + "<stat pass=\"0\" fail=\"1\">All Tests</stat>\n</total>\n<tag>\n</tag>\n<suite>\n"
+                + "<stat pass=\"0\" fail=\"1\" id=\"s1\" name=\"Suite\">Suite</stat>\n</suite>\n</statistics>\n");
+        xml.append("<errors>\n</errors>\n</robot>\n");
+        FileUtils.writeStringToFile(output, xml.toString(), "UTF-8");
+    }
+
+    private static String keyword(String name, String message, String status) {
+        return "<kw name=\"" + name + "\">\n<msg timestamp=\"20201010 10:00:00.000\" level=\"INFO\">" + message
+                + "</msg>\n" + status + "</kw>\n";
+    }
+
+    public void testPassedKeywordsLoseTheirContents()
+            throws Exception {
+        new OutputPruner(true, false, 0).prune(output, pruned);
+
+        Document document = parse(pruned);
+        assertEquals("0", xpath.evaluate("count(//kw[@name='Passing']/kw | //kw[@name='Passing']/msg)", document));
+        assertEquals("value", xpath.evaluate("//kw[@name='Passing']/arguments/arg", document));
+        assertEquals("Passes.", xpath.evaluate("//kw[@name='Passing']/doc", document));
+        assertEquals("PASS", xpath.evaluate("//kw[@name='Passing']/status/@status", document));
+        assertEquals("0", xpath.evaluate("count(//kw[@name='Ok']/msg)", document));
+        assertEquals("boom", xpath.evaluate("//kw[@name='Bad']/msg", document));
+        // All iterations stay, the passed ones without contents.
+        assertEquals("3", xpath.evaluate("count(//kw[@type='foritem'])", document));
+        assertEquals("1", xpath.evaluate("count(//kw[@type='foritem']/kw)", document));
+        assertEquals("Suite", xpath.evaluate("/robot/statistics/suite/stat", document));
+    }
+
+    public void testPassedLoopIterationsAreDroppedButTheLast()
+            throws Exception {
+        new OutputPruner(false, true, 0).prune(output, pruned);
+
+        Document document = parse(pruned);
+        assertEquals("${i} = 1", xpath.evaluate("//kw[@type='foritem'][1]/@name", document));
+        assertEquals("${i} = 2", xpath.evaluate("//kw[@type='foritem'][2]/@name", document));
+        assertEquals("2", xpath.evaluate("count(//kw[@type='foritem'])", document));
+        assertEquals("iteration 2", xpath.evaluate("//kw[@type='foritem'][2]/kw/msg", document));
+        assertEquals("inner message", xpath.evaluate("//kw[@name='Inner']/msg", document));
+    }
+
+    public void testLongMessagesAreCut()
+            throws Exception {
+        new OutputPruner(false, false, 10).prune(output, pruned);
+
+        Document document = parse(pruned);
+        assertEquals("0123456789\n[27 characters removed]", xpath.evaluate("//kw[@name='Long']/msg", document));
+        assertEquals("boom", xpath.evaluate("//kw[@name='Bad']/msg", document));
+    }
+
+    public void testCompressedOutputIsRead()
+            throws Exception {
+        File compressed = CompressedOutputs.compress(output);
+        new OutputPruner(true, true, 0).prune(compressed, pruned);
+
+        assertEquals("boom", xpath.evaluate("//kw[@name='Bad']/msg", parse(pruned)));
+    }
+
+    private static Document parse(File file)
+            throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+    }
+}
@@ -4,7 +4,10 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasXPath;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -51,6 +54,142 @@ public class RebotMojoTest extends AbstractMojoTestCase {
 		assertThat(xunit, hasXPath("/testsuite[@tests='2']"));
 	}
 	
+	public void testReportSuccessStreamingMerge() throws Exception {
+		File pom = getTestFile("src/test/resources/pom-rebot-streaming.xml");
+		this.executeRebotMojo(pom);
+		File mergedOutput = getTestFile("target/robotframework-reports/rebot/merged-output.xml");
+		assertTrue("missing merged output " + mergedOutput, mergedOutput.exists());
+		File xunitFile = getTestFile("target/robotframework-reports/rebot/TEST-robot-success-streaming.xml");
+		assertTrue("missing xunit test report " + xunitFile, xunitFile.exists());
+
+		Document xunit = parseDocument(xunitFile);
+		assertThat(xunit, hasXPath("/testsuite[@errors='0']"));
+		assertThat(xunit, hasXPath("/testsuite[@failures='0']"));
+		assertThat(xunit, hasXPath("/testsuite[@tests='4']"));
+	}
+
+	public void testIncrementalMergeFoldsInNewOutputs() throws Exception {
+		File outputDirectory = getTestFile("target/robotframework-reports/rebot-incremental");
+		FileUtils.deleteDirectory(outputDirectory);
+		File pom = getTestFile("src/test/resources/pom-rebot-incremental.xml");
+		this.executeRebotMojo(pom);
+		// A rerun output, sorting after the others.
+		FileUtils.copyFile(getTestFile("src/test/resources/output-for-rebot/output-rebot-20181115-081428.xml"),
+				new File(outputDirectory, "output-rebot-20181115-081429.xml"));
+		this.executeRebotMojo(pom);
+
+		Properties manifest = new Properties();
+		InputStream in = new FileInputStream(new File(outputDirectory, ".merged-output-manifest"));
+		try {
+			manifest.load(in);
+		} finally {
+			in.close();
+		}
+		assertEquals("3", manifest.getProperty("outputs"));
+		Document xunit = parseDocument(new File(outputDirectory, "TEST-robot-success-incremental.xml"));
+		assertThat(xunit, hasXPath("/testsuite[@failures='0']"));
+		assertThat(xunit, hasXPath("/testsuite[@tests='6']"));
+	}
+
+	public void testReportSuccessCompressedOutputs() throws Exception {
+		File outputDirectory = getTestFile("target/robotframework-reports/rebot-compressed");
+		FileUtils.deleteDirectory(outputDirectory);
+		File pom = getTestFile("src/test/resources/pom-rebot-compressed.xml");
+		RebotMojo mojo = (RebotMojo) lookupMojo("rebot", pom);
+		assertTrue(outputDirectory.mkdirs());
+		for (File output : getTestFile("src/test/resources/output-for-rebot").listFiles())
+			CompressedOutputs.compress(copyToDirectory(output, outputDirectory));
+		mojo.execute();
+
+		assertFalse(new File(outputDirectory, ".decompressed-outputs").exists());
+		Document xunit = parseDocument(new File(outputDirectory, "TEST-robot-success-compressed.xml"));
+		assertThat(xunit, hasXPath("/testsuite[@failures='0']"));
+		assertThat(xunit, hasXPath("/testsuite[@tests='4']"));
+	}
+
+	public void testReportSuccessPrunedOutputs() throws Exception {
+		File outputDirectory = getTestFile("target/robotframework-reports/rebot-pruned");
+		FileUtils.deleteDirectory(outputDirectory);
+		File pom = getTestFile("src/test/resources/pom-rebot-pruned.xml");
+		this.executeRebotMojo(pom);
+
+		assertFalse(new File(outputDirectory, ".decompressed-outputs").exists());
+		Document xunit = parseDocument(new File(outputDirectory, "TEST-robot-success-pruned.xml"));
+		assertThat(xunit, hasXPath("/testsuite[@failures='0']"));
+		assertThat(xunit, hasXPath("/testsuite[@tests='4']"));
+	}
+
+	public void testStreamingReport() throws Exception {
+		File outputDirectory = getTestFile("target/robotframework-reports/rebot-streaming-report");
+		FileUtils.deleteDirectory(outputDirectory);
+		File pom = getTestFile("src/test/resources/pom-rebot-streaming-report.xml");
+		this.executeRebotMojo(pom);
+
+		assertTrue(new File(outputDirectory, "report.html").exists());
+		assertTrue(new File(outputDirectory, "merged-output.xml").exists());
+		File suite = new File(outputDirectory, "report-data/suites/s1.js");
+		assertTrue(FileUtils.readFileToString(suite, "UTF-8").contains("\"pass\":4,\"fail\":0"));
+		assertFalse(new File(outputDirectory, "log.html").exists());
+	}
+
+	private static File copyToDirectory(File file, File directory) throws IOException {
+		FileUtils.copyFileToDirectory(file, directory);
+		return new File(directory, file.getName());
+	}
+
+	public void testConcurrentReports() throws Exception {
+		File outputDirectory = getTestFile("target/robotframework-reports/rebot-concurrent");
+		FileUtils.deleteDirectory(outputDirectory);
+		File pom = getTestFile("src/test/resources/pom-rebot-concurrent.xml");
+		this.executeRebotMojo(pom);
+		assertTrue(new File(outputDirectory, "rebot-output.xml").exists());
+		assertTrue(new File(outputDirectory, "log.html").exists());
+		assertTrue(new File(outputDirectory, "report.html").exists());
+
+		Document xunit = parseDocument(new File(outputDirectory, "TEST-robot-success-concurrent.xml"));
+		assertThat(xunit, hasXPath("/testsuite[@failures='0']"));
+		assertThat(xunit, hasXPath("/testsuite[@tests='4']"));
+	}
+
+	public void testDeferredLog() throws Exception {
+		File outputDirectory = getTestFile("target/robotframework-reports/rebot-deferred");
+		FileUtils.deleteDirectory(outputDirectory);
+		File pom = getTestFile("src/test/resources/pom-rebot-deferred.xml");
+		this.executeRebotMojo(pom);
+		assertTrue(new File(outputDirectory, "TEST-robot-success-deferred.xml").exists());
+		assertTrue(new File(outputDirectory, "report.html").exists());
+
+		// The log is written by a forked JVM after the goal has finished.
+		File log = new File(outputDirectory, "log.html");
+		for (int i = 0; i < 120 && !log.exists(); i++)
+			Thread.sleep(500);
+		assertTrue("missing deferred log " + log, log.exists());
+	}
+
+	public void testConcurrentReportsFailOnRebotErrors() throws Exception {
+		File outputDirectory = getTestFile("target/robotframework-reports/rebot-concurrent");
+		FileUtils.deleteDirectory(outputDirectory);
+		RebotMojo mojo = (RebotMojo) lookupMojo("rebot", getTestFile("src/test/resources/pom-rebot-concurrent.xml"));
+		FileUtils.writeStringToFile(new File(outputDirectory, "output.xml"), "<robot><suite>", "UTF-8");
+		try {
+			mojo.execute();
+			fail("Rebot errors were ignored.");
+		} catch (MojoExecutionException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("combined output"));
+		}
+	}
+
+	public void testAwaitedDeferredLog() throws Exception {
+		File outputDirectory = getTestFile("target/robotframework-reports/rebot-deferred");
+		FileUtils.deleteDirectory(outputDirectory);
+		RebotMojo mojo = (RebotMojo) lookupMojo("rebot", getTestFile("src/test/resources/pom-rebot-deferred.xml"));
+		setVariableValueToObject(mojo, "awaitDeferredLog", true);
+		FileUtils.copyDirectory(getTestFile("src/test/resources/output-for-rebot/"), outputDirectory);
+		mojo.execute();
+		assertTrue(new File(outputDirectory, "log.html").exists());
+		assertTrue(new File(outputDirectory, "report.html").exists());
+	}
+
 	private Document parseDocument(File xunitFile) throws ParserConfigurationException, SAXException, IOException {
 		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
 		DocumentBuilder builder = documentBuilderFactory.newDocumentBuilder();
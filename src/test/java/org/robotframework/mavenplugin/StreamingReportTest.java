@@ -0,0 +1,136 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+
+public class StreamingReportTest
+        extends TestCase {
+
+    private static final String PASS = "<status status=\"PASS\" starttime=\"20201010 10:00:00.000\" "
+            + "endtime=\"20201010 10:00:01.500\"></status>\n";
+
+    private static final String FAIL = "<status status=\"FAIL\" starttime=\"20201010 10:00:00.000\" "
+            + "endtime=\"20201010 10:00:00.001\"></status>\n";
+
+    private final File workingDirectory = new File("target/robotframework/streaming-report-test");
+
+    private final File output = new File(workingDirectory, "output.xml");
+
+    private final File report = new File(workingDirectory, "report.html");
+
+    private final File data = new File(workingDirectory, "report-data");
+
+    protected void setUp()
+            throws Exception {
+        FileUtils.deleteDirectory(workingDirectory);
+        assertTrue(workingDirectory.mkdirs());
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<robot generator=\"Robot 3.2.2 (Jython 2.7.2 on java1.8.0)\" generated=\"20201010 10:00:02.000\" "
+                + "rpa=\"false\">\n");
+        xml.append("<suite id=\"s1\" name=\"Root\" source=\"/tests\">\n");
+        xml.append("<suite id=\"s1-s1\" name=\"Sub\" source=\"/tests/sub.robot\">\n");
+        xml.append("<kw name=\"Prepare\" library=\"Setup\" type=\"setup\">\n").append(PASS).append("</kw>\n");
+        xml.append("<test id=\"s1-s1-t1\" name=\"Passing\">\n");
+        xml.append("<kw name=\"Log\" library=\"BuiltIn\">\n<doc>Logs.</doc>\n<arguments>\n<arg>&lt;/script&gt;</arg>\n"
+                + "</arguments>\n<kw name=\"Inner\">\n").append(PASS).append("</kw>\n");
+        xml.append("<msg timestamp=\"20201010 10:00:00.000\" level=\"INFO\">&lt;/script&gt; \"quoted\"\n"
+                + "next line</msg>\n").append(PASS).append("</kw>\n");
+        xml.append("<tags>\n<tag>smoke</tag>\n</tags>\n").append(PASS).append("</test>\n");
+        xml.append("<test id=\"s1-s1-t2\" name=\"Failing\">\n<doc>Fails.</doc>\n");
+        xml.append("<status status=\"FAIL\" critical=\"no\" starttime=\"20201010 10:00:00.000\" "
+                + "endtime=\"20201010 10:00:00.001\">1 != 2</status>\n</test>\n");
+        xml.append("<doc>Sub doc.</doc>\n<metadata>\n<item name=\"Version\">1.0</item>\n</metadata>\n");
+        xml.append(FAIL).append("</suite>\n").append(FAIL).append("</suite>\n");
+        xml.append("<statistics>\n<total>\n<stat pass=\"0\" fail=\"0\">Critical Tests</stat>\n"
+                + "<stat pass=\"1\" fail=\"1\">All Tests</stat>\n</total>\n<tag>\n"
+                + "<stat pass=\"1\" fail=\"0\">smoke</stat>\n</tag>\n<suite>\n"
+                + "<stat pass=\"1\" fail=\"1\" id=\"s1\" name=\"Root\">Root</stat>\n</suite>\n</statistics>\n");
+        xml.append("<errors>\n<msg timestamp=\"20201010 10:00:00.000\" level=\"WARN\">Careful</msg>\n</errors>\n"
+                + "</robot>\n");
+        FileUtils.writeStringToFile(output, xml.toString(), "UTF-8");
+    }
+
+    public void testReportIsSplitIntoFilesLoadedWhenOpened()
+            throws Exception {
+        StreamingReport streamingReport = new StreamingReport("Title");
+        streamingReport.write(output, report);
+
+        assertEquals(2, streamingReport.getSuites());
+        assertEquals(2, streamingReport.getTests());
+        assertEquals(3, streamingReport.getKeywords());
+        String page = FileUtils.readFileToString(report, "UTF-8");
+        assertTrue(page.contains("var DATA = \"report-data\";"));
+        assertTrue(page.contains("var TITLE = \"Title\";"));
+
+        Map<?, ?> summary = (Map<?, ?>) read("summary.js");
+        assertEquals("s1", summary.get("root"));
+        assertEquals("20201010 10:00:02.000", summary.get("generated"));
+        Map<?, ?> statistics = (Map<?, ?>) summary.get("statistics");
+        assertEquals("All Tests", ((Map<?, ?>) ((List<?>) statistics.get("total")).get(1)).get("label"));
+        assertEquals("smoke", ((Map<?, ?>) ((List<?>) statistics.get("tag")).get(0)).get("label"));
+        assertEquals("Root", ((Map<?, ?>) ((List<?>) statistics.get("suite")).get(0)).get("name"));
+        assertEquals("Careful", ((Map<?, ?>) ((List<?>) summary.get("errors")).get(0)).get("text"));
+
+        Map<?, ?> root = (Map<?, ?>) read("suites/s1.js");
+        assertEquals("FAIL", root.get("status"));
+        Map<?, ?> sub = (Map<?, ?>) ((List<?>) root.get("items")).get(0);
+        assertEquals("suite", sub.get("type"));
+        assertEquals(1, ((Number) sub.get("pass")).intValue());
+        assertEquals(1, ((Number) sub.get("fail")).intValue());
+
+        Map<?, ?> suite = (Map<?, ?>) read("suites/s1-s1.js");
+        assertEquals("Sub doc.", suite.get("doc"));
+        assertEquals("1.0", ((List<?>) suite.get("metadata")).get(1));
+        assertEquals(Boolean.TRUE, suite.get("keywords"));
+        List<?> tests = (List<?>) suite.get("items");
+        Map<?, ?> passing = (Map<?, ?>) tests.get(0);
+        assertEquals("smoke", ((List<?>) passing.get("tags")).get(0));
+        assertEquals(1500, ((Number) passing.get("elapsed")).intValue());
+        assertEquals(Boolean.TRUE, passing.get("keywords"));
+        Map<?, ?> failing = (Map<?, ?>) tests.get(1);
+        assertEquals("1 != 2", failing.get("message"));
+        assertEquals("Fails.", failing.get("doc"));
+        assertEquals(Boolean.FALSE, failing.get("critical"));
+        assertEquals(Boolean.FALSE, failing.get("keywords"));
+
+        Map<?, ?> setup = (Map<?, ?>) ((List<?>) read("keywords/s1-s1.js")).get(0);
+        assertEquals("setup", setup.get("type"));
+        assertFalse(new File(data, "keywords/s1-s1-t2.js").exists());
+        String keywordsFile = FileUtils.readFileToString(new File(data, "keywords/s1-s1-t1.js"), "UTF-8");
+        assertFalse(keywordsFile.contains("</script>"));
+        Map<?, ?> log = (Map<?, ?>) ((List<?>) read("keywords/s1-s1-t1.js")).get(0);
+        assertEquals("BuiltIn", log.get("library"));
+        assertEquals("Logs.", log.get("doc"));
+        assertEquals("</script>", ((List<?>) log.get("args")).get(0));
+        List<?> children = (List<?>) log.get("children");
+        assertEquals("Inner", ((Map<?, ?>) children.get(0)).get("name"));
+        assertEquals("</script> \"quoted\"\nnext line", ((Map<?, ?>) children.get(1)).get("text"));
+        assertEquals("PASS", log.get("status"));
+    }
+
+    public void testCompressedOutputIsRead()
+            throws Exception {
+        new StreamingReport(null).write(CompressedOutputs.compress(output), report);
+
+        assertEquals("Root", ((Map<?, ?>) read("suites/s1.js")).get("name"));
+        assertTrue(FileUtils.readFileToString(report, "UTF-8").contains("var TITLE = null;"));
+    }
+
+    /**
+     * @return the data passed to the report in a data file
+     */
+    private Object read(String path)
+            throws Exception {
+        String script = FileUtils.readFileToString(new File(data, path), "UTF-8");
+        int start = path.equals("summary.js") ? script.indexOf('(') + 1
+                : script.indexOf(',', script.indexOf('(')) + 1;
+        return JsonReader.read(script, start);
+    }
+}
@@ -51,4 +51,37 @@ public class TestDocMojoTest
         String contents =  FileUtils.readFileToString(new File(txtResourceWithDocTestDoc), Charset.defaultCharset());
         assertTrue(contents.contains("\"doc\":\"<p>Custom documentation"));
     }
+
+    public void testParallelIncrementalTestDocSkipsUpToDateDataSources()
+            throws Exception {
+        File incrementalOutputDirectory = new File("target/robotframework/testdoc-incremental");
+        FileUtils.deleteDirectory(incrementalOutputDirectory);
+        File successfulDoc = new File(incrementalOutputDirectory,
+                "src_test_resources_robot-success_successfulTest_robot.html");
+        File anotherSuccessfulDoc = new File(incrementalOutputDirectory,
+                "src_test_resources_robot-success_anotherSuccessfulTest_robot.html");
+
+        executeLibdocWithPom("testdoc", "src/test/resources/pom-testdoc-incremental.xml");
+        assertTrue(successfulDoc.exists());
+        assertTrue(anotherSuccessfulDoc.exists());
+        long generated = System.currentTimeMillis() - 60000;
+        assertTrue(successfulDoc.setLastModified(generated));
+        assertTrue(anotherSuccessfulDoc.delete());
+
+        executeLibdocWithPom("testdoc", "src/test/resources/pom-testdoc-incremental.xml");
+        assertEquals(generated, successfulDoc.lastModified());
+        assertTrue(anotherSuccessfulDoc.exists());
+    }
+
+    public void testAggregateTestDocForPattern()
+            throws Exception {
+        File aggregateTestDoc = new File(outputDirectory + "testdoc.html");
+        deleteDocument(aggregateTestDoc.getPath());
+        executeLibdocWithPom("testdoc", "src/test/resources/pom-testdoc-aggregate.xml");
+        assertTrue(aggregateTestDoc + " not found", aggregateTestDoc.exists());
+        String contents = FileUtils.readFileToString(aggregateTestDoc, Charset.defaultCharset());
+        assertTrue(contents.contains("\"name\":\"Successful Test\""));
+        assertTrue(contents.contains("\"name\":\"Successful Test Negatives\""));
+        assertTrue(contents.contains("var lazySections"));
+    }
 }
@@ -3,12 +3,15 @@ package org.robotframework.mavenplugin;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
@@ -56,6 +59,69 @@ public class VerifyMojoTest
         }
     }
 
+    public void testCompressedReportFailure()
+            throws Exception {
+        File pom = getTestFile("src/test/resources/pom-verify-compressed.xml");
+        VerifyMojo mojo = (VerifyMojo) lookupMojo("verify", pom);
+        File outputDirectory = (File) getVariableValueFromObject(mojo, "outputDirectory");
+        File xunitFile = getXunitOutput(outputDirectory, (File) getVariableValueFromObject(mojo, "xunitFile"));
+        xunitFile.delete();
+        InputStream in = this.getClass().getResourceAsStream("/xunitresults/TEST-robot-fail.xml");
+        try {
+            copyXunitReport(in, outputDirectory, xunitFile);
+        } finally {
+            in.close();
+        }
+        CompressedOutputs.compress(xunitFile);
+        try {
+            mojo.execute();
+            fail("MojoFailureException expected");
+        } catch (MojoFailureException ex) {
+            assertThat(ex.getMessage(), containsString("failure"));
+        }
+    }
+
+    public void testShardedReportsAreVerifiedTogether()
+            throws Exception {
+        File pom = getTestFile("src/test/resources/pom-verify-shards.xml");
+        VerifyMojo mojo = (VerifyMojo) lookupMojo("verify", pom);
+        File outputDirectory = (File) getVariableValueFromObject(mojo, "outputDirectory");
+        FileUtils.deleteDirectory(outputDirectory);
+        for (String shard : new String[] { "success", "fail" }) {
+            InputStream in = this.getClass().getResourceAsStream("/xunitresults/TEST-robot-" + shard + ".xml");
+            try {
+                copyXunitReport(in, new File(outputDirectory, "shard-" + shard), new File("TEST-robot.xml"));
+            } finally {
+                in.close();
+            }
+        }
+        CompressedOutputs.compress(new File(outputDirectory, "shard-fail/TEST-robot.xml"));
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        try {
+            mojo.execute();
+        } finally {
+            System.setOut(out);
+        }
+        assertThat(printed.toString(), containsString("Tests run: 6, Failures: 5, Errors: 0"));
+        assertThat(printed.toString(), containsString("Failing Test Case(Robot-Fail.failingTest)"));
+    }
+
+    public void testNoShardedReports()
+            throws Exception {
+        File pom = getTestFile("src/test/resources/pom-verify-shards.xml");
+        VerifyMojo mojo = (VerifyMojo) lookupMojo("verify", pom);
+        FileUtils.deleteDirectory((File) getVariableValueFromObject(mojo, "outputDirectory"));
+        try {
+            mojo.execute();
+            fail("MojoExecutionException expected");
+        } catch (MojoExecutionException ex) {
+            assertThat(ex.getMessage(), containsString("No xunit files matching"));
+        }
+    }
+
     private void executeVerifyMojo(File pom, String xunitResult)
             throws MojoExecutionException, MojoFailureException {
         VerifyMojo mojo;
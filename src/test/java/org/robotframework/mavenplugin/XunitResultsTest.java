@@ -0,0 +1,72 @@
+package org.robotframework.mavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+
+public class XunitResultsTest
+        extends TestCase {
+
+    private final File workingDirectory = new File("target/robotframework/xunit-results-test");
+
+    protected void setUp()
+            throws Exception {
+        FileUtils.deleteDirectory(workingDirectory);
+        assertTrue(workingDirectory.mkdirs());
+    }
+
+    private File write(String name, String xml)
+            throws Exception {
+        File file = new File(workingDirectory, name);
+        FileUtils.writeStringToFile(file, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + xml, "UTF-8");
+        return file;
+    }
+
+    public void testReadingStopsOnceTheResultsAreKnown()
+            throws Exception {
+        // Not well-formed after what is needed.
+        File passed = write("passed.xml", "<testsuite errors=\"0\" failures=\"0\" tests=\"2\" name=\"Passed\">\n"
+                + "<testcase classname=\"Passed\" name=\"One\"></testcase>\n<broken>");
+        File failed = write("failed.xml", "<testsuite errors=\"1\" failures=\"1\" tests=\"3\" name=\"Failed\">\n"
+                + "<testcase classname=\"Failed\" name=\"One\"><failure message=\"no\"></failure></testcase>\n"
+                + "<testcase classname=\"Failed\" name=\"Two\"></testcase>\n"
+                + "<testcase classname=\"Failed\" name=\"Three\"><error message=\"no\"></error></testcase>\n"
+                + "<broken>");
+
+        XunitResults results = XunitResults.read(Arrays.asList(passed, failed, passed), 2);
+        assertEquals(7, results.getTests());
+        assertEquals(1, results.getFailures());
+        assertEquals(1, results.getErrors());
+        assertEquals(Arrays.asList("One(Failed)", "Three(Failed)"), results.getFailingTests());
+    }
+
+    public void testTotalsOfTestSuitesAreAddedUp()
+            throws Exception {
+        File file = write("suites.xml", "<testsuites>\n"
+                + "<testsuite errors=\"0\" failures=\"1\" tests=\"2\" name=\"A\">\n"
+                + "<testcase classname=\"A\" name=\"One\"><failure message=\"no\"></failure></testcase>\n"
+                + "</testsuite>\n<testsuite errors=\"0\" failures=\"0\" tests=\"4\" name=\"B\"></testsuite>\n"
+                + "</testsuites>\n");
+
+        XunitResults results = XunitResults.read(Arrays.asList(CompressedOutputs.compress(file)), 1);
+        assertEquals(6, results.getTests());
+        assertEquals(1, results.getFailures());
+        assertEquals(Arrays.asList("One(A)"), results.getFailingTests());
+    }
+
+    public void testInvalidFileIsReported()
+            throws Exception {
+        File file = write("invalid.xml", "<testsuite errors=\"0\" failures=\"1\" tests=\"1\">\n<testcase>");
+        try {
+            XunitResults.read(file);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Invalid xunit file"));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link AntPatternMatcher} with {@link AntPatternClassPredicate} over
+ * a class path sized corpus of class and resource names. Not run by the unit
+ * tests, see BUILD.md for how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AntPatternMatcherBenchmark {
+
+    private static final int CORPUS_SIZE = 200000;
+
+    private static final String[] ROOTS = { "org/apache/commons", "org/apache/maven", "com/google/common",
+            "org/codehaus/plexus", "org/python", "Lib/robot", "com/acme/keywords", "org/eclipse/jetty",
+            "io/netty", "org/springframework" };
+
+    private static final String[] WORDS = { "util", "core", "api", "impl", "internal", "io", "lang", "model",
+            "reflect", "collect", "runner", "libraries", "parsing", "output", "running" };
+
+    private static final String[] SUFFIXES = { ".class", ".class", ".class", ".class", "$Inner.class",
+            ".py", "$py.class", ".properties", ".xml", ".txt" };
+
+    @Param({ "com.acme.keywords.**", "org.**.*Library", "*.py" })
+    public String pattern;
+
+    private List<String> corpus;
+
+    private AntPatternClassPredicate predicate;
+
+    private AntPatternMatcher matcher;
+
+    @Setup
+    public void setup() {
+        corpus = createCorpus(new Random(42));
+        predicate = new AntPatternClassPredicate(pattern);
+        matcher = new AntPatternMatcher(pattern);
+    }
+
+    static List<String> createCorpus(Random random) {
+        List<String> names = new ArrayList<String>(CORPUS_SIZE);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            StringBuilder name = new StringBuilder(ROOTS[random.nextInt(ROOTS.length)]);
+            int depth = random.nextInt(4);
+            for (int d = 0; d < depth; d++)
+                name.append('/').append(WORDS[random.nextInt(WORDS.length)]);
+            name.append('/').append(Character.toUpperCase(WORDS[random.nextInt(WORDS.length)].charAt(0)))
+                    .append(WORDS[random.nextInt(WORDS.length)]).append(i % 7 == 0 ? "Library" : "Helper")
+                    .append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+            names.add(name.toString());
+        }
+        return names;
+    }
+
+    @Benchmark
+    public int predicate() {
+        int matches = 0;
+        for (String name : corpus) {
+            if (predicate.apply(name))
+                matches++;
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int compiledMatcher() {
+        int matches = 0;
+        for (String name : corpus) {
+            if (matcher.matches(name))
+                matches++;
+        }
+        return matches;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AntPatternMatcherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
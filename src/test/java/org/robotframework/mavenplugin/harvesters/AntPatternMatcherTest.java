@@ -0,0 +1,63 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AntPatternMatcherTest {
+
+    @Test
+    public void testMatchesSimple() throws Exception {
+        AntPatternMatcher matcher = new AntPatternMatcher("*.List");
+
+        assertTrue(matcher.matches("java.util.List"));
+        assertFalse(matcher.matches("java.awt.Window"));
+    }
+
+    @Test
+    public void testMatchesRecursive() throws Exception {
+        AntPatternMatcher matcher = new AntPatternMatcher("java.**.List");
+
+        assertTrue(matcher.matches("java.util.List"));
+        assertTrue(matcher.matches("java.bla.bla.bla.List"));
+        assertFalse(matcher.matches("javax.bla.List"));
+    }
+
+    @Test
+    public void testMatchesResourceNames() throws Exception {
+        AntPatternMatcher matcher = new AntPatternMatcher("java.**.*List");
+
+        assertTrue(matcher.matches("java/util/ArrayList.class"));
+        assertFalse(matcher.matches("java/util/ArrayList.classs"));
+    }
+
+    @Test
+    public void testMatchesSingleCharacterWildcard() throws Exception {
+        AntPatternMatcher matcher = new AntPatternMatcher("java.util.?ist");
+
+        assertTrue(matcher.matches("java.util.List"));
+        assertFalse(matcher.matches("java.util.ArrayList"));
+    }
+
+    @Test
+    public void testLiteralPrefix() throws Exception {
+        assertEquals("com.acme.keywords.", new AntPatternMatcher("com.acme.keywords.**").getLiteralPrefix());
+    }
+
+    @Test
+    public void testAgreesWithPredicate() throws Exception {
+        String[] patterns = { "*.List", "java.**.A", "java.util.*List", "java.util.List", "java.**.List",
+                "*.py", "org.**.*Lib*", "org.?obot.**", "**" };
+        String[] names = { "java.util.List", "java.util.List.class", "java.util.butil.A", "java.awt.Window",
+                "java.util.ArrayList", "java.bla.bla.bla.List.classs", "Lib/robot/api.py", "robot.py",
+                "org.robot.MyLibrary", "org.robot.Lib", "org.lib" };
+        for (String pattern : patterns) {
+            AntPatternClassPredicate predicate = new AntPatternClassPredicate(pattern);
+            AntPatternMatcher matcher = new AntPatternMatcher(pattern);
+            for (String name : names)
+                assertEquals(pattern + " ~ " + name, predicate.apply(name), matcher.matches(name));
+        }
+    }
+}
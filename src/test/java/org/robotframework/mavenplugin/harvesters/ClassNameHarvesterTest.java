@@ -2,6 +2,10 @@ package org.robotframework.mavenplugin.harvesters;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Test;
@@ -91,4 +95,23 @@ public class ClassNameHarvesterTest {
         String r = result.iterator().next();
         assertEquals("org.robotframework.mavenplugin.harvesters.ClassNameHarvesterTest$A", r);
     }
+
+    @Test
+    public void testHarvestAllTagsHitsWithPatterns() throws Exception {
+        // prepare data
+        String recursive = "org.robotframework.**.A";
+        String simple = "org.robotframework.mavenplugin.harvesters.?";
+        String direct = "java.util.List";
+
+        // do the test
+        NameHarvester harv = new ClassNameHarvester();
+        Map<String, Set<String>> result = harv.harvestAll(Arrays.asList(recursive, simple, direct));
+
+        // checks
+        assertEquals(3, result.size());
+        assertEquals(Collections.singleton(direct), result.get(direct));
+        assertEquals(new HashSet<String>(Arrays.asList(recursive, simple)),
+                result.get("org.robotframework.mavenplugin.harvesters.A"));
+        assertEquals(Collections.singleton(simple), result.get("org.robotframework.mavenplugin.harvesters.B"));
+    }
 }
@@ -0,0 +1,113 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Predicates;
+
+public class ClassPathScannerTest {
+
+    private final File workingDirectory = new File(new File(System.getProperty("user.dir")),
+            "target" + File.separator + ClassPathScannerTest.class.getCanonicalName());
+
+    @Before
+    public void setup() throws IOException {
+        FileUtils.deleteDirectory(workingDirectory);
+        assertTrue(workingDirectory.mkdirs());
+    }
+
+    @After
+    public void teardown() throws IOException {
+        FileUtils.deleteDirectory(workingDirectory);
+    }
+
+    @Test
+    public void testScanVisitsOnlyPrefixInDirectory() throws Exception {
+        File classes = new File(workingDirectory, "classes");
+        touch(new File(classes, "com/acme/keywords/Lib.class"));
+        touch(new File(classes, "com/acme/keywords/deeper/Other.class"));
+        touch(new File(classes, "com/acme/Unrelated.class"));
+        touch(new File(classes, "org/Unrelated.class"));
+
+        ClassPathScanner scanner = new ClassPathScanner(loaderFor(classes));
+        Set<String> result = scanner.scan("com.acme.keywords.", Predicates.<CharSequence>alwaysTrue());
+
+        assertEquals(2, result.size());
+        assertTrue(result.contains("com/acme/keywords/Lib.class"));
+        assertTrue(result.contains("com/acme/keywords/deeper/Other.class"));
+    }
+
+    @Test
+    public void testScanFiltersJarEntriesAndFollowsManifestClassPath() throws Exception {
+        File referenced = new File(workingDirectory, "referenced.jar");
+        writeJar(referenced, null, "com/acme/keywords/Referenced.class", "org/Unrelated.class");
+        File jar = new File(workingDirectory, "main.jar");
+        writeJar(jar, "referenced.jar", "com/acme/keywords/Main.class", "com/acme/Unrelated.class");
+
+        ClassPathScanner scanner = new ClassPathScanner(loaderFor(jar));
+        Set<String> result = scanner.scan("com.acme.keywords.", Predicates.<CharSequence>alwaysTrue());
+
+        assertEquals(Arrays.asList("com/acme/keywords/Referenced.class", "com/acme/keywords/Main.class"),
+                Arrays.asList(result.toArray()));
+    }
+
+    @Test
+    public void testParallelScanKeepsClassPathOrder() throws Exception {
+        URL[] urls = new URL[8];
+        for (int i = 0; i < urls.length; i++) {
+            File jar = new File(workingDirectory, "lib" + i + ".jar");
+            writeJar(jar, null, "com/acme/keywords/Lib" + i + ".class", "com/acme/keywords/Shared.class");
+            urls[i] = jar.toURI().toURL();
+        }
+        URLClassLoader loader = new URLClassLoader(urls, null);
+
+        Set<String> sequential = new ClassPathScanner(loader, 1).scan("com.acme.", Predicates.<CharSequence>alwaysTrue());
+        Set<String> parallel = new ClassPathScanner(loader, 4).scan("com.acme.", Predicates.<CharSequence>alwaysTrue());
+
+        assertEquals(9, parallel.size());
+        assertEquals(Arrays.asList(sequential.toArray()), Arrays.asList(parallel.toArray()));
+        assertEquals("com/acme/keywords/Shared.class", parallel.toArray()[1]);
+    }
+
+    private static URLClassLoader loaderFor(File entry) throws IOException {
+        return new URLClassLoader(new URL[] { entry.toURI().toURL() }, null);
+    }
+
+    private static void touch(File file) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        assertTrue(file.createNewFile());
+    }
+
+    private static void writeJar(File jar, String classPath, String... entries) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (classPath != null)
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+        try {
+            for (String entry : entries) {
+                out.putNextEntry(new JarEntry(entry));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
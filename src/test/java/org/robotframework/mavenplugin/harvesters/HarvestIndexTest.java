@@ -0,0 +1,212 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Predicates;
+
+public class HarvestIndexTest {
+
+    private static final long SETTLED = System.currentTimeMillis() - 60000;
+
+    private final File workingDirectory = new File(new File(System.getProperty("user.dir")),
+            "target" + File.separator + HarvestIndexTest.class.getCanonicalName());
+
+    private final File indexFile = new File(workingDirectory, "index" + File.separator + "harvest-index.bin");
+
+    @Before
+    public void setup() throws IOException {
+        FileUtils.deleteDirectory(workingDirectory);
+        assertTrue(workingDirectory.mkdirs());
+    }
+
+    @After
+    public void teardown() throws IOException {
+        FileUtils.deleteDirectory(workingDirectory);
+    }
+
+    @Test
+    public void testJarEntriesReusedUntilJarChanges() throws Exception {
+        File jar = new File(workingDirectory, "lib.jar");
+        writeJar(jar, SETTLED, "com/acme/keywords/Lib.class");
+        URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+
+        HarvestIndex index = HarvestIndex.load(indexFile);
+        new ClassPathScanner(loader, 1, index).scan("com.acme.", Predicates.<CharSequence>alwaysTrue());
+        index.save();
+
+        index = HarvestIndex.load(indexFile);
+        assertEquals(Collections.singletonList("com/acme/keywords/Lib.class"), index.getJarEntries(jar, "com.acme."));
+
+        writeJar(jar, SETTLED + 1000, "com/acme/keywords/Lib.class", "com/acme/keywords/Other.class");
+        assertNull(index.getJarEntries(jar, "com.acme."));
+        Set<String> result = new ClassPathScanner(loader, 1, index).scan("com.acme.",
+                Predicates.<CharSequence>alwaysTrue());
+        assertEquals(2, result.size());
+    }
+
+    @Test
+    public void testRecordsOfOtherExecutionsAreKeptWhileTheirJarsExist() throws Exception {
+        File first = new File(workingDirectory, "first.jar");
+        writeJar(first, SETTLED, "com/acme/keywords/First.class");
+        File second = new File(workingDirectory, "second.jar");
+        writeJar(second, SETTLED, "com/acme/keywords/Second.class");
+
+        HarvestIndex index = HarvestIndex.load(indexFile);
+        new ClassPathScanner(new URLClassLoader(new URL[] { first.toURI().toURL() }, null), 1, index).scan(
+                "com.acme.", Predicates.<CharSequence>alwaysTrue());
+        index.save();
+        index = HarvestIndex.load(indexFile);
+        new ClassPathScanner(new URLClassLoader(new URL[] { second.toURI().toURL() }, null), 1, index).scan(
+                "com.acme.", Predicates.<CharSequence>alwaysTrue());
+        index.save();
+
+        index = HarvestIndex.load(indexFile);
+        assertEquals(Collections.singletonList("com/acme/keywords/First.class"),
+                index.getJarEntries(first, "com.acme."));
+        assertEquals(Collections.singletonList("com/acme/keywords/Second.class"),
+                index.getJarEntries(second, "com.acme."));
+
+        assertTrue(first.delete());
+        File third = new File(workingDirectory, "third.jar");
+        writeJar(third, SETTLED, "com/acme/keywords/Third.class");
+        index = HarvestIndex.load(indexFile);
+        new ClassPathScanner(new URLClassLoader(new URL[] { third.toURI().toURL() }, null), 1, index).scan(
+                "com.acme.", Predicates.<CharSequence>alwaysTrue());
+        index.save();
+
+        writeJar(first, SETTLED, "com/acme/keywords/First.class");
+        index = HarvestIndex.load(indexFile);
+        assertNull(index.getJarEntries(first, "com.acme."));
+        assertEquals(Collections.singletonList("com/acme/keywords/Second.class"),
+                index.getJarEntries(second, "com.acme."));
+    }
+
+    @Test
+    public void testOnlyNamesUnderScannedPrefixesAreRecorded() throws Exception {
+        File jar = new File(workingDirectory, "lib.jar");
+        writeJar(jar, SETTLED, "com/acme/keywords/Lib.class", "com/acme/Other.class", "org/Unrelated.class");
+        URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+
+        HarvestIndex index = HarvestIndex.load(indexFile);
+        new ClassPathScanner(loader, 1, index).scan("com.acme.", Predicates.<CharSequence>alwaysTrue());
+        index.save();
+
+        index = HarvestIndex.load(indexFile);
+        assertEquals(Arrays.asList("com/acme/keywords/Lib.class", "com/acme/Other.class"),
+                index.getJarEntries(jar, "com.acme."));
+        assertEquals(Collections.singletonList("com/acme/keywords/Lib.class"),
+                index.getJarEntries(jar, "com.acme.keywords."));
+        assertNull(index.getJarEntries(jar, "org."));
+    }
+
+    @Test
+    public void testUnchangedJarIsNotOpenedForItsManifest() throws Exception {
+        File referenced = new File(workingDirectory, "referenced.jar");
+        writeJar(referenced, SETTLED, "com/acme/keywords/Referenced.class");
+        File jar = new File(workingDirectory, "main.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest("referenced.jar"));
+        try {
+            out.putNextEntry(new JarEntry("com/acme/keywords/Main.class"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        assertTrue(jar.setLastModified(SETTLED));
+        URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+
+        HarvestIndex index = HarvestIndex.load(indexFile);
+        Set<String> cold = new ClassPathScanner(loader, 1, index).scan("com.acme.",
+                Predicates.<CharSequence>alwaysTrue());
+        index.save();
+
+        // Same size and time, but no longer readable: only the index can tell.
+        for (File file : new File[] { jar, referenced }) {
+            FileUtils.writeByteArrayToFile(file, new byte[(int) file.length()]);
+            assertTrue(file.setLastModified(SETTLED));
+        }
+        index = HarvestIndex.load(indexFile);
+        Set<String> warm = new ClassPathScanner(loader, 1, index).scan("com.acme.",
+                Predicates.<CharSequence>alwaysTrue());
+        assertEquals(Arrays.asList("com/acme/keywords/Referenced.class", "com/acme/keywords/Main.class"),
+                Arrays.asList(warm.toArray()));
+        assertEquals(cold, warm);
+    }
+
+    @Test
+    public void testRecentlyModifiedJarIsNotTrusted() throws Exception {
+        File jar = new File(workingDirectory, "fresh.jar");
+        writeJar(jar, System.currentTimeMillis(), "com/acme/Fresh.class");
+
+        HarvestIndex index = HarvestIndex.load(indexFile);
+        index.putJarEntries(jar, "com.acme.", Collections.singletonList("com/acme/Fresh.class"));
+        index.save();
+
+        assertNull(HarvestIndex.load(indexFile).getJarEntries(jar, "com.acme."));
+    }
+
+    @Test
+    public void testSourceHarvestSeesFilesAddedToIndexedDirectory() throws Exception {
+        File sources = new File(workingDirectory, "src");
+        File first = new File(sources, "robot" + File.separator + "first.robot");
+        assertTrue(first.getParentFile().mkdirs());
+        assertTrue(first.createNewFile());
+        assertTrue(first.getParentFile().setLastModified(SETTLED));
+        assertTrue(sources.setLastModified(SETTLED));
+        String pattern = "src/**/*.robot";
+
+        HarvestIndex index = HarvestIndex.load(indexFile);
+        Set<String> cold = new SourceFileNameHarvester(workingDirectory, null, index).harvest(pattern);
+        index.save();
+
+        index = HarvestIndex.load(indexFile);
+        Set<String> warm = new SourceFileNameHarvester(workingDirectory, null, index).harvest(pattern);
+        assertEquals(cold, warm);
+        assertEquals(Collections.singleton(first.getAbsolutePath()), warm);
+
+        File second = new File(first.getParentFile(), "second.robot");
+        assertTrue(second.createNewFile());
+        Set<String> changed = new SourceFileNameHarvester(workingDirectory, null, index).harvest(pattern);
+        assertEquals(Arrays.asList(first.getAbsolutePath(), second.getAbsolutePath()),
+                Arrays.asList(changed.toArray()));
+    }
+
+    private static Manifest manifest(String classPath) {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        return manifest;
+    }
+
+    private static void writeJar(File jar, long lastModified, String... entries) throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (String entry : entries) {
+                out.putNextEntry(new JarEntry(entry));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        assertTrue(jar.setLastModified(lastModified));
+    }
+}
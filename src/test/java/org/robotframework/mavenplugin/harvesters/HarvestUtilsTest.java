@@ -1,6 +1,7 @@
 package org.robotframework.mavenplugin.harvesters;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -57,4 +58,28 @@ public class HarvestUtilsTest {
             assertEquals("bla.java", HarvestUtils.removePrefixDirectory(new File("/bla/"), "/bla/bla.java"));
         }
     }
+
+    @Test
+    public void testExtractLiteralPrefix() throws Exception {
+        assertEquals("com.acme.keywords.", HarvestUtils.extractLiteralPrefix("com.acme.keywords.**"));
+        assertEquals("com.acme.", HarvestUtils.extractLiteralPrefix("com.acme.?ey*.Lib"));
+        assertEquals("", HarvestUtils.extractLiteralPrefix("*.List"));
+        assertEquals("java.util.List", HarvestUtils.extractLiteralPrefix("java.util.List"));
+    }
+
+    @Test
+    public void testStartsWithLiteralPrefix() throws Exception {
+        assertTrue(HarvestUtils.startsWithLiteralPrefix("com/acme/keywords/Lib.class", "com.acme.keywords."));
+        assertTrue(HarvestUtils.startsWithLiteralPrefix("com/acme/keywords/Lib.class", ""));
+        assertFalse(HarvestUtils.startsWithLiteralPrefix("com/acme/Lib.class", "com.acme.keywords."));
+        assertFalse(HarvestUtils.startsWithLiteralPrefix("com/acme/", "com.acme.keywords."));
+    }
+
+    @Test
+    public void testMayContainLiteralPrefix() throws Exception {
+        assertTrue(HarvestUtils.mayContainLiteralPrefix("com/", "com.acme.keywords."));
+        assertTrue(HarvestUtils.mayContainLiteralPrefix("com/acme/keywords/deeper/", "com.acme.keywords."));
+        assertFalse(HarvestUtils.mayContainLiteralPrefix("org/", "com.acme.keywords."));
+        assertFalse(HarvestUtils.mayContainLiteralPrefix("com/acme/keywordsX/", "com.acme.keywords."));
+    }
 }
@@ -0,0 +1,129 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares listing jar entries through <code>JarFile</code> with
+ * {@link ZipCentralDirectory} over 500 generated jars, counting the names under
+ * a package prefix. Run with <code>-prof gc</code> to compare allocation as
+ * well. Not run by the unit tests, see BUILD.md for how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JarListingBenchmark {
+
+    private static final int JARS = 500;
+
+    private static final int ENTRIES_PER_JAR = 400;
+
+    private static final String PREFIX = "com/acme/keywords/";
+
+    private File directory;
+
+    private List<File> jars;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("jar-listing").toFile();
+        List<String> corpus = AntPatternMatcherBenchmark.createCorpus(new Random(42));
+        jars = new ArrayList<File>(JARS);
+        for (int j = 0; j < JARS; j++) {
+            File jar = new File(directory, "lib" + j + ".jar");
+            JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jar)));
+            try {
+                Set<String> names = new HashSet<String>();
+                for (int e = 0; e < ENTRIES_PER_JAR; e++) {
+                    String name = corpus.get((j * ENTRIES_PER_JAR + e) % corpus.size());
+                    if (names.add(name)) {
+                        out.putNextEntry(new JarEntry(name));
+                        out.closeEntry();
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            jars.add(jar);
+        }
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public int jarFile() throws IOException {
+        int matches = 0;
+        for (File jar : jars) {
+            JarFile jarFile = new JarFile(jar);
+            try {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && HarvestUtils.startsWithLiteralPrefix(entry.getName(), PREFIX))
+                        matches++;
+                }
+            } finally {
+                jarFile.close();
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int centralDirectory() throws IOException {
+        final int[] matches = new int[1];
+        for (File jar : jars) {
+            ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(jar);
+            try {
+                centralDirectory.forEachName(new ZipCentralDirectory.NameVisitor() {
+                    public void visit(CharSequence name) {
+                        if (HarvestUtils.startsWithLiteralPrefix(name, PREFIX))
+                            matches[0]++;
+                    }
+                });
+            } finally {
+                centralDirectory.close();
+            }
+        }
+        return matches[0];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JarListingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
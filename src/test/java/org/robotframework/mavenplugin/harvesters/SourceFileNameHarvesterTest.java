@@ -1,10 +1,13 @@
 package org.robotframework.mavenplugin.harvesters;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -152,4 +155,53 @@ public class SourceFileNameHarvesterTest {
         HashSet<String> tr = new HashSet<String>(result);
         assertTrue(tr.contains(testFile2.getAbsolutePath()));
     }
+
+    @Test
+    public void testHarvestFilesSkipsExcludedDirectories() throws Exception {
+        File kept = new File(workingDirectory, "src" + File.separator + "kept.robot");
+        assertTrue(kept.getParentFile().mkdirs());
+        assertTrue(kept.createNewFile());
+        File excluded = new File(workingDirectory,
+                "module" + File.separator + "target" + File.separator + "copied.robot");
+        assertTrue(excluded.getParentFile().mkdirs());
+        assertTrue(excluded.createNewFile());
+
+        String pattern = "**" + File.separator + "*.robot";
+
+        NameHarvester h = new SourceFileNameHarvester(workingDirectory, Arrays.asList("**/target/**"));
+        Set<String> result = h.harvest(pattern);
+
+        assertEquals(1, result.size());
+        assertTrue(result.contains(kept.getAbsolutePath()));
+        assertFalse(result.contains(excluded.getAbsolutePath()));
+    }
+
+    @Test
+    public void testHarvestFilesFromMissingDirectory() throws Exception {
+        NameHarvester h = new SourceFileNameHarvester(workingDirectory);
+        Set<String> result = h.harvest("missing/**/*.robot");
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testHarvestFilesInSortedOrder() throws Exception {
+        String[] names = { "a.robot", "b" + File.separator + "a.robot", "b" + File.separator + "c" + File.separator
+                + "a.robot", "b" + File.separator + "z.robot", "c.robot", "d" + File.separator + "a.robot" };
+        for (String name : new String[] { names[5], names[4], names[3], names[2], names[1], names[0] }) {
+            File file = new File(workingDirectory, name);
+            file.getParentFile().mkdirs();
+            assertTrue(file.createNewFile());
+        }
+
+        NameHarvester h = new SourceFileNameHarvester(workingDirectory);
+        Set<String> result = h.harvest("**" + File.separator + "*.robot");
+
+        assertEquals(Arrays.asList(new File(workingDirectory, names[0]).getAbsolutePath(),
+                new File(workingDirectory, names[4]).getAbsolutePath(),
+                new File(workingDirectory, names[1]).getAbsolutePath(),
+                new File(workingDirectory, names[3]).getAbsolutePath(),
+                new File(workingDirectory, names[2]).getAbsolutePath(),
+                new File(workingDirectory, names[5]).getAbsolutePath()), new ArrayList<String>(result));
+    }
 }
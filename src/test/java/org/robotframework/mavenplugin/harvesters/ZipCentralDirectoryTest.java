@@ -0,0 +1,171 @@
+package org.robotframework.mavenplugin.harvesters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZipCentralDirectoryTest {
+
+    private final File workingDirectory = new File(new File(System.getProperty("user.dir")),
+            "target" + File.separator + ZipCentralDirectoryTest.class.getCanonicalName());
+
+    @Before
+    public void setup() throws IOException {
+        FileUtils.deleteDirectory(workingDirectory);
+        assertTrue(workingDirectory.mkdirs());
+    }
+
+    @After
+    public void teardown() throws IOException {
+        FileUtils.deleteDirectory(workingDirectory);
+    }
+
+    @Test
+    public void testNamesMatchJarFile() throws Exception {
+        File jar = new File(workingDirectory, "lib.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "other.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+        try {
+            out.putNextEntry(new JarEntry("com/"));
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("com/acme/Lib.class"));
+            out.write(new byte[100]);
+            out.closeEntry();
+            JarEntry stored = new JarEntry("com/acme/Stored.txt");
+            stored.setMethod(ZipEntry.STORED);
+            byte[] content = "stored".getBytes("UTF-8");
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            stored.setSize(content.length);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(content);
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("com/acme/Café.robot"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+
+        List<String> expected = new ArrayList<String>();
+        JarFile jarFile = new JarFile(jar);
+        try {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && !JarFile.MANIFEST_NAME.equals(entry.getName()))
+                    expected.add(entry.getName());
+            }
+        } finally {
+            jarFile.close();
+        }
+
+        ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(jar);
+        try {
+            assertEquals(expected, names(centralDirectory));
+            Manifest read = new Manifest(new ByteArrayInputStream(centralDirectory.readManifest()));
+            assertEquals("other.jar", read.getMainAttributes().getValue(Attributes.Name.CLASS_PATH));
+        } finally {
+            centralDirectory.close();
+        }
+    }
+
+    @Test
+    public void testZip64() throws Exception {
+        File jar = new File(workingDirectory, "large.jar");
+        JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jar)));
+        try {
+            // More entries than the classic end record can count.
+            for (int i = 0; i < 70000; i++) {
+                JarEntry entry = new JarEntry("e" + i);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(0);
+                entry.setCrc(0);
+                out.putNextEntry(entry);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+
+        ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(jar);
+        try {
+            List<String> names = names(centralDirectory);
+            assertEquals(70000, names.size());
+            assertEquals("e69999", names.get(69999));
+            assertNull(centralDirectory.readManifest());
+        } finally {
+            centralDirectory.close();
+        }
+    }
+
+    @Test
+    public void testNamesOutliveClose() throws Exception {
+        File jar = new File(workingDirectory, "small.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new JarEntry("com/acme/Lib.class"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+
+        ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(jar);
+        final List<CharSequence> kept = new ArrayList<CharSequence>();
+        centralDirectory.forEachName(new ZipCentralDirectory.NameVisitor() {
+            public void visit(CharSequence name) {
+                kept.add(name);
+            }
+        });
+        centralDirectory.close();
+
+        assertEquals("com/acme/Lib.class", kept.get(0).toString());
+        try {
+            names(centralDirectory);
+            fail("Closed central directory was read.");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testNotAZipFile() throws Exception {
+        File file = new File(workingDirectory, "plain.jar");
+        FileUtils.writeStringToFile(file, "this is not a zip file", "UTF-8");
+
+        assertNull(ZipCentralDirectory.open(file));
+    }
+
+    private static List<String> names(ZipCentralDirectory centralDirectory) throws IOException {
+        final List<String> names = new ArrayList<String>();
+        centralDirectory.forEachName(new ZipCentralDirectory.NameVisitor() {
+            public void visit(CharSequence name) {
+                names.add(name.toString());
+            }
+        });
+        return names;
+    }
+}